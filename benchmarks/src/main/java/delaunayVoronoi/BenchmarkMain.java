@@ -0,0 +1,20 @@
+package delaunayVoronoi;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchmarkMain {
+	/* Runs benchmarks selected on the command line (same options as JMH),
+	 * always with the GC profiler, which reports allocation rate and bytes
+	 * allocated per operation.
+	 */
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+
+}
\ No newline at end of file
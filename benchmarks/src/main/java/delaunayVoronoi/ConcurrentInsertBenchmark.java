@@ -0,0 +1,90 @@
+package delaunayVoronoi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xss64m", "-Xmx8g" })
+public class ConcurrentInsertBenchmark {
+	/* Scaling of concurrent insertion with the number of threads. Sites are
+	 * ordered along Hilbert curve and cut into one run per thread, so
+	 * threads work in different parts of the mesh and meet only at the
+	 * borders of their runs (and in the large triangles of the first
+	 * insertions). threads=1 measures the cost of locking against
+	 * InsertBenchmark.addAll. Speedup is bounded by the number of cores.
+	 */
+	@Param({ "uniform", "clustered" })
+	public String distribution;
+
+	@Param({ "100000", "1000000" })
+	public int size;
+
+	@Param({ "1", "2", "4", "8" })
+	public int threads;
+
+	private DataPoint[] sites;
+	private int[] order;
+	private ExecutorService executor;
+
+	@Setup(Level.Trial)
+	public void generate(){
+		sites = Sites.generate(distribution, size, 42);
+		order = SpatialSort.hilbertOrder(sites, 0, sites.length);
+		executor = Executors.newFixedThreadPool(threads);
+	}
+
+	@TearDown(Level.Trial)
+	public void shutdown(){
+		executor.shutdown();
+	}
+
+	@Benchmark
+	public Triangulation insert() throws Exception {
+		final Triangulation dt = new Triangulation(new ObjectMesh(size));
+		dt.setLazyVoronoi(true);
+		dt.setConcurrentInsertion(true);
+		List<Future<Object>> runs = new ArrayList<Future<Object>>();
+		for(int t = 0; t < threads; t++){
+			final int from = (int)((long)order.length * t / threads), to = (int)((long)order.length * (t + 1) / threads);
+			runs.add(executor.submit(new Callable<Object>() {
+				@Override
+				public Object call() {
+					for(int i = from; i < to; i++){
+						DataPoint x = sites[order[i]];
+						dt.addSite(x.x, x.y);
+					}
+					return null;
+				}
+			}));
+		}
+		for(Future<Object> run : runs){
+			run.get();
+		}
+		dt.setConcurrentInsertion(false);
+		return dt;
+	}
+
+}
\ No newline at end of file
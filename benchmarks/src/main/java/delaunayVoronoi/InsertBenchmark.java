@@ -0,0 +1,117 @@
+package delaunayVoronoi;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xss64m", "-Xmx8g" })
+public class InsertBenchmark {
+	/* Building a triangulation from scratch. Large sizes take long, pick
+	 * some by -p size=1000,100000 . Ten million sites are left out of the
+	 * defaults, one by one insertions take too long there. They are run
+	 * only for the fast builders:
+	 *     java -jar benchmarks.jar 'InsertBenchmark\.(addAll|divideAndConquer)$' -p size=10000000
+	 */
+	@Param({ "uniform", "clustered", "grid", "collinear" })
+	public String distribution;
+
+	@Param({ "1000", "10000", "100000", "1000000" })
+	public int size;
+
+	private DataPoint[] sites;
+
+	@Setup(Level.Trial)
+	public void generate(){
+		sites = Sites.generate(distribution, size, 42);
+	}
+
+	@Benchmark
+	public Triangulation addSite(){
+		// One by one in the order of generation
+		Triangulation dt = new Triangulation();
+		dt.setLazyVoronoi(true);
+		for(DataPoint x : sites){
+			dt.addSite(x);
+		}
+		return dt;
+	}
+
+	@Benchmark
+	public Triangulation addSiteEager(){
+		// As addSite, with Voronoi vertexes computed after every insertion
+		Triangulation dt = new Triangulation();
+		for(DataPoint x : sites){
+			dt.addSite(x);
+		}
+		return dt;
+	}
+
+	@Benchmark
+	public Triangulation addSiteHierarchy(){
+		// As addSite, each locate descending through the levels of Delaunay hierarchy
+		Triangulation dt = new Triangulation(new CompactMesh(size));
+		dt.setLazyVoronoi(true);
+		dt.setHierarchy(true);
+		for(DataPoint x : sites){
+			dt.addSite(x);
+		}
+		return dt;
+	}
+
+	@Benchmark
+	public Triangulation addAll(){
+		// Biased randomized insertion order
+		Triangulation dt = new Triangulation(new ObjectMesh(size));
+		dt.setLazyVoronoi(true);
+		dt.addAll(sites);
+		return dt;
+	}
+
+	@Benchmark
+	public Triangulation addAllCompact(){
+		// As addAll, into the compact mesh
+		Triangulation dt = new Triangulation(new CompactMesh(size));
+		dt.setLazyVoronoi(true);
+		dt.addAll(sites);
+		return dt;
+	}
+
+	@Benchmark
+	public Triangulation addAllCompactEager(){
+		// As addAllCompact, with Voronoi vertexes computed after every insertion
+		Triangulation dt = new Triangulation(new CompactMesh(size));
+		dt.addAll(sites);
+		return dt;
+	}
+
+	@Benchmark
+	public Triangulation addAllBowyerWatson(){
+		// As addAllCompactEager, inserting by cavities found with the cached circumCircles
+		Triangulation dt = new Triangulation(new CompactMesh(size));
+		dt.setBowyerWatson(true);
+		dt.addAll(sites);
+		return dt;
+	}
+
+	@Benchmark
+	public Triangulation divideAndConquer(){
+		return DelaunayBuilder.build(sites);
+	}
+
+}
\ No newline at end of file
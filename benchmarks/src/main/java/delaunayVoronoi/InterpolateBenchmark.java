@@ -0,0 +1,62 @@
+package delaunayVoronoi;
+
+import java.awt.geom.Rectangle2D;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = { "-Xss64m", "-Xmx8g" })
+public class InterpolateBenchmark {
+	/* Natural neighbour interpolation of a whole grid over the sites, in
+	 * parallel bands of rows, with no trial insertions. The mesh is in lazy
+	 * Voronoi mode as DelaunayBuilder leaves it, so circumCenters of the
+	 * cavities are computed by the queries. The compact mesh is faster at
+	 * large sizes, its edges are not scattered over the heap.
+	 */
+	@Param({ "object", "compact" })
+	public String mesh;
+
+	@Param({ "100000", "1000000" })
+	public int size;
+
+	@Param({ "1024", "4096" })
+	public int grid;
+
+	private Rectangle2D area = new Rectangle2D.Double(0, 0, Sites.SIZE, Sites.SIZE);
+	private Triangulation dt;
+
+	@Setup(Level.Trial)
+	public void build(){
+		DataPoint[] sites = Sites.generate("uniform", size, 42);
+		dt = mesh.equals("compact") ? DelaunayBuilder.build(sites, new CompactMesh(size), ForkJoinPool.commonPool()) : DelaunayBuilder.build(sites);
+		QuadEdgeMesh m = dt.getMesh();
+		for(int site = QuadEdgeMesh.BOUNDS; site < m.siteCount(); site++){
+			if(m.edgeOf(site) != QuadEdgeMesh.NONE){
+				dt.setValue(site, Math.sin(m.x(site) / 100) * Math.cos(m.y(site) / 100));
+			}
+		}
+	}
+
+	@Benchmark
+	public double[] grid(){
+		return dt.interpolateGrid(area, grid, grid);
+	}
+
+}
\ No newline at end of file
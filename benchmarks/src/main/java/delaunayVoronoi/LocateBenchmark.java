@@ -0,0 +1,134 @@
+package delaunayVoronoi;
+
+import java.awt.geom.Point2D;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xss64m", "-Xmx8g" })
+public class LocateBenchmark {
+	/* Point location. Time of one locate is proportional to the length of
+	 * its walk, which is long for random queries started at the first edge
+	 * and short for queries ordered along Hilbert curve, each starting where
+	 * the previous one finished. nearestSite adds a short greedy walk, it
+	 * is measured on the object and compact mesh, and on the compact mesh
+	 * with Delaunay hierarchy, whose random queries descend through the
+	 * levels instead of walking across the whole mesh.
+	 */
+	private static final int QUERIES = 1024;
+
+	@Param({ "uniform", "clustered" })
+	public String distribution;
+
+	@Param({ "1000", "100000", "1000000" })
+	public int size;
+
+	private Triangulation object;
+	private Triangulation compact;
+	private Triangulation hierarchy;
+	private double[] random;	// x, y of queries
+	private double[] ordered;	// The same along Hilbert curve
+
+	@Setup(Level.Trial)
+	public void build(){
+		object = DelaunayBuilder.build(Sites.generate(distribution, size, 42));
+		compact = DelaunayBuilder.build(Sites.generate(distribution, size, 42), new CompactMesh(size), ForkJoinPool.commonPool());
+		hierarchy = DelaunayBuilder.build(Sites.generate(distribution, size, 42), new CompactMesh(size), ForkJoinPool.commonPool());
+		hierarchy.setHierarchy(true);
+		Random rand = new Random(7);
+		Point2D[] queries = new Point2D[QUERIES];
+		for(int i = 0; i < QUERIES; i++){
+			queries[i] = new Point2D.Double(rand.nextDouble() * Sites.SIZE, rand.nextDouble() * Sites.SIZE);
+		}
+		random = new double[2 * QUERIES];
+		ordered = new double[2 * QUERIES];
+		int[] order = SpatialSort.hilbertOrder(queries, 0, QUERIES);
+		for(int i = 0; i < QUERIES; i++){
+			random[2*i] = queries[i].getX();
+			random[2*i + 1] = queries[i].getY();
+			ordered[2*i] = queries[order[i]].getX();
+			ordered[2*i + 1] = queries[order[i]].getY();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public void fromFirstEdge(Blackhole bh){
+		QuadEdgeMesh mesh = object.getMesh();
+		for(int i = 0; i < random.length; i += 2){
+			bh.consume(mesh.locate(random[i], random[i + 1], object.getFirstEdge()));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public void fromPreviousResult(Blackhole bh){
+		// Random queries, each starting where the previous one finished
+		QuadEdgeMesh mesh = object.getMesh();
+		int e = object.getFirstEdge();
+		for(int i = 0; i < random.length; i += 2){
+			e = mesh.locate(random[i], random[i + 1], e);
+			bh.consume(e);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public void coherent(Blackhole bh){
+		// Queries along Hilbert curve, each starting where the previous one finished
+		QuadEdgeMesh mesh = object.getMesh();
+		int e = object.getFirstEdge();
+		for(int i = 0; i < ordered.length; i += 2){
+			e = mesh.locate(ordered[i], ordered[i + 1], e);
+			bh.consume(e);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public void nearestObject(Blackhole bh){
+		// Random queries, each starting where the previous one of the thread finished
+		nearest(object, bh);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public void nearestCompact(Blackhole bh){
+		// Same on the compact mesh
+		nearest(compact, bh);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public void nearestHierarchy(Blackhole bh){
+		// Same on the compact mesh, each query descending through the levels
+		nearest(hierarchy, bh);
+	}
+
+	private void nearest(Triangulation dt, Blackhole bh){
+		for(int i = 0; i < random.length; i += 2){
+			bh.consume(dt.nearestSite(random[i], random[i + 1]));
+		}
+	}
+
+}
\ No newline at end of file
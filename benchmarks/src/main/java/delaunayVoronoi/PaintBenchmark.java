@@ -0,0 +1,93 @@
+package delaunayVoronoi;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PaintBenchmark {
+	/* DrawPanel.paint with all layers onto an offscreen image. The panel is
+	 * not shown, so it paints without a display. Layers are either cached,
+	 * repainted only around a moved site (publishing a snapshot of the move
+	 * is included), or all painted again.
+	 */
+	private static final int WIDTH = 700, HEIGHT = 500;
+
+	@Param({ "1000", "10000", "100000" })
+	public int size;
+
+	private Triangulation dt;
+	private DrawPanel panel;
+	private BufferedImage image;
+	private Graphics2D g;
+	private int moved;
+	private boolean movedBack;
+
+	@Setup(Level.Trial)
+	public void build(){
+		DataPoint[] sites = Sites.generate("uniform", size, 42);
+		for(DataPoint x : sites){
+			x.setLocation(x.x * WIDTH / Sites.SIZE, x.y * HEIGHT / Sites.SIZE);
+		}
+		dt = DelaunayBuilder.build(sites);
+		dt.setTrackChanges(true);
+		dt.setPublishSnapshots(true);
+		panel = new DrawPanel(dt);
+		panel.setLayers(true, true, true);
+		panel.setSize(WIDTH, HEIGHT);
+		panel.pointInCell = new Point2D.Double(WIDTH / 2, HEIGHT / 2);
+		image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		g = image.createGraphics();
+		moved = dt.nearestSite(WIDTH / 2, HEIGHT / 2);
+		panel.paint(g);
+	}
+
+	@TearDown(Level.Trial)
+	public void dispose(){
+		g.dispose();
+	}
+
+	@Benchmark
+	public BufferedImage paintCached(){
+		panel.paint(g);
+		return image;
+	}
+
+	@Benchmark
+	public BufferedImage paintAfterMove(){
+		// Site near the centre moves back and forth by a pixel
+		QuadEdgeMesh mesh = dt.getMesh();
+		dt.moveSite(moved, mesh.x(moved) + (movedBack ? -1 : 1), mesh.y(moved));
+		movedBack = !movedBack;
+		panel.paint(g);
+		return image;
+	}
+
+	@Benchmark
+	public BufferedImage paintWhole(){
+		panel.discardLayers();
+		panel.paint(g);
+		return image;
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,86 @@
+package delaunayVoronoi;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PredicateBenchmark {
+	/* Throughput of Operators.det3 and inCircle. Random input is decided by
+	 * the floating-point filter, degenerate input (colinear and cocircular
+	 * points) always falls back to exact arithmetic.
+	 */
+	private static final int COUNT = 1024;
+
+	private double[] random = new double[8 * COUNT];
+	private double[] degenerate = new double[8 * COUNT];
+
+	@Setup
+	public void generate(){
+		Random rand = new Random(42);
+		for(int i = 0; i < random.length; i++){
+			random[i] = rand.nextDouble() * Sites.SIZE;
+		}
+		for(int i = 0; i < COUNT; i++){
+			// Corners of a square are cocircular, its first three corners are colinear with the middle of the diagonal
+			double x = rand.nextInt(5000) + 0.5, y = rand.nextInt(5000) + 0.25, s = rand.nextInt(100) + 1;
+			double[] p = { x, y, x + s, y, x + s, y + s, x, y + s };
+			System.arraycopy(p, 0, degenerate, 8 * i, 8);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public void det3Random(Blackhole bh){
+		double[] p = random;
+		for(int i = 0; i < p.length; i += 8){
+			bh.consume(Operators.det3(p[i], p[i + 1], p[i + 2], p[i + 3], p[i + 4], p[i + 5]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public void det3Degenerate(Blackhole bh){
+		double[] p = degenerate;
+		for(int i = 0; i < p.length; i += 8){
+			// Corner, middle of the diagonal, opposite corner
+			bh.consume(Operators.det3(p[i], p[i + 1], (p[i] + p[i + 4]) / 2, (p[i + 1] + p[i + 5]) / 2, p[i + 4], p[i + 5]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public void inCircleRandom(Blackhole bh){
+		double[] p = random;
+		for(int i = 0; i < p.length; i += 8){
+			bh.consume(Operators.inCircle(p[i], p[i + 1], p[i + 2], p[i + 3], p[i + 4], p[i + 5], p[i + 6], p[i + 7]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public void inCircleDegenerate(Blackhole bh){
+		double[] p = degenerate;
+		for(int i = 0; i < p.length; i += 8){
+			bh.consume(Operators.inCircle(p[i], p[i + 1], p[i + 2], p[i + 3], p[i + 4], p[i + 5], p[i + 6], p[i + 7]));
+		}
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,101 @@
+package delaunayVoronoi;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xss64m", "-Xmx8g" })
+public class PublishBenchmark {
+	/* Latency of publishing a MeshSnapshot after a small change of a large
+	 * triangulation. A site moves back and forth, with and without
+	 * publishing, so the difference is the time of the publish, which
+	 * copies only the few pages the move changed. A batch of sites is
+	 * added and removed again, published after each change. Copying the
+	 * whole mesh, as the first snapshot does, is the baseline. Pages of the
+	 * object mesh are copied edge by edge through their objects, so they
+	 * take several times longer than those of the compact one.
+	 */
+	private static final int BATCH = 64;
+
+	@State(Scope.Benchmark)
+	public static class Mesh {
+		@Param({ "object", "compact" })
+		public String mesh;
+
+		@Param({ "1000000", "4000000" })
+		public int size;
+
+		Triangulation dt;
+		int moved;
+		boolean movedBack;
+		final DataPoint[] batch = Sites.generate("uniform", BATCH, 7);
+
+		void build(boolean publish){
+			DataPoint[] sites = Sites.generate("uniform", size, 42);
+			dt = mesh.equals("compact") ? DelaunayBuilder.build(sites, new CompactMesh(size), ForkJoinPool.commonPool()) : DelaunayBuilder.build(sites);
+			dt.setPublishSnapshots(publish);
+			moved = dt.nearestSite(Sites.SIZE / 2, Sites.SIZE / 2);
+		}
+
+		MeshSnapshot move(){
+			QuadEdgeMesh m = dt.getMesh();
+			dt.moveSite(moved, m.x(moved) + (movedBack ? -1e-3 : 1e-3), m.y(moved));
+			movedBack = !movedBack;
+			return dt.getSnapshot();
+		}
+	}
+
+	public static class Unpublished extends Mesh {
+		@Setup(Level.Trial)
+		public void build(){
+			build(false);
+		}
+	}
+
+	public static class Published extends Mesh {
+		@Setup(Level.Trial)
+		public void build(){
+			build(true);
+		}
+	}
+
+	@Benchmark
+	public MeshSnapshot move_unpublished(Unpublished m){
+		return m.move();
+	}
+
+	@Benchmark
+	public MeshSnapshot move_published(Published m){
+		return m.move();
+	}
+
+	@Benchmark
+	public MeshSnapshot batch_published(Published m){
+		for(int site : m.dt.addAll(m.batch)){
+			m.dt.removeSite(site);
+		}
+		return m.dt.getSnapshot();
+	}
+
+	@Benchmark
+	public MeshSnapshot copyAll(Unpublished m){
+		return new MeshSnapshot(m.dt, null, null, null, 0, Triangulation.everywhere());
+	}
+
+}
\ No newline at end of file
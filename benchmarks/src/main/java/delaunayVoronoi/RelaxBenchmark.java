@@ -0,0 +1,75 @@
+package delaunayVoronoi;
+
+import java.awt.geom.Rectangle2D;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xss64m", "-Xmx8g" })
+public class RelaxBenchmark {
+	/* One Lloyd iteration (parallel centroids and moveAll). Relaxation moves
+	 * the sites, so each invocation gets a fresh mesh of the same sites. The
+	 * sites are taken as generated (they travel far, many moves remove and
+	 * insert again), or after some iterations were run in trial setup (they
+	 * move a little, nearly all moves are in place).
+	 */
+	@Param({ "uniform", "clustered" })
+	public String distribution;
+
+	@Param({ "10000", "100000", "500000" })
+	public int size;
+
+	@Param({ "0", "10" })
+	public int relaxed;		// Iterations run before the measured one
+
+	private Rectangle2D boundary = new Rectangle2D.Double(0, 0, Sites.SIZE, Sites.SIZE);
+	private DataPoint[] sites;
+	private Triangulation dt;
+
+	@Setup(Level.Trial)
+	public void generate(){
+		sites = Sites.generate(distribution, size, 42);
+		if(relaxed == 0){
+			return;
+		}
+		Triangulation start = DelaunayBuilder.build(sites);
+		new LloydRelaxation(start, boundary).relax(relaxed, 0);
+		QuadEdgeMesh mesh = start.getMesh();
+		sites = new DataPoint[start.size()];
+		int count = 0;
+		for(int site = QuadEdgeMesh.BOUNDS; site < mesh.siteCount(); site++){
+			if(mesh.edgeOf(site) != QuadEdgeMesh.NONE){
+				sites[count++] = new DataPoint(DataPoint.SITE, mesh.x(site), mesh.y(site));
+			}
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void build(){
+		dt = DelaunayBuilder.build(sites);
+	}
+
+	@Benchmark
+	public double relax(){
+		LloydRelaxation lloyd = new LloydRelaxation(dt, boundary);
+		lloyd.relax(1, 0);
+		return lloyd.getLastShift();
+	}
+
+}
\ No newline at end of file
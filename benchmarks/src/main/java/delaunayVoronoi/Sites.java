@@ -0,0 +1,74 @@
+package delaunayVoronoi;
+
+import java.util.Random;
+
+public class Sites {
+	/* Site sets used by benchmarks, all of them in the square [0, SIZE) x
+	 * [0, SIZE).
+	 *   uniform   - uniformly random in [0, SIZE) x [0, SIZE)
+	 *   clustered - gaussian clusters of about 1000 sites, cut to the same
+	 *               square
+	 *   grid      - integer lattice in random order (many cocircular sites)
+	 *   collinear - sites on a few lines in random order
+	 */
+	public static final double SIZE = 5000;
+
+	public static DataPoint[] generate(String distribution, int n, long seed){
+		Random rand = new Random(seed);
+		DataPoint[] sites = new DataPoint[n];
+		if(distribution.equals("uniform")){
+			for(int i = 0; i < n; i++){
+				sites[i] = new DataPoint(DataPoint.SITE, rand.nextDouble() * SIZE, rand.nextDouble() * SIZE);
+			}
+		}
+		else if(distribution.equals("clustered")){
+			int clusters = Math.max(1, n / 1000);
+			double[] cx = new double[clusters], cy = new double[clusters];
+			for(int c = 0; c < clusters; c++){
+				cx[c] = SIZE * (0.1 + 0.8 * rand.nextDouble());
+				cy[c] = SIZE * (0.1 + 0.8 * rand.nextDouble());
+			}
+			double spread = SIZE / Math.sqrt(clusters) / 10;
+			for(int i = 0; i < n; i++){
+				int c = rand.nextInt(clusters);
+				double x, y;
+				do{
+					x = cx[c] + rand.nextGaussian() * spread;
+					y = cy[c] + rand.nextGaussian() * spread;
+				} while(x < 0 || x >= SIZE || y < 0 || y >= SIZE);
+				sites[i] = new DataPoint(DataPoint.SITE, x, y);
+			}
+		}
+		else if(distribution.equals("grid")){
+			int side = (int)Math.ceil(Math.sqrt(n));
+			double step = SIZE / side;
+			for(int i = 0; i < n; i++){
+				sites[i] = new DataPoint(DataPoint.SITE, (i % side) * step, (i / side) * step);
+			}
+			shuffle(sites, rand);
+		}
+		else if(distribution.equals("collinear")){
+			int lines = 8;
+			for(int i = 0; i < n; i++){
+				int line = i % lines;
+				double t = (double)(i / lines) / (n / lines + 1) * SIZE;
+				sites[i] = new DataPoint(DataPoint.SITE, t, (line + 1) * SIZE / (lines + 1) + 0.25 * t);
+			}
+			shuffle(sites, rand);
+		}
+		else{
+			throw new IllegalArgumentException("Unknown distribution: " + distribution);
+		}
+		return sites;
+	}
+
+	private static void shuffle(DataPoint[] sites, Random rand){
+		for(int i = sites.length - 1; i > 0; i--){
+			int j = rand.nextInt(i + 1);
+			DataPoint temp = sites[i];
+			sites[i] = sites[j];
+			sites[j] = temp;
+		}
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,56 @@
+package delaunayVoronoi;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = { "-Xss64m", "-Xmx8g" })
+public class VoronoiBenchmark {
+	// computeVoronoi over a mesh whose faces are all dirty
+	@Param({ "uniform", "grid" })
+	public String distribution;
+
+	@Param({ "1000", "100000", "1000000" })
+	public int size;
+
+	private Triangulation dt;
+
+	@Setup(Level.Trial)
+	public void build(){
+		dt = DelaunayBuilder.build(Sites.generate(distribution, size, 42));
+	}
+
+	@Setup(Level.Invocation)
+	public void markDirty(){
+		final QuadEdgeMesh mesh = dt.getMesh();
+		dt.forEachFace(new EdgeProcessor() {
+			@Override
+			public void process(int e) {
+				mesh.markFaceDirty(e);
+			}
+		});
+	}
+
+	@Benchmark
+	public Triangulation computeVoronoi(){
+		dt.computeVoronoi();
+		return dt;
+	}
+
+}
\ No newline at end of file
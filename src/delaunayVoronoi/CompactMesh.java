@@ -0,0 +1,126 @@
+package delaunayVoronoi;
+
+import java.util.Arrays;
+
+public class CompactMesh extends QuadEdgeMesh {
+	/* Quad-edges in primitive arrays instead of objects: oNext of every edge
+	 * in one int[], origins of edges 0 and 2 in another (indexed by e >> 1),
+	 * about 24 bytes per quad-edge. Cached circumCenters and traversal marks
+	 * get arrays only when they are first used, so a mesh built in lazy
+	 * Voronoi mode and never traversed has none.
+	 */
+	private int[] next;			// oNext of every edge
+	private int[] org;			// Origin site of edges 0 and 2, indexed by e >> 1
+	private DataPoint[] centers = null;	// circumCenter at origin of dual edges 1 and 3, indexed by e >> 1
+	private int[] marks = null;	// Traversal mark of every edge
+
+	public CompactMesh(){
+		this(1024);
+	}
+
+	public CompactMesh(int expectedSites){
+		super(expectedSites);
+		int quads = quadsFor(expectedSites);
+		next = new int[4 * quads];
+		org = new int[2 * quads];
+	}
+
+	@Override
+	public int oNext(int e){ return next[e]; }
+
+	@Override
+	public int origin(int e){ return org[e >> 1]; }
+
+	@Override
+	public boolean isDeleted(int quad){ return org[quad << 1] == NONE; }
+
+	@Override
+	void setONext(int e, int n){ next[e] = n; }
+
+	@Override
+	void setOrigin(int e, int site){ org[e >> 1] = site; }
+
+	@Override
+	DataPoint center(int dual){
+		return (centers != null) ? centers[dual >> 1] : null;
+	}
+
+	@Override
+	void setCenter(int dual, DataPoint center){
+		if(centers == null){
+			if(center == null){
+				return;
+			}
+			centers = new DataPoint[org.length];
+		}
+		centers[dual >> 1] = center;
+	}
+
+	@Override
+	int mark(int e){
+		return (marks != null) ? marks[e] : 0;
+	}
+
+	@Override
+	void setMark(int e, int mark){
+		if(marks == null){
+			marks = new int[next.length];
+		}
+		marks[e] = mark;
+	}
+
+	@Override
+	int racyONext(int e){
+		int[] n = next;
+		return (e >= 0 && e < n.length) ? n[e] : NONE;
+	}
+
+	@Override
+	int racyOrigin(int e){
+		int[] o = org;
+		return (e >= 0 && (e >> 1) < o.length) ? o[e >> 1] : NONE;
+	}
+
+	@Override
+	void prepareShared(){
+		// Threads must not race to allocate the circumCenters
+		if(centers == null){
+			centers = new DataPoint[org.length];
+		}
+	}
+
+	@Override
+	void loadQuads(int[] origins, int[] next, int quadCount){
+		// Arrays of a snapshot are laid out as these, they are taken as they are
+		this.next = next;
+		this.org = origins;
+		centers = null;
+		marks = null;
+	}
+
+	@Override
+	int quadCapacity(){ return org.length >> 1; }
+
+	@Override
+	void growQuads(int capacity){
+		next = Arrays.copyOf(next, 4 * capacity);
+		org = Arrays.copyOf(org, 2 * capacity);
+		if(centers != null){
+			centers = Arrays.copyOf(centers, 2 * capacity);
+		}
+		if(marks != null){
+			marks = Arrays.copyOf(marks, 4 * capacity);
+		}
+	}
+
+	@Override
+	void clearQuad(int quad){
+		org[quad << 1] = NONE;
+		org[(quad << 1) + 1] = NONE;
+		if(centers != null){
+			centers[quad << 1] = null;
+			centers[(quad << 1) + 1] = null;
+		}
+	}
+
+}
\ No newline at end of file
@@ -1,8 +1,8 @@
 package delaunayVoronoi;
 
-import java.awt.Point;
+import java.awt.geom.Point2D;
 
-public class DataPoint extends Point {
+public class DataPoint extends Point2D.Double {
 	private static final long serialVersionUID = 6636520486044399750L;
 	public static final int NONE = 0;
 	public static final int SITE = 1;
@@ -10,13 +10,13 @@ public class DataPoint extends Point {
 	
 	public int type = NONE;
 
-	public DataPoint(int type, int x, int y) {
+	public DataPoint(int type, double x, double y) {
 		super(x, y);
 		this.type = type;
 	}
 
-	public DataPoint(Point p) {
-		super(p);
+	public DataPoint(Point2D p) {
+		super(p.getX(), p.getY());
 	}
 	
 	@Override
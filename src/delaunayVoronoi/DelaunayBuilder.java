@@ -0,0 +1,322 @@
+package delaunayVoronoi;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DelaunayBuilder {
+	/* Builds Triangulation of a static set of sites by divide and conquer
+	 * algorithm (Guibas and Stolfi, 1985, pages 114 - 120). Sites are sorted
+	 * once, then both halves are triangulated independently and merged along
+	 * their common tangent. Halves are computed as tasks on ForkJoinPool.
+	 * The bounding triangle is triangulated together with sites, so that
+	 * result is the same mesh as from incremental insertion.
+	 *
+	 * Sites are numbered in sorted order before the tasks start and the
+	 * mesh is presized, tasks take new quad-edges from a shared counter and
+	 * reuse the ones they deleted, so they never grow the mesh arrays.
+	 */
+	private static final int SEQUENTIAL_THRESHOLD = 8192;
+
+	private final QuadEdgeMesh mesh;
+	private final int[] s;			// Site numbers sorted by x, then by y
+	private final AtomicInteger nextQuad;
+	private final int quadCapacity;
+
+	private DelaunayBuilder(QuadEdgeMesh mesh, int[] s, int quads){
+		this.mesh = mesh;
+		this.s = s;
+		this.nextQuad = new AtomicInteger(mesh.quadCount());
+		this.quadCapacity = quads;
+	}
+
+	public static Triangulation build(Collection<? extends Point2D> sites){
+		return build(sites.toArray(new Point2D[sites.size()]));
+	}
+
+	public static Triangulation build(Point2D[] sites){
+		return build(sites, new ObjectMesh(sites.length), ForkJoinPool.commonPool());
+	}
+
+	public static Triangulation build(Point2D[] sites, QuadEdgeMesh mesh, ForkJoinPool pool){
+		/* Triangulates sites in given empty mesh, equal sites are added
+		 * once. Resulting triangulation is in lazy Voronoi mode. Throws
+		 * IllegalArgumentException if some site is not finite.
+		 */
+		if(mesh.siteCount() != 0){
+			throw new IllegalArgumentException("Mesh is not empty");
+		}
+		for(Point2D p : sites){
+			Triangulation.checkSite(p.getX(), p.getY());
+		}
+		Triangulation.newBoundingSites(mesh);
+		Point2D[] points = Arrays.copyOf(sites, sites.length + 3, Point2D[].class);
+		for(int i = 0; i < 3; i++){
+			points[sites.length + i] = new Bound(i, mesh.x(i), mesh.y(i));
+		}
+		Arrays.parallelSort(points, new Comparator<Point2D>() {
+			@Override
+			public int compare(Point2D a, Point2D b) {
+				int result = compareCoordinate(a, a.getX(), b, b.getX());
+				return (result != 0) ? result : compareCoordinate(a, a.getY(), b, b.getY());
+			}
+		});
+		// Number the sites, dropping duplicates
+		int[] s = new int[points.length];
+		int count = 0;
+		for(int i = 0; i < points.length; i++){
+			Point2D p = points[i];
+			Point2D last = (i > 0) ? points[i - 1] : null;
+			if(	last != null && !(p instanceof Bound) && !(last instanceof Bound) &&
+				p.getX() == last.getX() && p.getY() == last.getY()
+			){
+				continue;
+			}
+			s[count++] = (p instanceof Bound) ? ((Bound)p).site : mesh.newSite(p.getX(), p.getY());
+		}
+
+		/* A triangulation of n sites has at most 3n - 6 edges, some room is
+		 * left for quad-edges deleted by one task while another allocates.
+		 */
+		int quads = 3 * count + count / 16;
+		mesh.reserveQuads(quads);
+		DelaunayBuilder builder = new DelaunayBuilder(mesh, s, quads);
+		Hull hull = pool.invoke(builder.new MergeTask(0, count));
+		mesh.setQuadCount(builder.nextQuad.get());
+		for(int i = 0; i < hull.freeCount; i++){
+			mesh.releaseQuad(hull.free[i]);
+		}
+
+		// Bounding triangle is the convex hull, find its edge boundA -> boundB
+		int firstEdge = mesh.sym(hull.le);		// Outer face is on the left
+		int e = firstEdge;
+		while(mesh.origin(firstEdge) != 0){
+			firstEdge = mesh.lNext(firstEdge);
+			if(firstEdge == e){
+				throw new IllegalStateException("Bounding triangle is not the convex hull");
+			}
+		}
+		e = firstEdge;
+		while(mesh.dest(firstEdge) != 1){
+			firstEdge = mesh.oNext(firstEdge);
+			if(firstEdge == e){
+				throw new IllegalStateException("Bounding triangle is not the convex hull");
+			}
+		}
+		return new Triangulation(mesh, firstEdge, mesh.siteCount() - 3, true);
+	}
+
+	private static int compareCoordinate(Point2D a, double ac, Point2D b, double bc){
+		// Corners of bounding triangle are in infinity, their coordinates are directions
+		double	aFar = (a instanceof Bound) ? ac : 0,
+				bFar = (b instanceof Bound) ? bc : 0;
+		if(aFar != bFar){
+			return Double.compare(aFar, bFar);
+		}
+		return Double.compare((a instanceof Bound) ? 0 : ac, (b instanceof Bound) ? 0 : bc);
+	}
+
+	private static class Bound extends Point2D.Double {
+		// Corner of bounding triangle among sorted sites, in infinity in direction [x, y]
+		private static final long serialVersionUID = 1L;
+		final int site;
+
+		Bound(int site, double x, double y){
+			super(x, y);
+			this.site = site;
+		}
+	}
+
+	private static class Hull {
+		/* Result of a task: CCW convex hull edge out of the leftmost site,
+		 * CW convex hull edge out of the rightmost site and quad-edges the
+		 * task deleted.
+		 */
+		int le, re;
+		int[] free = new int[16];
+		int freeCount = 0;
+
+		void release(int quad){
+			if(freeCount == free.length){
+				free = Arrays.copyOf(free, 2 * freeCount);
+			}
+			free[freeCount++] = quad;
+		}
+
+		void adopt(Hull other){
+			// Takes over deleted quad-edges of other task
+			for(int i = 0; i < other.freeCount; i++){
+				release(other.free[i]);
+			}
+		}
+	}
+
+	private class MergeTask extends RecursiveTask<Hull> {
+		private static final long serialVersionUID = 1L;
+		private int from, to;
+
+		MergeTask(int from, int to){
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Hull compute() {
+			if(to - from <= SEQUENTIAL_THRESHOLD){
+				Hull hull = new Hull();
+				delaunay(from, to, hull);
+				return hull;
+			}
+			int mid = (from + to) / 2;
+			MergeTask left = new MergeTask(from, mid);
+			left.fork();
+			Hull right = new MergeTask(mid, to).compute();
+			Hull result = left.join();
+			result.adopt(right);
+			merge(result.le, result.re, right.le, right.re, result);
+			return result;
+		}
+	}
+
+	private void delaunay(int from, int to, Hull hull){
+		/* Triangulates sites s[from..to), sets hull.le and hull.re. */
+		int n = to - from;
+		if(n == 2){
+			int a = newEdge(s[from], s[from + 1], hull);
+			hull.le = a;
+			hull.re = mesh.sym(a);
+			return;
+		}
+		if(n == 3){
+			int s1 = s[from], s2 = s[from + 1], s3 = s[from + 2];
+			int a = newEdge(s1, s2, hull);
+			int b = newEdge(s2, s3, hull);
+			mesh.splice(mesh.sym(a), b);
+			// Close the triangle
+			double det = det3(s1, s2, s3);
+			if(det > 0){
+				connect(b, a, hull);
+				hull.le = a;
+				hull.re = mesh.sym(b);
+			}
+			else if(det < 0){
+				int c = connect(b, a, hull);
+				hull.le = mesh.sym(c);
+				hull.re = c;
+			}
+			else{
+				// Three colinear sites
+				hull.le = a;
+				hull.re = mesh.sym(b);
+			}
+			return;
+		}
+		int mid = (from + to) / 2;
+		delaunay(from, mid, hull);
+		int ldo = hull.le, ldi = hull.re;
+		delaunay(mid, to, hull);
+		merge(ldo, ldi, hull.le, hull.re, hull);
+	}
+
+	private void merge(int ldo, int ldi, int rdi, int rdo, Hull hull){
+		// Compute the lower common tangent of left and right halves
+		while(true){
+			if(det3(mesh.origin(ldi), mesh.dest(ldi), mesh.origin(rdi)) > 0){
+				ldi = mesh.lNext(ldi);
+			}
+			else if(mesh.rightOf(mesh.origin(ldi), rdi)){
+				rdi = mesh.rPrev(rdi);
+			}
+			else{
+				break;
+			}
+		}
+		// Create first cross edge basel from rdi.origin to ldi.origin
+		int basel = connect(mesh.sym(rdi), ldi, hull);
+		if(mesh.origin(ldi) == mesh.origin(ldo)){ ldo = mesh.sym(basel); }
+		if(mesh.origin(rdi) == mesh.origin(rdo)){ rdo = basel; }
+		// Merge loop
+		while(true){
+			// Locate the first left site to be encountered by the rising bubble, delete left edges out of basel.dest that fail the circle test
+			int lcand = mesh.oNext(mesh.sym(basel));
+			if(valid(lcand, basel)){
+				while(inCircle(mesh.dest(basel), mesh.origin(basel), mesh.dest(lcand), mesh.dest(mesh.oNext(lcand)))){
+					int temp = mesh.oNext(lcand);
+					delete(lcand, hull);
+					lcand = temp;
+				}
+			}
+			// Symmetrically for the right site
+			int rcand = mesh.oPrev(basel);
+			if(valid(rcand, basel)){
+				while(inCircle(mesh.dest(basel), mesh.origin(basel), mesh.dest(rcand), mesh.dest(mesh.oPrev(rcand)))){
+					int temp = mesh.oPrev(rcand);
+					delete(rcand, hull);
+					rcand = temp;
+				}
+			}
+			boolean lValid = valid(lcand, basel), rValid = valid(rcand, basel);
+			if(!lValid && !rValid){
+				// basel is the upper common tangent
+				break;
+			}
+			// The next cross edge connects to the candidate whose circle is empty
+			if(!lValid || (rValid && inCircle(mesh.dest(lcand), mesh.origin(lcand), mesh.origin(rcand), mesh.dest(rcand)))){
+				basel = connect(rcand, mesh.sym(basel), hull);
+			}
+			else{
+				basel = connect(mesh.sym(basel), mesh.sym(lcand), hull);
+			}
+		}
+		hull.le = ldo;
+		hull.re = rdo;
+	}
+
+	private boolean valid(int e, int basel){
+		return mesh.rightOf(mesh.dest(e), basel);
+	}
+
+	private double det3(int a, int b, int c){
+		return mesh.det3(a, b, c);
+	}
+
+	private boolean inCircle(int a, int b, int c, int d){
+		return mesh.inCircle(a, b, c, d);
+	}
+
+	// Edges of a task
+	private int newEdge(int origin, int dest, Hull hull){
+		int quad;
+		if(hull.freeCount > 0){
+			quad = hull.free[--hull.freeCount];
+		}
+		else{
+			quad = nextQuad.getAndIncrement();
+			if(quad >= quadCapacity){
+				throw new IllegalStateException("Mesh has more than " + quadCapacity + " edges");
+			}
+		}
+		return mesh.initEdge(quad, origin, dest);
+	}
+
+	private int connect(int a, int b, Hull hull){
+		/* Same as QuadEdgeMesh.connect, but without marking faces dirty, as
+		 * Voronoi vertexes of a newly built mesh are not computed yet.
+		 */
+		int e = newEdge(mesh.dest(a), mesh.origin(b), hull);
+		mesh.splice(e, mesh.lNext(a));
+		mesh.splice(mesh.sym(e), b);
+		return e;
+	}
+
+	private void delete(int e, Hull hull){
+		mesh.unlink(e);
+		mesh.clearQuad(e >> 2);
+		hull.release(e >> 2);
+	}
+
+}
\ No newline at end of file
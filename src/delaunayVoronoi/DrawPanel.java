@@ -1,13 +1,22 @@
 package delaunayVoronoi;
 
+import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.Panel;
 import java.awt.Point;
 import java.awt.Polygon;
+import java.awt.Rectangle;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.HashSet;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
 
 public class DrawPanel extends Panel {
 	private static final long serialVersionUID = -7559497381715935304L;
@@ -20,212 +29,523 @@ public class DrawPanel extends Panel {
 	private static final Color CLR_POINT_IN_CELL = Color.RED;
 	private static final Color CLR_POINT_IN_CELL_POLY = new Color(255, 224, 192);
 	
-	private ProgramApplet applet;
-	Point pointInCell = null;
+	// Layers, in order of painting
+	private static final int LAYER_VORONOI_EDGES = 0;
+	private static final int LAYER_VORONOI_VERTEXES = 1;
+	private static final int LAYER_DELAUNAY = 2;
+	private static final int LAYER_CIRCLES = 3;
+	private static final int LAYER_SITES = 4;
+	private static final int LAYER_COUNT = 5;
+	private static final int MARGIN = 4;	// How far from its coordinates an element can paint (site points, rounding)
+	private static final int DRAG_THRESHOLD = 3;	// Mouse moved by less pixels is a click
+	private static final double MIN_ZOOM = 1e-3, MAX_ZOOM = 1e4;
+	private static final int LOD_PIXELS_PER_SITE = 16;	// Less pixels per visible site switch to density of sites
+	
+	// Painted triangulation and shown layers, set by the applet (or by anyone painting offscreen)
+	private Triangulation DT;
+	private boolean showDelaunay = true, showVoronoi = false, showCircles = false;
+	Point2D pointInCell = null;	// In world coordinates
+	boolean culling = true;	// Paints only faces which can reach into the painted area, tests compare with all faces
+	// View, world coordinates of top left corner and pixels per unit
+	private double viewX = 0, viewY = 0, zoom = 1;
+	// Cached layers
+	private BufferedImage[] layers = new BufferedImage[LAYER_COUNT];
+	private boolean[] layerValid = new boolean[LAYER_COUNT];
+	private Triangulation layersDT = null;
+	private MeshSnapshot mesh = null;	// Published snapshot of layersDT, which is painted
+	private Executor writer = null;	// Thread changing the triangulation, null for the painting thread
+	// Level of detail
+	private SiteDensity density = null;
+	private boolean densityStale = false;
+	private boolean showDensity = false;	// Sites layer shows density, other layers are hidden
 
-	public DrawPanel(ProgramApplet applet) {
-		this.applet = applet;
+	public DrawPanel(Triangulation DT) {
+		this.DT = DT;
 		final DrawPanel thisObj = this;
-		addMouseListener(new MouseAdapter() {
+		MouseAdapter mouse = new MouseAdapter() {
+			private Point pressed = null, last = null;
+			private boolean dragging = false;
+			
+			@Override
+			public void mousePressed(MouseEvent e) {
+				pressed = last = e.getPoint();
+				dragging = false;
+			}
+			
+			@Override
+			public void mouseDragged(MouseEvent e) {
+				// Dragging pans the view
+				if(pressed == null){
+					return;
+				}
+				if(!dragging && pressed.distance(e.getPoint()) < DRAG_THRESHOLD){
+					return;
+				}
+				dragging = true;
+				pan(last.x - e.getX(), last.y - e.getY());
+				last = e.getPoint();
+			}
+			
 			@Override
 			public void mouseReleased(MouseEvent e) {
+				pressed = null;
+				if(dragging){
+					dragging = false;
+					return;
+				}
 				int but = e.getButton();
 				if(but == MouseEvent.BUTTON1){
 					// Left click
-					thisObj.applet.DT.addSite(new DataPoint(DataPoint.SITE, e.getX(), e.getY()));
+					thisObj.addSites(new Point2D[]{ toWorld(e.getX(), e.getY()) });
 				}
 				else if(but == MouseEvent.BUTTON2 || but == MouseEvent.BUTTON3){
 					// Right click
-					pointInCell = new Point(e.getX(), e.getY());
+					pointInCell = toWorld(e.getX(), e.getY());
 				}
 				thisObj.repaint();
 			}
-		});
+			
+			@Override
+			public void mouseWheelMoved(MouseWheelEvent e) {
+				// Zoom around the cursor
+				zoomAt(e.getX(), e.getY(), Math.pow(1.25, -e.getPreciseWheelRotation()));
+			}
+		};
+		addMouseListener(mouse);
+		addMouseMotionListener(mouse);
+		addMouseWheelListener(mouse);
+	}
+
+	public void setTriangulation(Triangulation DT){
+		this.DT = DT;
+	}
+
+	public void setWriter(Executor writer){
+		this.writer = writer;
+	}
+
+	public void addSites(final Point2D[] sites){
+		/* Adds sites as one batch on the writer thread and repaints when they
+		 * are published. The triangulation is taken now, so sites added
+		 * before it is replaced do not get to the new one.
+		 */
+		final Triangulation dt = DT;
+		Runnable add = new Runnable() {
+			@Override
+			public void run() {
+				dt.addAll(sites);
+				repaint();
+			}
+		};
+		if(writer != null){
+			writer.execute(add);
+		}
+		else{
+			add.run();
+		}
+	}
+
+	public void setLayers(boolean delaunay, boolean voronoi, boolean circles){
+		showDelaunay = delaunay;
+		showVoronoi = voronoi;
+		showCircles = circles;
+	}
+	
+	// View
+	public Point2D toWorld(double x, double y){
+		// World coordinates of a pixel
+		return new Point2D.Double(viewX + x / zoom, viewY + y / zoom);
+	}
+	
+	public Rectangle2D visibleArea(){
+		// Visible part of the world
+		return new Rectangle2D.Double(viewX, viewY, getWidth() / zoom, getHeight() / zoom);
+	}
+	
+	public void pan(int dx, int dy){
+		// Moves view by given number of pixels
+		viewX += dx / zoom;
+		viewY += dy / zoom;
+		discardLayers();
+		repaint();
+	}
+	
+	public void zoomAt(int x, int y, double factor){
+		// Zooms by given factor, pixel [x, y] stays at the same world point
+		Point2D fixed = toWorld(x, y);
+		zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+		viewX = fixed.getX() - x / zoom;
+		viewY = fixed.getY() - y / zoom;
+		discardLayers();
+		repaint();
+	}
+	
+	public void resetView(){
+		viewX = 0;
+		viewY = 0;
+		zoom = 1;
+		discardLayers();
+		repaint();
 	}
 
 	// Main paint method
+	@Override
+	public void update(Graphics g) {
+		// Layers cover the whole panel, so it is not cleared before painting
+		paint(g);
+	}
+	
 	public void paint(final Graphics g) {
+		updateLayers();
 		// Clear
 		g.setColor(Color.WHITE);
 		g.fillRect(0, 0, getWidth(), getHeight());
 		// Paint extras
-		if(pointInCell != null){
+		if(pointInCell != null && mesh != null){
 			paintPointInCell(g);
 		}
-		if(applet.cbVoronoi.getState()){
-			paintVoronoi(g);
+		// Paint visible layers
+		boolean[] invalid = new boolean[LAYER_COUNT];
+		for(int layer = 0; layer < LAYER_COUNT; layer++){
+			invalid[layer] = layerVisible(layer) && !layerValid[layer];
 		}
-		if(applet.cbDelaunay.getState()){
-			paintDelaunay(g);
+		paintLayers(invalid, null);
+		for(int layer = 0; layer < LAYER_COUNT; layer++){
+			if(layerVisible(layer)){
+				g.drawImage(layers[layer], 0, 0, null);
+			}
 		}
-		if(applet.cbCircles.getState()){
-			paintCircles(g);
+	}
+	
+	public void discardLayers(){
+		// Forces all layers to be painted again
+		Arrays.fill(layerValid, false);
+	}
+	
+	// Cached layers
+	/* Every layer is painted into its own transparent image, and paint only
+	 * composes visible layers. When the triangulation changes, visible layers
+	 * are repainted only in the area changed since the last paint, hidden
+	 * layers are painted whole when they are shown again. The area is cleared
+	 * and elements reaching into it are painted whole, without clipping (it
+	 * changes pixels of some shapes). Elements outside of the area are
+	 * unchanged, so they get the same pixels, which is why every layer has a
+	 * single color. Layers show the latest snapshot published by the
+	 * triangulation, which may be changed by another thread, so the
+	 * triangulation must publish snapshots. Area changed between the painted
+	 * snapshot and the latest one is repainted. Only faces which can reach
+	 * into the view are painted, so painting time depends on the number of
+	 * visible sites. When there are
+	 * more visible sites than LOD_PIXELS_PER_SITE pixels for each, only their
+	 * density is painted, which takes time depending on the number of pixels.
+	 */
+	private boolean layerVisible(int layer){
+		if(showDensity){
+			return layer == LAYER_SITES;
+		}
+		switch(layer){
+			case LAYER_VORONOI_EDGES:
+			case LAYER_VORONOI_VERTEXES:	return showVoronoi;
+			case LAYER_DELAUNAY:			return showDelaunay;
+			case LAYER_CIRCLES:				return showCircles;
+			default:						return true;
+		}
+	}
+	
+	private void updateLayers(){
+		int width = Math.max(1, getWidth()), height = Math.max(1, getHeight());
+		if(layers[0] == null || layers[0].getWidth() != width || layers[0].getHeight() != height){
+			for(int layer = 0; layer < LAYER_COUNT; layer++){
+				layers[layer] = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+			}
+			discardLayers();
+		}
+		if(DT != layersDT){
+			// New triangulation
+			layersDT = DT;
+			mesh = null;
+			density = null;
+			discardLayers();
+		}
+		MeshSnapshot latest = layersDT.getSnapshot();
+		if(latest == null){
+			// Nothing published yet
+			discardLayers();
+			return;
 		}
-		// Paint sites
-		traverse(
-			TRAVERSE_VERTEXES,
-			applet.DT.getFirstEdge(),
-			new EdgeProcessor() {
-				@Override
-				public void process(Edge e) {
-					paintPoint(g, e.origin(), CLR_DELAUNAY_SITE, 3);
+		if(latest != mesh){
+			Rectangle2D changed = null;
+			if(mesh != null){
+				changed = latest.getChangedArea(mesh.getVersion());
+			}
+			else{
+				discardLayers();
+			}
+			mesh = latest;
+			if(changed != null){
+				densityStale = true;
+				if(showDensity){
+					layerValid[LAYER_SITES] = false;
+				}
+				else{
+					repaintArea(changed, width, height);
 				}
-		});
-		// Bug fix for first site
-		if(applet.DT.size() == 1){
-			paintPoint(g, applet.DT.getFirstEdge().lNext().dest(), CLR_DELAUNAY_SITE, 3);
+			}
+		}
+		// Choose level of detail, density from the last change is good enough for that
+		boolean manySites = false;
+		if((long)mesh.size() * LOD_PIXELS_PER_SITE > (long)width * height){
+			if(density == null){
+				density = new SiteDensity(mesh);
+				densityStale = false;
+			}
+			Rectangle2D view = visibleArea();
+			manySites = (long)density.sitesIn(view.getX(), view.getY(), view.getWidth(), view.getHeight()) * LOD_PIXELS_PER_SITE > (long)width * height;
+		}
+		if(manySites != showDensity){
+			showDensity = manySites;
+			discardLayers();
 		}
 	}
 	
-	// Helper paint methods
-	private void paintDelaunay(final Graphics g){
-		traverse(
-			TRAVERSE_EDGES,
-			applet.DT.getFirstEdge(),
-			new EdgeProcessor() {
-				@Override
-				public void process(Edge e) {
-					//# DEBUG if(controller.DT.edgeToBoundary(e)){ return; }
-					paintLine(g, e.origin(), e.dest(), CLR_DELAUNAY_EDGE);
+	private void repaintArea(Rectangle2D changed, int width, int height){
+		// Repaints changed part of the world in visible layers
+		Rectangle area = new Rectangle(0, 0, width, height).intersection(grow(toScreen(changed), MARGIN));
+		if(area.isEmpty()){
+			return;
+		}
+		boolean[] valid = new boolean[LAYER_COUNT];
+		for(int layer = 0; layer < LAYER_COUNT; layer++){
+			valid[layer] = layerValid[layer] && layerVisible(layer);
+			layerValid[layer] = valid[layer];
+		}
+		paintLayers(valid, area);
+	}
+	
+	private void paintLayers(boolean[] selected, Rectangle area){
+		// Paints given area (null for whole) of selected layers, by one walk over faces which can reach into it
+		final Graphics2D[] g = new Graphics2D[LAYER_COUNT];
+		if(area == null){
+			area = new Rectangle(0, 0, layers[0].getWidth(), layers[0].getHeight());
+		}
+		try{
+			boolean any = false;
+			for(int layer = 0; layer < LAYER_COUNT; layer++){
+				if(selected[layer]){
+					g[layer] = layers[layer].createGraphics();
+					g[layer].setComposite(AlphaComposite.Clear);
+					g[layer].fillRect(area.x, area.y, area.width, area.height);
+					g[layer].setComposite(AlphaComposite.SrcOver);
+					any = true;
 				}
-		});
-	}
-	
-	private void paintVoronoi(final Graphics g){
-		traverse(
-			TRAVERSE_EDGES,
-			applet.DT.getFirstEdge().rot(),
-			new EdgeProcessor() {
-				@Override
-				public void process(Edge e) {
-					if(e.origin().type == DataPoint.FACE){
-						paintPoint(g, e.origin(), CLR_VORONOI_VERTEX, 2);
-						if(e.dest().type == DataPoint.FACE){
-							paintLine(g, e.origin(), e.dest(), CLR_VORONOI_EDGE);
-						}
-					}
+			}
+			if(!any || mesh == null){
+				return;
+			}
+			if(showDensity){
+				// Only sites layer is visible and it is always painted whole
+				if(densityStale){
+					density = new SiteDensity(mesh);
+					densityStale = false;
 				}
-		});
-	}
-	
-	private void paintCircles(final Graphics g){
-		traverse(
-			TRAVERSE_VERTEXES,
-			applet.DT.getFirstEdge().rot(),
-			new EdgeProcessor() {
-				@Override
-				public void process(Edge e) {
-					if(e.origin().type == DataPoint.FACE){
-						// Don`t paint circles with boundary
-						Edge temp = e.rot().lNext();
-						while(!temp.equals(e.rot())){
-							if(applet.DT.edgeToFromBoundary(temp)){
-								return;
+				int[] pixels = ((DataBufferInt)layers[LAYER_SITES].getRaster().getDataBuffer()).getData();
+				density.paint(pixels, area.width, area.height, viewX, viewY, zoom, CLR_DELAUNAY_SITE.getRGB());
+			}
+			else{
+				EdgeProcessor paint = new EdgeProcessor() {
+					@Override
+					public void process(int e) {
+						for(int layer = 0; layer < LAYER_COUNT; layer++){
+							if(g[layer] != null){
+								paintFace(layer, g[layer], e);
 							}
-							temp = temp.lNext();
 						}
-						paintCircle(g, e.origin(), e.rot().origin(), CLR_CIRCLE);
 					}
+				};
+				if(culling){
+					mesh.forEachFaceNear(toWorld(grow(area, MARGIN)), paint);
+				}
+				else{
+					mesh.forEachFace(paint);
 				}
-		});
+			}
+			for(int layer = 0; layer < LAYER_COUNT; layer++){
+				if(selected[layer]){
+					layerValid[layer] = true;
+				}
+			}
+		}
+		finally{
+			for(Graphics2D lg : g){
+				if(lg != null){
+					lg.dispose();
+				}
+			}
+		}
+	}
+	
+	private void paintFace(int layer, Graphics g, int triSide){
+		// Paints the part of a layer belonging to face on the left of triSide (shared parts are painted by both faces)
+		if(layer == LAYER_CIRCLES){
+			paintFaceCircle(g, triSide);
+			return;
+		}
+		if(layer == LAYER_VORONOI_VERTEXES){
+			paintVoronoiVertex(g, triSide);
+			return;
+		}
+		int e = triSide;
+		do{
+			switch(layer){
+				case LAYER_VORONOI_EDGES:	paintVoronoiEdge(g, mesh.rotInv(e)); break;
+				case LAYER_DELAUNAY:		paintDelaunayEdge(g, e); break;
+				default:					paintSite(g, e);
+			}
+			e = mesh.lNext(e);
+		} while(e != triSide);
+	}
+	
+	private static Rectangle grow(Rectangle2D r, int margin){
+		// Smallest integer rectangle containing r, grown by margin on every side
+		int	x1 = (int)Math.max(Integer.MIN_VALUE / 2, Math.floor(r.getMinX()) - margin),
+			y1 = (int)Math.max(Integer.MIN_VALUE / 2, Math.floor(r.getMinY()) - margin),
+			x2 = (int)Math.min(Integer.MAX_VALUE / 2, Math.ceil(r.getMaxX()) + margin),
+			y2 = (int)Math.min(Integer.MAX_VALUE / 2, Math.ceil(r.getMaxY()) + margin);
+		return new Rectangle(x1, y1, x2 - x1, y2 - y1);
+	}
+	
+	private Rectangle2D toScreen(Rectangle2D r){
+		return new Rectangle2D.Double((r.getX() - viewX) * zoom, (r.getY() - viewY) * zoom, r.getWidth() * zoom, r.getHeight() * zoom);
+	}
+	
+	private Rectangle2D toWorld(Rectangle2D r){
+		return new Rectangle2D.Double(viewX + r.getX() / zoom, viewY + r.getY() / zoom, r.getWidth() / zoom, r.getHeight() / zoom);
+	}
+	
+	private int screenX(double x){
+		return (int)Math.round((x - viewX) * zoom);
+	}
+	
+	private int screenY(double y){
+		return (int)Math.round((y - viewY) * zoom);
+	}
+	
+	// Helper paint methods
+	private void paintSite(Graphics g, int fromSite){
+		if(!mesh.edgeFromBoundary(fromSite)){
+			paintSite(g, mesh.origin(fromSite), CLR_DELAUNAY_SITE, 3);
+		}
+	}
+	
+	private void paintDelaunayEdge(Graphics g, int e){
+		if(!mesh.edgeToFromBoundary(e)){
+			int a = mesh.origin(e), b = mesh.dest(e);
+			paintLine(g, mesh.x(a), mesh.y(a), mesh.x(b), mesh.y(b), CLR_DELAUNAY_EDGE);
+		}
+	}
+	
+	private void paintVoronoiEdge(Graphics g, int dual){
+		// Ignore Voronoi edges crossing boundary edges
+		if(mesh.edgeToFromBoundary(mesh.rot(dual))){
+			return;
+		}
+		DataPoint from = mesh.voronoiVertex(dual);
+		DataPoint to = mesh.voronoiVertex(mesh.sym(dual));
+		if(from.type == DataPoint.FACE && to.type == DataPoint.FACE){
+			paintLine(g, from.x, from.y, to.x, to.y, CLR_VORONOI_EDGE);
+		}
+	}
+	
+	private void paintVoronoiVertex(Graphics g, int triSide){
+		// Vertexes of Voronoi edges which are painted (they are painted over the edges)
+		int e = triSide;
+		do{
+			if(!mesh.edgeToFromBoundary(e)){
+				DataPoint center = mesh.voronoiVertex(mesh.rotInv(triSide));
+				if(center.type == DataPoint.FACE){
+					paintPoint(g, center.x, center.y, CLR_VORONOI_VERTEX, 2);
+				}
+				return;
+			}
+			e = mesh.lNext(e);
+		} while(e != triSide);
+	}
+	
+	private void paintFaceCircle(Graphics g, int triSide){
+		// Don`t paint circles with boundary
+		int temp = triSide;
+		do{
+			if(mesh.edgeToFromBoundary(temp)){
+				return;
+			}
+			temp = mesh.lNext(temp);
+		} while(temp != triSide);
+		DataPoint center = mesh.voronoiVertex(mesh.rotInv(triSide));
+		if(center.type == DataPoint.FACE){
+			int a = mesh.origin(triSide);
+			paintCircle(g, center.x, center.y, mesh.x(a), mesh.y(a), CLR_CIRCLE);
+		}
 	}
 	
 	private void paintPointInCell(final Graphics g){
 		try{
 			// Bug fix for 0 or 1 sites
-			if(applet.DT.size() < 2){
+			if(mesh.size() < 2){
 				g.setColor(CLR_POINT_IN_CELL_POLY);
 				g.fillRect(0, 0, getWidth(), getHeight());
-				paintPoint(g, pointInCell, CLR_POINT_IN_CELL, 3);
+				paintPoint(g, pointInCell.getX(), pointInCell.getY(), CLR_POINT_IN_CELL, 3);
 			}
 			
-			class ClosestPoint{
-				public Edge leavingEdge = null;
-				public double dist = Double.MAX_VALUE;
-			}
-			final ClosestPoint closest = new ClosestPoint();
-			final DrawPanel thisObj = this;
-			// Find the closest site
-			traverse(
-				TRAVERSE_VERTEXES,
-				thisObj.applet.DT.getFirstEdge(),
-				new EdgeProcessor() {
-					@Override
-					public void process(Edge e) {
-						double	dx = pointInCell.getX() - e.origin().getX(),
-								dy = pointInCell.getY() - e.origin().getY(),
-								dist = Math.sqrt(dx*dx + dy*dy);
-						if(dist < closest.dist){
-							closest.leavingEdge = e;
-							closest.dist = dist;
-						}
-					}
-			});
-			// Traverse point of Voronoi polygon
-			Edge e = closest.leavingEdge.rot();
+			// Find the closest site and its Voronoi polygon
+			int closest = mesh.nearestSite(pointInCell.getX(), pointInCell.getY());
+			if(closest == MeshSnapshot.NONE){
+				return;
+			}
 			Polygon poly = new Polygon();
-			do{
-				poly.addPoint(e.origin().x, e.origin().y);
-				e = e.lNext();
-			} while(!e.equals(closest.leavingEdge.rot()));
+			for(DataPoint vertex : mesh.voronoiCell(closest)){
+				poly.addPoint(screenX(vertex.x), screenY(vertex.y));
+			}
 			g.setColor(CLR_POINT_IN_CELL_POLY);
 			g.fillPolygon(poly);
-			paintPoint(g, pointInCell, CLR_POINT_IN_CELL, 3);
-			paintPoint(g, closest.leavingEdge.origin(), CLR_DELAUNAY_EDGE, 6);
+			paintPoint(g, pointInCell.getX(), pointInCell.getY(), CLR_POINT_IN_CELL, 3);
+			paintSite(g, closest, CLR_DELAUNAY_EDGE, 6);
 		}
 		catch(NullPointerException e){ /* Should never happen, but, you know... */ }
 	}
 	
-	private void paintPoint(Graphics g, Point p, Color color, int radius){
+	private void paintSite(Graphics g, int site, Color color, int radius){
+		paintPoint(g, mesh.x(site), mesh.y(site), color, radius);
+	}
+	
+	private void paintPoint(Graphics g, double x, double y, Color color, int radius){
 		g.setColor(color);
-		g.fillOval(p.x - radius, p.y - radius, radius * 2, radius * 2);
+		g.fillOval(screenX(x) - radius, screenY(y) - radius, radius * 2, radius * 2);
 	}
 
-	private void paintLine(Graphics g, Point a, Point b, Color color){
+	private void paintLine(Graphics g, double ax, double ay, double bx, double by, Color color){
+		// Drawn always in the same direction, because pixels of a line depend on it and cached layers paint some lines twice
+		if(ax > bx || (ax == bx && ay > by)){
+			double temp = ax;
+			ax = bx;
+			bx = temp;
+			temp = ay;
+			ay = by;
+			by = temp;
+		}
 		g.setColor(color);
-		g.drawLine(a.x, a.y, b.x, b.y);
+		g.drawLine(screenX(ax), screenY(ay), screenX(bx), screenY(by));
 	}
 	
-	private void paintCircle(Graphics g, Point s, Point a, Color color){
+	private void paintCircle(Graphics g, double sx, double sy, double ax, double ay, Color color){
 		// Draws a circle with center s and through point a
 		g.setColor(color);
-		double	dx = s.getX() - a.getX(),
-				dy = s.getY() - a.getY();
+		double	dx = sx - ax,
+				dy = sy - ay;
 		double radius = Math.sqrt(dx*dx + dy*dy);
-		g.drawOval(	(int)Math.round(s.getX() - radius),
-					(int)Math.round(s.getY() - radius),
-					(int)Math.round(radius * 2),
-					(int)Math.round(radius * 2));
-	}
-	
-	// Graph traversal
-	private static final int TRAVERSE_EDGES = 1;
-	private static final int TRAVERSE_VERTEXES = 2;
-	
-	private static abstract class EdgeProcessor{
-		public abstract void process(Edge e);
-	}
-	
-	private void traverse(int mode, Edge firstEdge, EdgeProcessor proc){
-		traverseRec(mode, firstEdge, new HashSet<Edge>(), new HashSet<DataPoint>(), proc);
+		g.drawOval(	screenX(sx - radius),
+					screenY(sy - radius),
+					(int)Math.round(radius * 2 * zoom),
+					(int)Math.round(radius * 2 * zoom));
 	}
 	
-	private void traverseRec(int mode, Edge e, HashSet<Edge> visitedE, HashSet<DataPoint> processedV, EdgeProcessor proc){
-		if(!visitedE.add(e)){
-			return;
-		}
-		// Ignore boundary edges/sites/faces
-		if(	!applet.DT.edgeToFromBoundary(e) &&
-			!applet.DT.edgeToFromBoundary(e.rot())
-		){
-			// Process all edges or only those with unprocessed origin
-			if(mode == TRAVERSE_EDGES || processedV.add(e.origin())){
-				proc.process(e);
-			}
-		}
-		traverseRec(mode, e.sym(), visitedE, processedV, proc);
-		traverseRec(mode, e.oNext(), visitedE, processedV, proc);
-		traverseRec(mode, e.lNext(), visitedE, processedV, proc);
-	};
-	
 }
\ No newline at end of file
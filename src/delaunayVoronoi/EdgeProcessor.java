@@ -0,0 +1,8 @@
+package delaunayVoronoi;
+
+public abstract class EdgeProcessor {
+	
+	// Called once for every element found by a mesh traversal, e is an edge of the QuadEdgeMesh of the Triangulation
+	public abstract void process(int e);
+
+}
\ No newline at end of file
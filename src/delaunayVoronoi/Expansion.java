@@ -0,0 +1,120 @@
+package delaunayVoronoi;
+
+import java.util.Arrays;
+
+class Expansion {
+	/* Exact arithmetic on floating-point expansions (Shewchuk, 1997). A value
+	 * is stored as an array of non-overlapping doubles in increasing order of
+	 * magnitude, whose exact sum is the value. Used by Operators when the
+	 * floating-point result of a predicate is too close to zero to be trusted.
+	 */
+	private static final double SPLITTER = 134217729.0;	// 2^27 + 1
+
+	static double[] diff(double a, double b){
+		// Exact a - b as an expansion of two components
+		double x = a - b;
+		double bv = a - x;
+		double av = x + bv;
+		double br = bv - b;
+		double ar = a - av;
+		return new double[]{ ar + br, x };
+	}
+
+	static double[] sum(double[] e, double[] f){
+		// Exact e + f, adds components of f one by one
+		double[] h = e;
+		for(double b : f){
+			h = grow(h, b);
+		}
+		return h;
+	}
+
+	static double[] negate(double[] e){
+		double[] h = new double[e.length];
+		for(int i = 0; i < e.length; i++){
+			h[i] = -e[i];
+		}
+		return h;
+	}
+
+	static double[] product(double[] e, double[] f){
+		// Exact e * f as a sum of e scaled by every component of f
+		double[] h = new double[]{ 0 };
+		for(double b : f){
+			h = sum(h, scale(e, b));
+		}
+		return h;
+	}
+
+	static double estimate(double[] e){
+		// Approximation of the value, with the correct sign
+		double result = 0;
+		for(double c : e){
+			result += c;
+		}
+		return result;
+	}
+
+	private static double[] grow(double[] e, double b){
+		// Exact e + b, zero components are eliminated
+		double[] h = new double[e.length + 1];
+		int count = 0;
+		double q = b;
+		for(double c : e){
+			double x = q + c;
+			double bv = x - q;
+			double av = x - bv;
+			double hh = (q - av) + (c - bv);
+			if(hh != 0){
+				h[count++] = hh;
+			}
+			q = x;
+		}
+		if(q != 0 || count == 0){
+			h[count++] = q;
+		}
+		return Arrays.copyOf(h, count);
+	}
+
+	private static double[] scale(double[] e, double b){
+		// Exact e * b, zero components are eliminated
+		double[] h = new double[2 * e.length];
+		int count = 0;
+		double c = SPLITTER * b;
+		double bHi = c - (c - b), bLo = b - bHi;
+		double q = 0;
+		for(int i = 0; i < e.length; i++){
+			// Exact product of e[i] and b (Dekker)
+			double p1 = e[i] * b;
+			c = SPLITTER * e[i];
+			double aHi = c - (c - e[i]), aLo = e[i] - aHi;
+			double p0 = aLo * bLo - (((p1 - aHi * bHi) - aLo * bHi) - aHi * bLo);
+			if(i == 0){
+				if(p0 != 0){
+					h[count++] = p0;
+				}
+				q = p1;
+				continue;
+			}
+			// q + p0
+			double s = q + p0;
+			double bv = s - q;
+			double av = s - bv;
+			double hh = (q - av) + (p0 - bv);
+			if(hh != 0){
+				h[count++] = hh;
+			}
+			// p1 + s, where |p1| >= |s|
+			q = p1 + s;
+			hh = s - (q - p1);
+			if(hh != 0){
+				h[count++] = hh;
+			}
+		}
+		if(q != 0 || count == 0){
+			h[count++] = q;
+		}
+		return Arrays.copyOf(h, count);
+	}
+
+}
\ No newline at end of file
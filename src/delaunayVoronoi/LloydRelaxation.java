@@ -0,0 +1,277 @@
+package delaunayVoronoi;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class LloydRelaxation {
+	/* Lloyd's algorithm: every iteration moves each site to the centroid of
+	 * its Voronoi cell clipped to a convex boundary polygon, so the diagram
+	 * converges to a centroidal Voronoi tessellation. Cells are computed in
+	 * parallel straight from the mesh, vertexes of a cell are origins of the
+	 * rot() dual ring around its site. CircumCenters of dirty faces are
+	 * computed locally without storing them, so the mesh is only read. Cells
+	 * of hull sites (neighbours of a corner of the bounding triangle) are
+	 * unbounded, they are cut from the boundary by bisectors with their
+	 * neighbours instead. Sites are then moved by Triangulation.moveAll,
+	 * mostly in place with local flips, so the mesh is never built again.
+	 * The triangulation should be in lazy Voronoi mode, otherwise every move
+	 * computes circumCenters which are not needed. Sites are taken from the
+	 * triangulation at the start of relax and ordered along Hilbert curve,
+	 * so that cells computed by one task and consecutive moves are close to
+	 * each other in the mesh. Nobody else may change the triangulation
+	 * during relax.
+	 */
+	private static final int BATCH_THRESHOLD = 4096;
+
+	private Triangulation dt;
+	private QuadEdgeMesh mesh;
+	private ForkJoinPool pool;
+	private double[] boundaryX, boundaryY;	// Convex polygon in CCW order
+	private int[] sites;
+	private double[] centroidX, centroidY;	// NaN for sites whose clipped cell is empty
+	private int iterations = 0;
+	private double lastShift = Double.NaN;
+
+	public LloydRelaxation(Triangulation dt, Rectangle2D boundary){
+		this(dt, new Point2D[]{
+				new Point2D.Double(boundary.getMinX(), boundary.getMinY()),
+				new Point2D.Double(boundary.getMaxX(), boundary.getMinY()),
+				new Point2D.Double(boundary.getMaxX(), boundary.getMaxY()),
+				new Point2D.Double(boundary.getMinX(), boundary.getMaxY())
+		});
+	}
+
+	public LloydRelaxation(Triangulation dt, Point2D[] boundary){
+		this(dt, boundary, ForkJoinPool.commonPool());
+	}
+
+	public LloydRelaxation(Triangulation dt, Point2D[] boundary, ForkJoinPool pool){
+		// Boundary is a convex polygon with vertexes in CCW order
+		int n = boundary.length;
+		for(int i = 0; i < n; i++){
+			if(n < 3 || Operators.det3(boundary[i], boundary[(i + 1) % n], boundary[(i + 2) % n]) <= 0){
+				throw new IllegalArgumentException("Boundary is not a convex polygon in CCW order");
+			}
+		}
+		this.dt = dt;
+		this.mesh = dt.getMesh();
+		this.pool = pool;
+		boundaryX = new double[n];
+		boundaryY = new double[n];
+		for(int i = 0; i < n; i++){
+			boundaryX[i] = boundary[i].getX();
+			boundaryY[i] = boundary[i].getY();
+		}
+	}
+
+	public int relax(int maxIterations, double tolerance){
+		/* Runs at most maxIterations iterations, stops after an iteration in
+		 * which no site moved farther than tolerance. Returns the number of
+		 * iterations run.
+		 */
+		collectSites();
+		int done = 0;
+		while(done < maxIterations){
+			long start = Statistics.ENABLED ? System.nanoTime() : 0;
+			pool.invoke(new CellTask(0, sites.length));
+			lastShift = dt.moveAll(sites, centroidX, centroidY);
+			done++;
+			iterations++;
+			if(Statistics.ENABLED){
+				Statistics.relaxIterations.increment();
+				Statistics.relaxNanos.add(System.nanoTime() - start);
+			}
+			if(lastShift <= tolerance){
+				break;
+			}
+		}
+		return done;
+	}
+
+	public int getIterations(){
+		// Iterations run by all calls of relax
+		return iterations;
+	}
+
+	public double getLastShift(){
+		// Longest distance a site moved in the last iteration (NaN before the first one)
+		return lastShift;
+	}
+
+	private void collectSites(){
+		int count = 0;
+		int[] found = new int[dt.size()];
+		for(int site = QuadEdgeMesh.BOUNDS; site < mesh.siteCount(); site++){
+			if(mesh.edgeOf(site) != QuadEdgeMesh.NONE){
+				found[count++] = site;
+			}
+		}
+		Point2D[] points = new Point2D[count];
+		for(int i = 0; i < count; i++){
+			points[i] = new Point2D.Double(mesh.x(found[i]), mesh.y(found[i]));
+		}
+		int[] order = SpatialSort.hilbertOrder(points, 0, count);
+		sites = new int[count];
+		for(int i = 0; i < count; i++){
+			sites[i] = found[order[i]];
+		}
+		centroidX = new double[count];
+		centroidY = new double[count];
+	}
+
+	// Cells
+	private void centroid(int i, Polygon cell){
+		// Centroid of clipped cell of sites[i], coordinates of the cell are relative to the site
+		int site = sites[i];
+		double sx = mesh.x(site), sy = mesh.y(site);
+		int fromSite = mesh.edgeOf(site);
+		boolean hull = false;
+		int e = fromSite;
+		do{
+			if(mesh.dest(e) < QuadEdgeMesh.BOUNDS){
+				hull = true;
+			}
+			e = mesh.oNext(e);
+		} while(e != fromSite);
+		cell.size = 0;
+		if(hull){
+			// Boundary cut by bisectors with neighbouring sites
+			for(int k = 0; k < boundaryX.length; k++){
+				cell.add(boundaryX[k] - sx, boundaryY[k] - sy);
+			}
+			do{
+				int b = mesh.dest(e);
+				if(b >= QuadEdgeMesh.BOUNDS){
+					double nx = mesh.x(b) - sx, ny = mesh.y(b) - sy;
+					cell.clip(nx, ny, (nx*nx + ny*ny) / 2);
+				}
+				e = mesh.oNext(e);
+			} while(e != fromSite);
+		}
+		else{
+			// Voronoi vertexes of faces around the site (face on the left of e is between e and its oNext), cut by the boundary
+			do{
+				DataPoint center = mesh.center(mesh.rotInv(e));
+				if(center != null){
+					cell.add(center.x - sx, center.y - sy);
+				}
+				else{
+					int b = mesh.dest(e), c = mesh.dest(mesh.oNext(e));
+					double	bx = mesh.x(b) - sx, by = mesh.y(b) - sy,
+							cx = mesh.x(c) - sx, cy = mesh.y(c) - sy;
+					double d = 2*(bx * cy  -  by * cx);
+					double	bSqr = bx*bx + by*by,
+							cSqr = cx*cx + cy*cy;
+					cell.add((cy * bSqr  -  by * cSqr) / d, (bx * cSqr  -  cx * bSqr) / d);
+				}
+				e = mesh.oNext(e);
+			} while(e != fromSite);
+			int n = boundaryX.length;
+			for(int k = 0; k < n; k++){
+				// Keep the left side of boundary edge k
+				double	ax = boundaryX[k] - sx, ay = boundaryY[k] - sy,
+						nx = boundaryY[(k + 1) % n] - boundaryY[k],
+						ny = boundaryX[k] - boundaryX[(k + 1) % n];
+				cell.clip(nx, ny, nx * ax + ny * ay);
+			}
+		}
+		// Centroid of the polygon
+		double area = 0, cx = 0, cy = 0;
+		for(int k = 0; k < cell.size; k++){
+			int l = (k + 1 == cell.size) ? 0 : k + 1;
+			double cross = cell.x[k] * cell.y[l] - cell.x[l] * cell.y[k];
+			area += cross;
+			cx += (cell.x[k] + cell.x[l]) * cross;
+			cy += (cell.y[k] + cell.y[l]) * cross;
+		}
+		if(area > 0){
+			centroidX[i] = sx + cx / (3 * area);
+			centroidY[i] = sy + cy / (3 * area);
+		}
+		else{
+			centroidX[i] = Double.NaN;
+			centroidY[i] = Double.NaN;
+		}
+	}
+
+	private static class Polygon {
+		// Scratch polygon of a task, clipped by half-planes in place
+		private double[] x = new double[16], y = new double[16];
+		private double[] clippedX = new double[16], clippedY = new double[16];
+		private int size = 0;
+
+		void add(double px, double py){
+			if(size == x.length){
+				x = Arrays.copyOf(x, 2 * size);
+				y = Arrays.copyOf(y, 2 * size);
+			}
+			x[size] = px;
+			y[size] = py;
+			size++;
+		}
+
+		void clip(double nx, double ny, double c){
+			// Keeps the part where nx * x + ny * y <= c (Sutherland-Hodgman)
+			boolean outside = false;
+			for(int k = 0; k < size && !outside; k++){
+				outside = nx * x[k] + ny * y[k] > c;
+			}
+			if(!outside){
+				return;
+			}
+			if(clippedX.length < 2 * size){
+				clippedX = new double[2 * size];
+				clippedY = new double[2 * size];
+			}
+			int count = 0;
+			for(int k = 0; k < size; k++){
+				int l = (k + 1 == size) ? 0 : k + 1;
+				double dk = nx * x[k] + ny * y[k] - c, dl = nx * x[l] + ny * y[l] - c;
+				if(dk <= 0){
+					clippedX[count] = x[k];
+					clippedY[count++] = y[k];
+				}
+				if((dk < 0 && dl > 0) || (dk > 0 && dl < 0)){
+					double t = dk / (dk - dl);
+					clippedX[count] = x[k] + t * (x[l] - x[k]);
+					clippedY[count++] = y[k] + t * (y[l] - y[k]);
+				}
+			}
+			double[] swap = x;
+			x = clippedX;
+			clippedX = swap;
+			swap = y;
+			y = clippedY;
+			clippedY = swap;
+			size = count;
+		}
+	}
+
+	private class CellTask extends RecursiveAction {
+		// Centroids of sites from .. to - 1
+		private static final long serialVersionUID = 1L;
+		private int from, to;
+
+		CellTask(int from, int to){
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from <= BATCH_THRESHOLD){
+				Polygon cell = new Polygon();
+				for(int i = from; i < to; i++){
+					centroid(i, cell);
+				}
+				return;
+			}
+			int mid = (from + to) / 2;
+			invokeAll(new CellTask(from, mid), new CellTask(mid, to));
+		}
+	}
+
+}
\ No newline at end of file
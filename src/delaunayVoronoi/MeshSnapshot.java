@@ -0,0 +1,397 @@
+package delaunayVoronoi;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.BitSet;
+
+public class MeshSnapshot {
+	/* Immutable copy of a triangulation, published by Triangulation.publish
+	 * at the end of every change (insertion, addAll batch, removal, move).
+	 * Readers (painting, queries, exports) get the latest one by
+	 * Triangulation.getSnapshot, they never lock and never see a change done
+	 * only partly, while the writer keeps changing the mesh.
+	 * Edges and sites are the ints of the mesh at the time of publishing,
+	 * with the same edge algebra. Sites, oNext and origins of edges and
+	 * circumCenters of faces are kept in pages of PAGE_SIZE sites or
+	 * quad-edges. A new snapshot copies only pages changed since the previous
+	 * one (see QuadEdgeMesh.trackPages), and shares the other pages with it,
+	 * so publishing takes time proportional to the size of the change plus a
+	 * pointer for every page. All methods are safe to call from any number of
+	 * threads, they keep their working state in local variables.
+	 */
+	public static final int NONE = QuadEdgeMesh.NONE;
+	static final int PAGE_SHIFT = 8;
+	static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+	private static final int BOUNDS = QuadEdgeMesh.BOUNDS;
+	private static final int HISTORY = 64;	// Changed areas of this many latest versions are kept
+	private final long version;
+	private final Rectangle2D[] changedAreas;	// Area changed by version - i at i
+	private final int size, siteCount, quadCount, firstEdge, lastEdge;
+	private final int copiedPages;
+	// Pages of quad-edges: oNext of every edge, origins of edges 0 and 2, circumCenters at origins of edges 1 and 3 (x, y, NaN if none)
+	private final int[][] next, org;
+	private final double[][] centers;
+	// Pages of sites: x, y of every site, edge leaving it
+	private final double[][] xy;
+	private final int[][] edgeOf;
+
+	MeshSnapshot(Triangulation dt, MeshSnapshot previous, BitSet quadPages, BitSet sitePages, long version, Rectangle2D changedArea){
+		/* Copies pages changed since previous snapshot (all of them if there
+		 * is none or if changes were not tracked), computing Voronoi vertexes
+		 * which are dirty. Runs on the thread which changes the
+		 * triangulation.
+		 */
+		QuadEdgeMesh mesh = dt.getMesh();
+		this.version = version;
+		int history = (previous == null) ? 1 : Math.min(HISTORY, previous.changedAreas.length + 1);
+		changedAreas = new Rectangle2D[history];
+		changedAreas[0] = changedArea;
+		if(history > 1){
+			System.arraycopy(previous.changedAreas, 0, changedAreas, 1, history - 1);
+		}
+		size = dt.size();
+		siteCount = mesh.siteCount();
+		quadCount = mesh.quadCount();
+		firstEdge = dt.getFirstEdge();
+		lastEdge = dt.getLastEdge();
+		boolean all = previous == null || quadPages == null || sitePages == null;
+		int quadPageCount = pages(quadCount), sitePageCount = pages(siteCount);
+		next = all ? new int[quadPageCount][] : Arrays.copyOf(previous.next, quadPageCount);
+		org = all ? new int[quadPageCount][] : Arrays.copyOf(previous.org, quadPageCount);
+		centers = all ? new double[quadPageCount][] : Arrays.copyOf(previous.centers, quadPageCount);
+		xy = all ? new double[sitePageCount][] : Arrays.copyOf(previous.xy, sitePageCount);
+		edgeOf = all ? new int[sitePageCount][] : Arrays.copyOf(previous.edgeOf, sitePageCount);
+		int copied = 0;
+		for(int page = 0; page < quadPageCount; page++){
+			if(next[page] == null || quadPages.get(page)){
+				copyQuads(dt, page);
+				copied++;
+			}
+		}
+		for(int page = 0; page < sitePageCount; page++){
+			if(xy[page] == null || sitePages.get(page)){
+				copySites(mesh, page);
+				copied++;
+			}
+		}
+		copiedPages = copied;
+	}
+
+	private static int pages(int count){
+		return (count + PAGE_SIZE - 1) >> PAGE_SHIFT;
+	}
+
+	private void copyQuads(Triangulation dt, int page){
+		QuadEdgeMesh mesh = dt.getMesh();
+		int[] n = new int[4 * PAGE_SIZE], o = new int[2 * PAGE_SIZE];
+		double[] c = new double[4 * PAGE_SIZE];
+		Arrays.fill(o, NONE);
+		Arrays.fill(c, Double.NaN);
+		int from = page << PAGE_SHIFT, to = Math.min(quadCount, from + PAGE_SIZE);
+		for(int q = from; q < to; q++){
+			if(mesh.isDeleted(q)){
+				continue;
+			}
+			int e = q << 2, i = q - from;
+			for(int r = 0; r < 4; r++){
+				n[4 * i + r] = mesh.oNext(e + r);
+			}
+			o[2 * i] = mesh.origin(e);
+			o[2 * i + 1] = mesh.origin(e + 2);
+			for(int r = 0; r < 2; r++){
+				DataPoint center = dt.voronoiVertex(e + 2 * r + 1);
+				if(center.type == DataPoint.FACE){
+					c[4 * i + 2 * r] = center.x;
+					c[4 * i + 2 * r + 1] = center.y;
+				}
+			}
+		}
+		next[page] = n;
+		org[page] = o;
+		centers[page] = c;
+	}
+
+	private void copySites(QuadEdgeMesh mesh, int page){
+		double[] p = new double[2 * PAGE_SIZE];
+		int[] edges = new int[PAGE_SIZE];
+		Arrays.fill(edges, NONE);
+		int from = page << PAGE_SHIFT, to = Math.min(siteCount, from + PAGE_SIZE);
+		for(int site = from; site < to; site++){
+			int i = site - from;
+			p[2 * i] = mesh.x(site);
+			p[2 * i + 1] = mesh.y(site);
+			edges[i] = mesh.edgeOf(site);
+		}
+		xy[page] = p;
+		edgeOf[page] = edges;
+	}
+
+	// Snapshot
+	public long getVersion(){
+		// Number of the publication, grows by one with every publication
+		return version;
+	}
+
+	public Rectangle2D getChangedArea(long since){
+		/* Area changed after version since (by versions since + 1 .. this
+		 * one), null if nothing changed. It is the whole plane if the
+		 * triangulation does not track changes, or if the version is older
+		 * than the kept history.
+		 */
+		if(since >= version){
+			return null;
+		}
+		if(version - since > changedAreas.length){
+			return Triangulation.everywhere();
+		}
+		Rectangle2D result = null;
+		for(int i = 0; i < version - since; i++){
+			Rectangle2D area = changedAreas[i];
+			if(area == null){
+				continue;
+			}
+			if(result == null){
+				result = (Rectangle2D)area.clone();
+			}
+			else{
+				result.add(area);
+			}
+		}
+		return result;
+	}
+
+	int copiedPages(){
+		// Pages this snapshot did not share with the previous one
+		return copiedPages;
+	}
+
+	// Mesh, the same as of the triangulation when it was published
+	public int size(){
+		// Number of sites, corners of the bounding triangle are not counted
+		return size;
+	}
+
+	public int siteCount(){
+		// Sites are numbered [0, siteCount()), removed ones have no edge
+		return siteCount;
+	}
+
+	public int quadCount(){
+		return quadCount;
+	}
+
+	public int getFirstEdge(){
+		return firstEdge;
+	}
+
+	public int rot(int e){    return (e & ~3) | ((e + 1) & 3); }
+	public int sym(int e){    return e ^ 2; }
+	public int rotInv(int e){ return (e & ~3) | ((e + 3) & 3); }
+
+	public int oNext(int e){ return next[e >> (PAGE_SHIFT + 2)][e & (4 * PAGE_SIZE - 1)]; }
+	public int lNext(int e){ return rot(oNext(rotInv(e))); }
+	public int oPrev(int e){ return rot(oNext(rot(e))); }
+	public int lPrev(int e){ return sym(oNext(e)); }
+
+	public int origin(int e){ return org[e >> (PAGE_SHIFT + 2)][(e >> 1) & (2 * PAGE_SIZE - 1)]; }
+	public int dest(int e){ return origin(sym(e)); }
+
+	public boolean isDeleted(int quad){
+		return org[quad >> PAGE_SHIFT][(quad << 1) & (2 * PAGE_SIZE - 1)] == NONE;
+	}
+
+	public double x(int site){ return xy[site >> PAGE_SHIFT][2 * (site & (PAGE_SIZE - 1))]; }	// Direction for a corner of the bounding triangle
+	public double y(int site){ return xy[site >> PAGE_SHIFT][2 * (site & (PAGE_SIZE - 1)) + 1]; }
+	public int edgeOf(int site){ return edgeOf[site >> PAGE_SHIFT][site & (PAGE_SIZE - 1)]; }
+
+	public boolean edgeFromBoundary(int e){
+		return origin(e) < BOUNDS;
+	}
+
+	public boolean edgeToFromBoundary(int e){
+		return edgeFromBoundary(e) || edgeFromBoundary(sym(e));
+	}
+
+	public DataPoint voronoiVertex(int dual){
+		// Origin of dual edge (circumCenter of a face), type NONE for the bounding triangle itself
+		double[] c = centers[dual >> (PAGE_SHIFT + 2)];
+		int i = 2 * ((dual >> 1) & (2 * PAGE_SIZE - 1));
+		if(Double.isNaN(c[i])){
+			return new DataPoint(DataPoint.NONE, 0, 0);
+		}
+		return new DataPoint(DataPoint.FACE, c[i], c[i + 1]);
+	}
+
+	public DataPoint[] voronoiCell(int site){
+		// Vertexes of Voronoi cell of given site in CCW order
+		int fromSite = edgeOf(site);
+		int degree = 0;
+		int e = fromSite;
+		do{
+			degree++;
+			e = oNext(e);
+		} while(e != fromSite);
+		DataPoint[] cell = new DataPoint[degree];
+		e = rot(fromSite);
+		for(int i = 0; i < degree; i++){
+			cell[i] = voronoiVertex(e);
+			e = lNext(e);
+		}
+		return cell;
+	}
+
+	// Queries
+	private double det3(int a, int b, double x, double y){
+		// Same as QuadEdgeMesh.det3
+		if(a < BOUNDS || b < BOUNDS){
+			return Operators.det3Symbolic(this.x(a), this.y(a), a < BOUNDS, this.x(b), this.y(b), b < BOUNDS, x, y, false);
+		}
+		return Operators.det3(this.x(a), this.y(a), this.x(b), this.y(b), x, y);
+	}
+
+	private boolean rightOf(double x, double y, int e){
+		return det3(origin(e), dest(e), x, y) < 0;
+	}
+
+	public int locate(double x, double y, int start){
+		/* Returns an edge of a triangle containing [x, y] (on its left or on
+		 * it), walking from edge start (NONE for where the writer last
+		 * changed the mesh).
+		 */
+		int e = (start != NONE && !isDeleted(start >> 2)) ? start : (lastEdge != NONE) ? lastEdge : firstEdge;
+		while(true){
+			if(rightOf(x, y, e)){
+				e = sym(e);
+			}
+			else if(rightOf(x, y, lNext(e))){
+				e = sym(lNext(e));
+			}
+			else if(rightOf(x, y, lPrev(e))){
+				e = sym(lPrev(e));
+			}
+			else{
+				return e;
+			}
+		}
+	}
+
+	public int nearestSite(double x, double y){
+		return nearestSite(x, y, NONE);
+	}
+
+	public int nearestSite(double x, double y, int hint){
+		/* Returns the site closest to [x, y], or NONE if there are no sites.
+		 * Same as Triangulation.nearestSite, the walk starts at site hint
+		 * (NONE for any).
+		 */
+		if(size == 0){
+			return NONE;
+		}
+		int start = (hint >= BOUNDS && hint < siteCount) ? edgeOf(hint) : NONE;
+		int e = locate(x, y, start);
+		// Closest site of the triangle
+		int best = NONE;
+		double bestDist = Double.POSITIVE_INFINITY;
+		for(int i = 0; i < 3; i++){
+			if(!edgeFromBoundary(e) && distanceSq(origin(e), x, y) < bestDist){
+				best = e;
+				bestDist = distanceSq(origin(e), x, y);
+			}
+			e = lNext(e);
+		}
+		// Greedy walk to closer neighbours
+		int closer = best;
+		while(closer != NONE){
+			best = closer;
+			closer = NONE;
+			e = best;
+			do{
+				if(!edgeFromBoundary(sym(e)) && distanceSq(dest(e), x, y) < bestDist){
+					closer = sym(e);
+					bestDist = distanceSq(dest(e), x, y);
+				}
+				e = oNext(e);
+			} while(e != best);
+		}
+		return origin(best);
+	}
+
+	private double distanceSq(int site, double x, double y){
+		double dx = x(site) - x, dy = y(site) - y;
+		return dx*dx + dy*dy;
+	}
+
+	public void forEachFace(EdgeProcessor proc){
+		// Processes one edge of every face, the face being on its left, the smallest one of the face
+		for(int quad = 0; quad < quadCount; quad++){
+			if(isDeleted(quad)){
+				continue;
+			}
+			for(int e = 4 * quad; e < 4 * quad + 4; e += 2){
+				if(e < lNext(e) && e < lPrev(e)){
+					proc.process(e);
+				}
+			}
+		}
+	}
+
+	public void forEachFaceNear(Rectangle2D area, EdgeProcessor proc){
+		/* Same as Triangulation.forEachFaceNear, processes one edge of every
+		 * face whose circumCircle intersects given area, the face being on its
+		 * left. Visited edges are kept in a set of this call.
+		 */
+		BitSet visited = new BitSet();
+		int[] stack = new int[64];
+		int top = 0;
+		// Corners of the bounding triangle are in infinity, so a corner of the area is in some face, which is near the area
+		stack[top++] = locate(area.getMinX(), area.getMinY(), NONE);
+		while(top > 0){
+			int e = stack[--top];
+			if(visited.get(e)){
+				continue;
+			}
+			int r = e;
+			do{
+				visited.set(r);
+				r = lNext(r);
+			} while(r != e);
+			if(!faceNear(e, area)){
+				continue;
+			}
+			do{
+				if(!visited.get(sym(r))){
+					if(top == stack.length){
+						stack = Arrays.copyOf(stack, 2 * top);
+					}
+					stack[top++] = sym(r);
+				}
+				r = lNext(r);
+			} while(r != e);
+			proc.process(e);
+		}
+	}
+
+	private boolean faceNear(int e, Rectangle2D area){
+		// Like Triangulation.faceNear, faces with a corner of the bounding triangle are tested against their half-plane
+		int t = e;
+		for(int i = 0; i < 3 && edgeFromBoundary(t); i++){
+			t = lNext(t);
+		}
+		if(edgeFromBoundary(t)){
+			return false;	// The bounding triangle itself
+		}
+		// Corners (if any) come last in CCW order
+		for(int i = 0; i < 2 && !edgeFromBoundary(lPrev(t)); i++){
+			t = lPrev(t);
+		}
+		int a = origin(t), b = dest(t), c = origin(lPrev(t));
+		if(b < BOUNDS || c < BOUNDS){
+			return Triangulation.halfPlaneNear(area, x(a), y(a), x(b), y(b), x(c), y(c), b < BOUNDS);
+		}
+		DataPoint center = voronoiVertex(rotInv(e));
+		double	dx = Math.max(0, Math.max(area.getMinX() - center.x, center.x - area.getMaxX())),
+				dy = Math.max(0, Math.max(area.getMinY() - center.y, center.y - area.getMaxY()));
+		return dx*dx + dy*dy <= center.distanceSq(x(a), y(a));
+	}
+
+}
\ No newline at end of file
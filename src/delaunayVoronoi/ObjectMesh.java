@@ -0,0 +1,85 @@
+package delaunayVoronoi;
+
+import java.util.Arrays;
+
+public class ObjectMesh extends QuadEdgeMesh {
+	/* Quad-edges as objects: a QuadEdge of four Edge objects, which reference
+	 * their oNext edges and keep their origins and cached circumCenters.
+	 * Quad-edge q is found in a table, so edge e is quads[e >> 2].edges[e & 3].
+	 */
+	private QuadEdge[] quads;
+
+	public ObjectMesh(){
+		this(64);
+	}
+
+	public ObjectMesh(int expectedSites){
+		super(expectedSites);
+		quads = new QuadEdge[quadsFor(expectedSites)];
+	}
+
+	private Edge edge(int e){
+		return quads[e >> 2].edges[e & 3];
+	}
+
+	@Override
+	public int oNext(int e){ return edge(e).oNextEdge.handle(); }
+
+	@Override
+	public int origin(int e){ return edge(e).origin; }
+
+	@Override
+	public boolean isDeleted(int quad){ return quads[quad] == null; }
+
+	@Override
+	void setONext(int e, int next){ edge(e).oNextEdge = edge(next); }
+
+	@Override
+	void setOrigin(int e, int site){ edge(e).origin = site; }
+
+	@Override
+	DataPoint center(int dual){ return edge(dual).data; }
+
+	@Override
+	void setCenter(int dual, DataPoint center){ edge(dual).data = center; }
+
+	@Override
+	int mark(int e){ return edge(e).mark; }
+
+	@Override
+	void setMark(int e, int mark){ edge(e).mark = mark; }
+
+	@Override
+	int racyONext(int e){
+		QuadEdge[] q = quads;
+		QuadEdge quad = (e >= 0 && (e >> 2) < q.length) ? q[e >> 2] : null;
+		Edge next = (quad != null) ? quad.edges[e & 3].oNextEdge : null;
+		return (next != null) ? next.handle() : NONE;
+	}
+
+	@Override
+	int racyOrigin(int e){
+		QuadEdge[] q = quads;
+		QuadEdge quad = (e >= 0 && (e >> 2) < q.length) ? q[e >> 2] : null;
+		return (quad != null) ? quad.edges[e & 3].origin : NONE;
+	}
+
+	@Override
+	int quadCapacity(){ return quads.length; }
+
+	@Override
+	void growQuads(int capacity){
+		quads = Arrays.copyOf(quads, capacity);
+	}
+
+	@Override
+	void initQuad(int quad){
+		quads[quad] = new QuadEdge(quad);
+	}
+
+	@Override
+	void clearQuad(int quad){
+		quads[quad] = null;
+	}
+
+}
\ No newline at end of file
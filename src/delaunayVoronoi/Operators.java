@@ -1,112 +1,227 @@
 package delaunayVoronoi;
 
-import java.awt.Point;
+import java.awt.geom.Point2D;
 
 public class Operators {
+	/* Geometric predicates, operators changing edges are methods of
+	 * QuadEdgeMesh.
+	 *
+	 * Predicates are adaptive: the result is computed in doubles together
+	 * with a bound of its rounding error (Shewchuk, 1997). Only if the result
+	 * is within the bound, it is recomputed exactly by Expansion arithmetic,
+	 * so signs of det3 and inCircle are always correct.
+	 * Corners of the bounding triangle are symbolic points in infinity, see
+	 * the last section of predicates.
+	 */
+	private static final double EPS = Math.ulp(1.0) / 2;
+	private static final double DET3_ERROR_BOUND = (3.0 + 16.0 * EPS) * EPS;
+	private static final double IN_CIRCLE_ERROR_BOUND = (10.0 + 96.0 * EPS) * EPS;
 
 	// GEOMETRIC OPERATORS //
-	public static double det3(Point a, Point b, Point c){
+	public static double det3(Point2D a, Point2D b, Point2D c){
+		return det3(a.getX(), a.getY(), b.getX(), b.getY(), c.getX(), c.getY());
+	}
+	
+	public static double det3(double ax, double ay, double bx, double by, double cx, double cy){
 		/* Computes following determinant:
 		 *   |a.x  a.y  1|
 		 *   |b.x  b.y  1|
 		 *   |c.x  c.y  1|
+		 * Sign of the result is exact, it is positive if a, b, c are in CCW
+		 * order.
 		 */
-		return	(b.getX() - a.getX())*(c.getY() - a.getY()) -
-				(c.getX() - a.getX())*(b.getY() - a.getY());
+		if(Statistics.ENABLED){
+			Statistics.det3Calls.increment();
+		}
+		double	detLeft = (ax - cx) * (by - cy),
+				detRight = (ay - cy) * (bx - cx);
+		double det = detLeft - detRight;
+		double detSum;
+		if(detLeft > 0){
+			if(detRight <= 0){ return det; }
+			detSum = detLeft + detRight;
+		}
+		else if(detLeft < 0){
+			if(detRight >= 0){ return det; }
+			detSum = -detLeft - detRight;
+		}
+		else{
+			return det;
+		}
+		double errorBound = DET3_ERROR_BOUND * detSum;
+		if(det >= errorBound || -det >= errorBound){
+			return det;
+		}
+		return det3Exact(ax, ay, bx, by, cx, cy);
+	}
+	
+	private static double det3Exact(double ax, double ay, double bx, double by, double cx, double cy){
+		if(Statistics.ENABLED){
+			Statistics.det3ExactCalls.increment();
+		}
+		double[]	acx = Expansion.diff(ax, cx), acy = Expansion.diff(ay, cy),
+					bcx = Expansion.diff(bx, cx), bcy = Expansion.diff(by, cy);
+		double[] det = Expansion.sum(Expansion.product(acx, bcy), Expansion.negate(Expansion.product(acy, bcx)));
+		return Expansion.estimate(det);
 	}
 	
-	public static boolean inCircle(Point a, Point b, Point c, Point d){
+	public static boolean inCircle(Point2D a, Point2D b, Point2D c, Point2D d){
+		return inCircle(a.getX(), a.getY(), b.getX(), b.getY(), c.getX(), c.getY(), d.getX(), d.getY());
+	}
+	
+	public static boolean inCircle(double ax, double ay, double bx, double by, double cx, double cy, double dx, double dy){
 		/* Returns true if d is inside of a circle defined by points a, b and
 		 * c. Computed by determinant:
 		 *   |a.x  a.y  a.x^2+a.y^2  1|
 		 *   |b.x  b.y  b.x^2+b.y^2  1|  > 0
 		 *   |c.x  c.y  c.x^2+c.y^2  1|
 		 *   |d.x  d.y  d.x^2+d.y^2  1|
-		 * by Laplace expansion of the third column.
+		 * with d moved to the origin, by Laplace expansion of the third column.
 		 * http://en.wikipedia.org/wiki/Delaunay_triangulation#Algorithms
 		 */
-		double det = (a.getX()*a.getX() + a.getY()*a.getY()) * det3(b, c, d);
-		det -= (b.getX()*b.getX() + b.getY()*b.getY()) * det3(a, c, d);
-		det += (c.getX()*c.getX() + c.getY()*c.getY()) * det3(a, b, d);
-		det -= (d.getX()*d.getX() + d.getY()*d.getY()) * det3(a, b, c);
-		return det > 0;
+		if(Statistics.ENABLED){
+			Statistics.inCircleCalls.increment();
+		}
+		double	adx = ax - dx, ady = ay - dy,
+				bdx = bx - dx, bdy = by - dy,
+				cdx = cx - dx, cdy = cy - dy;
+		double	bdxcdy = bdx * cdy, cdxbdy = cdx * bdy,
+				cdxady = cdx * ady, adxcdy = adx * cdy,
+				adxbdy = adx * bdy, bdxady = bdx * ady;
+		double	aLift = adx * adx + ady * ady,
+				bLift = bdx * bdx + bdy * bdy,
+				cLift = cdx * cdx + cdy * cdy;
+		double det = aLift * (bdxcdy - cdxbdy) + bLift * (cdxady - adxcdy) + cLift * (adxbdy - bdxady);
+		double permanent =	(Math.abs(bdxcdy) + Math.abs(cdxbdy)) * aLift +
+							(Math.abs(cdxady) + Math.abs(adxcdy)) * bLift +
+							(Math.abs(adxbdy) + Math.abs(bdxady)) * cLift;
+		double errorBound = IN_CIRCLE_ERROR_BOUND * permanent;
+		if(det > errorBound || -det > errorBound){
+			return det > 0;
+		}
+		return inCircleExact(ax, ay, bx, by, cx, cy, dx, dy) > 0;
 	}
 	
-	public static boolean rightOf(Point x, Edge e){
-		/* Standard orientation function - returns true if x is strictly on the
-		 * right side of an oriented line defined by edge e.
-		 */
-		return det3(e.origin(), e.dest(), x) < 0;
+	private static double inCircleExact(double ax, double ay, double bx, double by, double cx, double cy, double dx, double dy){
+		if(Statistics.ENABLED){
+			Statistics.inCircleExactCalls.increment();
+		}
+		double[]	adx = Expansion.diff(ax, dx), ady = Expansion.diff(ay, dy),
+					bdx = Expansion.diff(bx, dx), bdy = Expansion.diff(by, dy),
+					cdx = Expansion.diff(cx, dx), cdy = Expansion.diff(cy, dy);
+		double[]	bc = Expansion.sum(Expansion.product(bdx, cdy), Expansion.negate(Expansion.product(cdx, bdy))),
+					ca = Expansion.sum(Expansion.product(cdx, ady), Expansion.negate(Expansion.product(adx, cdy))),
+					ab = Expansion.sum(Expansion.product(adx, bdy), Expansion.negate(Expansion.product(bdx, ady)));
+		double[]	aLift = Expansion.sum(Expansion.product(adx, adx), Expansion.product(ady, ady)),
+					bLift = Expansion.sum(Expansion.product(bdx, bdx), Expansion.product(bdy, bdy)),
+					cLift = Expansion.sum(Expansion.product(cdx, cdx), Expansion.product(cdy, cdy));
+		double[] det = Expansion.sum(Expansion.product(aLift, bc), Expansion.product(bLift, ca));
+		det = Expansion.sum(det, Expansion.product(cLift, ab));
+		return Expansion.estimate(det);
 	}
 	
-	// EDGE OPERATORS //
-	public static Edge newEdge(){
-		// Make new  edge within a QuadEdge
-		QuadEdge qe = new QuadEdge();
-		// Edges 0 and 2 are connecting sites
-		qe.edges[0].oNextEdge = qe.edges[0];
-		qe.edges[2].oNextEdge = qe.edges[2];
-		// Edges 1 and 3 are connecting faces (dual edges)
-		qe.edges[1].oNextEdge = qe.edges[3];
-		qe.edges[3].oNextEdge = qe.edges[1];
-		return qe.edges[0];
+	// Bounding triangle in infinity
+	/* A far point is at M * [x, y] for M bigger than any number, so the
+	 * bounding triangle contains sites with any coordinates. Then a predicate
+	 * is a polynomial in M, and its sign for all large enough M is the sign
+	 * of its highest nonzero coefficient. Coefficients are computed exactly,
+	 * as expansions. Polynomial is an array of coefficients, the i-th one
+	 * belongs to M^i. Every point is given by its coordinates and a flag
+	 * telling whether it is far.
+	 */
+	public static double det3Symbolic(	double ax, double ay, boolean aFar,
+										double bx, double by, boolean bFar,
+										double cx, double cy, boolean cFar){
+		if(Statistics.ENABLED){
+			Statistics.det3Calls.increment();
+			Statistics.det3ExactCalls.increment();
+		}
+		double[][]	acx = polyDiff(ax, aFar, cx, cFar), acy = polyDiff(ay, aFar, cy, cFar),
+					bcx = polyDiff(bx, bFar, cx, cFar), bcy = polyDiff(by, bFar, cy, cFar);
+		return polySign(polySum(polyProduct(acx, bcy), polyNegate(polyProduct(acy, bcx))));
 	}
 	
-	public static Edge newEdge(DataPoint origin, DataPoint dest){
-		// Make new edge and set its end points
-		Edge e = newEdge();
-		e.setEnds(origin, dest);
-		return e;
+	public static boolean inCircleSymbolic(	double ax, double ay, boolean aFar,
+											double bx, double by, boolean bFar,
+											double cx, double cy, boolean cFar,
+											double dx, double dy, boolean dFar){
+		// Same determinant as inCircle, with d moved to the origin
+		if(Statistics.ENABLED){
+			Statistics.inCircleCalls.increment();
+			Statistics.inCircleExactCalls.increment();
+		}
+		double[][]	adx = polyDiff(ax, aFar, dx, dFar), ady = polyDiff(ay, aFar, dy, dFar),
+					bdx = polyDiff(bx, bFar, dx, dFar), bdy = polyDiff(by, bFar, dy, dFar),
+					cdx = polyDiff(cx, cFar, dx, dFar), cdy = polyDiff(cy, cFar, dy, dFar);
+		double[][]	bc = polySum(polyProduct(bdx, cdy), polyNegate(polyProduct(cdx, bdy))),
+					ca = polySum(polyProduct(cdx, ady), polyNegate(polyProduct(adx, cdy))),
+					ab = polySum(polyProduct(adx, bdy), polyNegate(polyProduct(bdx, ady)));
+		double[][]	aLift = polySum(polyProduct(adx, adx), polyProduct(ady, ady)),
+					bLift = polySum(polyProduct(bdx, bdx), polyProduct(bdy, bdy)),
+					cLift = polySum(polyProduct(cdx, cdx), polyProduct(cdy, cdy));
+		double[][] det = polySum(polyProduct(aLift, bc), polyProduct(bLift, ca));
+		return polySign(polySum(det, polyProduct(cLift, ab))) > 0;
 	}
 	
-	public static void splice(Edge a, Edge b){
-		/* Operator that modifies edges, affecting two tuples of edge rings:
-		 * [a.origin and b.origin] and [a.left and b.left]. If the two rings in
-		 * a tuple are different, splice will merge them, and if they are same,
-		 * splice will split them. (Guibas and Stolfi, 1985, pages 96 - 102)
-		 */
-		Edge alpha = a.oNext().rot();
-		Edge beta = b.oNext().rot();
-		// Swap values of a.oNext <-> b.oNext and alpha.oNext <-> beta.oNext
-		Edge temp = a.oNextEdge;
-		a.oNextEdge = b.oNextEdge;
-		b.oNextEdge = temp;
-		
-		temp = alpha.oNextEdge;
-		alpha.oNextEdge = beta.oNextEdge;
-		beta.oNextEdge = temp;
+	public static boolean onEdgeSymbolic(	double ax, double ay, boolean aFar,
+											double bx, double by, boolean bFar,
+											double x, double y){
+		// Same as onEdge for a point [x, y] which is not far, it is between a and b if it is not on the same side of both in any coordinate
+		if(det3Symbolic(ax, ay, aFar, bx, by, bFar, x, y, false) != 0){
+			return false;
+		}
+		return	Math.signum(polySign(polyDiff(ax, aFar, x, false))) * Math.signum(polySign(polyDiff(x, false, bx, bFar))) >= 0 &&
+				Math.signum(polySign(polyDiff(ay, aFar, y, false))) * Math.signum(polySign(polyDiff(y, false, by, bFar))) >= 0;
 	}
 	
-	public static Edge connect(Edge a, Edge b){
-		/* Connects a.dest and b.orig by newly created edge, returns this new
-		 * connection edge.
-		 */
-		Edge e = newEdge();
-		e.setEnds(a.dest(), b.origin());
-		// Connect the rings
-		splice(e, a.lNext());	// connect e.origin <--> a.dest==a.lNext.origin
-		splice(e.sym(), b);		// connect e.dest==e.sym.origin <--> b.origin
-		return e;
+	private static double[][] polyDiff(double p, boolean pFar, double q, boolean qFar){
+		// Coordinate of p - q, a polynomial of degree 1
+		return new double[][]{
+			Expansion.diff(pFar ? 0 : p, qFar ? 0 : q),
+			Expansion.diff(pFar ? p : 0, qFar ? q : 0)
+		};
 	}
 	
-	public static void delete(Edge e){
-		splice(e, e.oPrev());				// disconnect e.origin from vertex
-		splice(e.sym(), e.sym().oPrev());	// disconnect e.dest from vertex
+	private static double[][] polySum(double[][] p, double[][] q){
+		double[][] r = new double[Math.max(p.length, q.length)][];
+		for(int i = 0; i < r.length; i++){
+			if(i >= p.length){ r[i] = q[i]; }
+			else if(i >= q.length){ r[i] = p[i]; }
+			else{ r[i] = Expansion.sum(p[i], q[i]); }
+		}
+		return r;
 	}
-
-	public static void flip(Edge e){
-		// Flips the edge to the other diagonal by turning it CCW.
-		Edge botR = e.oPrev();
-		Edge topR = e.dNext();
-		Edge botL = e.lPrev();
-		Edge topL = e.sym().oPrev();
-		e.setEnds(topR.origin(), botL.origin());
-		// Disconnect from sturcture
-		splice(e, botR);
-		splice(e.sym(), topL);
-		// Connect to right place
-		splice(e, topR);
-		splice(e.sym(), botL);
+	
+	private static double[][] polyNegate(double[][] p){
+		double[][] r = new double[p.length][];
+		for(int i = 0; i < p.length; i++){
+			r[i] = Expansion.negate(p[i]);
+		}
+		return r;
+	}
+	
+	private static double[][] polyProduct(double[][] p, double[][] q){
+		double[][] r = new double[p.length + q.length - 1][];
+		for(int i = 0; i < r.length; i++){
+			r[i] = new double[]{ 0 };
+		}
+		for(int i = 0; i < p.length; i++){
+			for(int j = 0; j < q.length; j++){
+				r[i + j] = Expansion.sum(r[i + j], Expansion.product(p[i], q[j]));
+			}
+		}
+		return r;
+	}
+	
+	private static double polySign(double[][] p){
+		// Highest nonzero coefficient (approximately, with the correct sign), 0 if there is none
+		for(int i = p.length - 1; i >= 0; i--){
+			double coefficient = Expansion.estimate(p[i]);
+			if(coefficient != 0){
+				return coefficient;
+			}
+		}
+		return 0;
 	}
 	
 }
\ No newline at end of file
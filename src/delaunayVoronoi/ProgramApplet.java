@@ -7,9 +7,17 @@ import java.awt.Checkbox;
 import java.awt.Color;
 import java.awt.GridLayout;
 import java.awt.Panel;
+import java.awt.event.ItemEvent;
+import java.awt.event.ItemListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.geom.Point2D;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.management.JMException;
 
 public class ProgramApplet extends Applet {
 	private static final long serialVersionUID = -1484119501224210012L;
@@ -18,17 +26,27 @@ public class ProgramApplet extends Applet {
 	private static final int INIT_HEIGHT = 500;
 	
 	// GUI components
-	Checkbox cbDelaunay = new Checkbox("Show Delaunay triangulation");
-	Checkbox cbVoronoi = new Checkbox("Show Voronoi diagram");
-	Checkbox cbCircles = new Checkbox("Show circles");
+	private Checkbox cbDelaunay = new Checkbox("Show Delaunay triangulation");
+	private Checkbox cbVoronoi = new Checkbox("Show Voronoi diagram");
+	private Checkbox cbCircles = new Checkbox("Show circles");
 	private Button btnAddRandom = new Button("Add 10 random sites");
 	private Button btnClearPointInCell = new Button("Clear point in cell");
 	private Button btnClearAll = new Button("Clear all");
+	private Button btnResetView = new Button("Reset view");
 	private DrawPanel pnlDraw;
 	
 	// Structures
 	Triangulation DT;
 	Random rand = new Random();
+	// Sites are added by this thread, DrawPanel paints snapshots published after every batch
+	private ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Triangulation writer");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
 
 	public static void main(String[] args) {
 		ProgramApplet applet = new ProgramApplet();
@@ -44,7 +62,7 @@ public class ProgramApplet extends Applet {
 		pnlContrContainer.setBackground(new Color(239, 239, 239));
 		add("West", pnlContrContainer);
 		Panel pnlControls = new Panel();
-		pnlControls.setLayout(new GridLayout(6, 1));
+		pnlControls.setLayout(new GridLayout(7, 1));
 		pnlContrContainer.add(pnlControls);
 		pnlControls.add(cbDelaunay);
 		pnlControls.add(cbVoronoi);
@@ -52,10 +70,12 @@ public class ProgramApplet extends Applet {
 		pnlControls.add(btnAddRandom);
 		pnlControls.add(btnClearPointInCell);
 		pnlControls.add(btnClearAll);
+		pnlControls.add(btnResetView);
 		cbDelaunay.setState(true);
 		
 		// Draw panel
-		pnlDraw = new DrawPanel(this);
+		pnlDraw = new DrawPanel(DT);
+		pnlDraw.setWriter(writer);
 		add("Center", pnlDraw);
 		initDT();
 		
@@ -63,12 +83,11 @@ public class ProgramApplet extends Applet {
 		btnAddRandom.addMouseListener(new MouseAdapter() {
 			@Override
 			public void mouseReleased(MouseEvent e) {
-				for(int i = 0; i < 10; i++){
-					DT.addSite(new DataPoint(DataPoint.SITE,
-							rand.nextInt(pnlDraw.getWidth()),
-							rand.nextInt(pnlDraw.getHeight())));
+				Point2D[] sites = new Point2D[10];
+				for(int i = 0; i < sites.length; i++){
+					sites[i] = pnlDraw.toWorld(rand.nextInt(pnlDraw.getWidth()), rand.nextInt(pnlDraw.getHeight()));
 				}
-				pnlDraw.repaint();
+				pnlDraw.addSites(sites);
 			}
 		});
 		btnClearPointInCell.addMouseListener(new MouseAdapter() {
@@ -84,22 +103,39 @@ public class ProgramApplet extends Applet {
 				initDT();
 			}
 		});
+		btnResetView.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseReleased(MouseEvent e) {
+				pnlDraw.resetView();
+			}
+		});
 		
 		// Repaint when selection is changed
 		final DrawPanel finPnlDrw = pnlDraw;
-		MouseAdapter repaintOnChange = new MouseAdapter() {
+		ItemListener repaintOnChange = new ItemListener() {
 			@Override
-			public void mouseReleased(MouseEvent e) {
+			public void itemStateChanged(ItemEvent e) {
+				finPnlDrw.setLayers(cbDelaunay.getState(), cbVoronoi.getState(), cbCircles.getState());
 				finPnlDrw.repaint();
 			}
 		};
-		cbDelaunay.addMouseListener(repaintOnChange);
-		cbVoronoi.addMouseListener(repaintOnChange);
-		cbCircles.addMouseListener(repaintOnChange);
+		cbDelaunay.addItemListener(repaintOnChange);
+		cbVoronoi.addItemListener(repaintOnChange);
+		cbCircles.addItemListener(repaintOnChange);
 	}
 	
 	public void initDT(){
 		DT = new Triangulation();
+		DT.setLazyVoronoi(true);	// Voronoi vertexes are computed only when published
+		DT.setTrackChanges(true);	// Snapshots carry changed area for DrawPanel
+		DT.setPublishSnapshots(true);
+		if(Statistics.ENABLED){
+			try{
+				Statistics.register(DT);
+			}
+			catch(JMException e){ /* Statistics are only not visible over JMX */ }
+		}
+		pnlDraw.setTriangulation(DT);
 		pnlDraw.pointInCell = null;
 		pnlDraw.repaint();
 	}
@@ -1,9 +1,11 @@
 package delaunayVoronoi;
 
-public class QuadEdge {
-	Edge[] edges = new Edge[4];
+class QuadEdge {
+	final Edge[] edges = new Edge[4];
+	final int index;	// Number of this quad-edge in its ObjectMesh
 	
-	public QuadEdge(){
+	QuadEdge(int index){
+		this.index = index;
 		for(int i = 0; i < 4; i++){
 			edges[i] = new Edge(this, i);
 		}
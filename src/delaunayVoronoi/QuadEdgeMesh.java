@@ -0,0 +1,632 @@
+package delaunayVoronoi;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public abstract class QuadEdgeMesh {
+	/* Quad-edge structure (Guibas and Stolfi, 1985) of a triangulation.
+	 * Edges and sites are ints whichever backend stores them: edge e is
+	 * number e & 3 within quad-edge e >> 2, edges 0 and 2 are connecting
+	 * sites and edges 1 and 3 are connecting faces (dual edges). Edge
+	 * algebra, operators and point location are written once here on top of
+	 * a few storage methods, which ObjectMesh implements by QuadEdge and
+	 * Edge objects and CompactMesh by primitive arrays. Sites are numbered
+	 * and kept here for both backends, every site remembers one edge leaving
+	 * it, so it can be found without a walk. Sites are numbered
+	 * [0, siteCount()), a removed site has no edge until a new site reuses
+	 * its number. Sites below BOUNDS are corners of the bounding triangle,
+	 * points in infinity in the direction of their coordinates. Predicates
+	 * on sites evaluate them symbolically, only when a corner takes part.
+	 */
+	public static final int NONE = -1;
+	public static final int BOUNDS = 3;
+
+	private double[] xs, ys;	// Site coordinates
+	private int[] edgeOf;		// Edge leaving every site, NONE if it has none
+	private int siteCount = 0;
+	private int[] freeSites = new int[16];	// Removed sites, their numbers are reused by new sites
+	private int freeSiteCount = 0;
+	private int quadCount = 0;
+	private int[] freeQuads = new int[16];	// Deleted quad-edges, reused by new edges
+	private int freeQuadCount = 0;
+	// Shared mode, see setShared
+	private AtomicInteger sharedSites = null, sharedQuads = null;
+	private AtomicInteger reservedSites, reservedQuads;
+	// Pages changed since they were taken, see trackPages
+	private BitSet changedQuadPages = null, changedSitePages = null;
+
+	QuadEdgeMesh(int expectedSites){
+		int sites = Math.max(expectedSites, 4) + 3;
+		xs = new double[sites];
+		ys = new double[sites];
+		edgeOf = new int[sites];
+	}
+
+	static int quadsFor(int expectedSites){
+		// A triangulation of n sites (with the bounding triangle) has less than 3 * (n + 3) edges
+		return 3 * (Math.max(expectedSites, 4) + 3);
+	}
+
+	// Storage of the backend
+	public abstract int oNext(int e);
+	public abstract int origin(int e);	// Only for edges connecting sites
+	public abstract boolean isDeleted(int quad);
+	abstract void setONext(int e, int next);
+	abstract void setOrigin(int e, int site);
+	abstract DataPoint center(int dual);	// circumCenter of the face at origin of a dual edge, null if it is dirty
+	abstract void setCenter(int dual, DataPoint center);
+	abstract int mark(int e);	// Epoch of last traversal that visited the edge
+	abstract void setMark(int e, int mark);
+	abstract int quadCapacity();
+	abstract void growQuads(int capacity);
+	abstract void clearQuad(int quad);	// Quad-edge was deleted
+	abstract int racyONext(int e);		// oNext read by an optimistic walk, see racyLocate
+	abstract int racyOrigin(int e);
+
+	void initQuad(int quad){
+		// Quad-edge is going to be used by a new edge
+	}
+
+	void prepareShared(){
+		// Allocates whatever the backend allocates lazily, before threads share the mesh
+	}
+
+	void loadQuads(int[] origins, int[] next, int quadCount){
+		// Makes quad-edges of a loaded mesh one by one, see load
+		if(quadCount > quadCapacity()){
+			growQuads(quadCount);
+		}
+		for(int q = 0; q < quadCount; q++){
+			initQuad(q);
+		}
+		for(int e = 0; e < 4 * quadCount; e++){
+			setONext(e, next[e]);
+		}
+		for(int i = 0; i < 2 * quadCount; i++){
+			setOrigin(i << 1, origins[i]);
+		}
+	}
+
+	// Edge algebra within quad-edge
+	public final int rot(int e){    return (e & ~3) | ((e + 1) & 3); }
+	public final int sym(int e){    return e ^ 2; }
+	public final int rotInv(int e){ return (e & ~3) | ((e + 3) & 3); }
+
+	// Edge algebra - next and previous edges
+	public final int dNext(int e){ return sym(oNext(sym(e))); }
+	public final int lNext(int e){ return rot(oNext(rotInv(e))); }
+	public final int rNext(int e){ return rotInv(oNext(rot(e))); }
+	public final int oPrev(int e){ return rot(oNext(rot(e))); }
+	public final int dPrev(int e){ return rotInv(oNext(rotInv(e))); }
+	public final int lPrev(int e){ return sym(oNext(e)); }
+	public final int rPrev(int e){ return oNext(sym(e)); }
+
+	// End data
+	public final int dest(int e){ return origin(sym(e)); }
+
+	public final void setEnds(int e, int newOrigin, int newDest){
+		setOrigin(e, newOrigin);
+		setOrigin(sym(e), newDest);
+		edgeOf[newOrigin] = e;
+		edgeOf[newDest] = sym(e);
+		quadChanged(e);
+		siteChanged(newOrigin);
+		siteChanged(newDest);
+	}
+
+	private void leaveEnds(int e){
+		// Ends of e will not be connected by it, they remember other edges leaving them
+		int o = origin(e), d = dest(e);
+		if(edgeOf[o] == e){
+			edgeOf[o] = (oNext(e) != e) ? oNext(e) : NONE;
+			siteChanged(o);
+		}
+		if(edgeOf[d] == sym(e)){
+			edgeOf[d] = (oNext(sym(e)) != sym(e)) ? oNext(sym(e)) : NONE;
+			siteChanged(d);
+		}
+	}
+
+	// Sites
+	int newSite(double x, double y){
+		int site;
+		if(sharedSites != null){
+			site = sharedSites.getAndIncrement();	// Reserved, so there is room
+		}
+		else if(freeSiteCount > 0){
+			site = freeSites[--freeSiteCount];
+		}
+		else{
+			if(siteCount == xs.length){
+				growSites(siteCount * 2);
+			}
+			site = siteCount++;
+		}
+		xs[site] = x;
+		ys[site] = y;
+		edgeOf[site] = NONE;
+		siteChanged(site);
+		return site;
+	}
+
+	final void setSite(int site, double x, double y){
+		// Site was moved, the caller keeps the mesh valid
+		xs[site] = x;
+		ys[site] = y;
+		siteChanged(site);
+	}
+
+	final void releaseSite(int site){
+		// Site was removed together with all its edges
+		edgeOf[site] = NONE;
+		siteChanged(site);
+		if(sharedSites != null){
+			return;
+		}
+		if(freeSiteCount == freeSites.length){
+			freeSites = Arrays.copyOf(freeSites, 2 * freeSiteCount);
+		}
+		freeSites[freeSiteCount++] = site;
+	}
+
+	private void growSites(int capacity){
+		xs = Arrays.copyOf(xs, capacity);
+		ys = Arrays.copyOf(ys, capacity);
+		edgeOf = Arrays.copyOf(edgeOf, capacity);
+	}
+
+	public final double x(int site){ return xs[site]; }	// Direction for a corner of the bounding triangle
+	public final double y(int site){ return ys[site]; }
+	public final int edgeOf(int site){ return edgeOf[site]; }
+	public final int siteCount(){ return (sharedSites != null) ? sharedSites.get() : siteCount; }
+	final int siteCapacity(){ return xs.length; }
+
+	// Quad-edges
+	public final int quadCount(){ return (sharedQuads != null) ? sharedQuads.get() : quadCount; }
+
+	private int newQuad(){
+		if(sharedQuads != null){
+			return sharedQuads.getAndIncrement();	// Reserved, so there is room
+		}
+		if(freeQuadCount > 0){
+			return freeQuads[--freeQuadCount];
+		}
+		if(quadCount == quadCapacity()){
+			growQuads(2 * quadCount);
+		}
+		return quadCount++;
+	}
+
+	final void reserveQuads(int quads){
+		// Makes room for given number of quad-edges, so that they can be allocated by DelaunayBuilder without growing
+		if(quads > quadCapacity()){
+			growQuads(quads);
+		}
+	}
+
+	final void setQuadCount(int count){
+		// Quad-edges [0..count) were allocated outside of newEdge
+		quadCount = count;
+	}
+
+	final void releaseQuad(int q){
+		clearQuad(q);
+		quadChanged(q << 2);
+		if(sharedQuads != null){
+			// Not reused in shared mode, so that a stale edge never looks valid
+			return;
+		}
+		if(freeQuadCount == freeQuads.length){
+			freeQuads = Arrays.copyOf(freeQuads, 2 * freeQuadCount);
+		}
+		freeQuads[freeQuadCount++] = q;
+	}
+
+	// Loading
+	final void load(double[] xs, double[] ys, int siteCount, int[] origins, int[] next, int quadCount){
+		/* Takes sites and quad-edges of a snapshot (see TriangulationIO) into
+		 * this empty mesh: origins of edges 0 and 2 of every quad-edge
+		 * (indexed by e >> 1) and oNext of every edge. None of them is
+		 * deleted. Edges leaving sites are found again.
+		 */
+		this.xs = xs;
+		this.ys = ys;
+		this.siteCount = siteCount;
+		edgeOf = new int[xs.length];
+		Arrays.fill(edgeOf, NONE);
+		loadQuads(origins, next, quadCount);
+		this.quadCount = quadCount;
+		for(int i = 0; i < 2 * quadCount; i++){
+			edgeOf[origins[i]] = i << 1;
+		}
+	}
+
+	// Tracking of changed pages
+	/* Sites and quad-edges are split into pages of MeshSnapshot.PAGE_SIZE,
+	 * so that a snapshot copies only pages changed since the previous one.
+	 * Every write to a site or an edge marks its page, and so does marking a
+	 * face dirty. Computing a dirty circumCenter does not, a snapshot
+	 * computes them in changed pages before copying. Marking is not
+	 * thread-safe, so shared mode is not tracked.
+	 */
+	final void trackPages(boolean track){
+		// Tracking starts with no page changed
+		changedQuadPages = track ? new BitSet() : null;
+		changedSitePages = track ? new BitSet() : null;
+	}
+
+	final BitSet takeChangedQuadPages(){
+		// Pages of quad-edges changed since the last call, null if they are not tracked
+		BitSet result = changedQuadPages;
+		if(result != null){
+			changedQuadPages = new BitSet();
+		}
+		return result;
+	}
+
+	final BitSet takeChangedSitePages(){
+		BitSet result = changedSitePages;
+		if(result != null){
+			changedSitePages = new BitSet();
+		}
+		return result;
+	}
+
+	private void quadChanged(int e){
+		if(changedQuadPages != null){
+			changedQuadPages.set(e >> (MeshSnapshot.PAGE_SHIFT + 2));
+		}
+	}
+
+	private void siteChanged(int site){
+		if(changedSitePages != null){
+			changedSitePages.set(site >> MeshSnapshot.PAGE_SHIFT);
+		}
+	}
+
+	// Shared mode
+	/* In shared mode several threads change the mesh at once, each of them
+	 * around other sites (see Triangulation.addSiteConcurrent). Sites and
+	 * quad-edges are then taken from atomic counters and deleted quad-edges
+	 * are not reused. Arrays must not grow while other threads use them, so
+	 * a thread first reserves room for what it is going to allocate, and
+	 * only if the reservation fails it grows the mesh by growShared while no
+	 * other thread is using it. Allocated <= reserved <= capacity holds for
+	 * both sites and quad-edges.
+	 */
+	final void setShared(boolean shared){
+		// Must be called while no other thread uses the mesh
+		if(shared && sharedQuads == null){
+			trackPages(false);
+			prepareShared();
+			sharedSites = new AtomicInteger(siteCount);
+			sharedQuads = new AtomicInteger(quadCount);
+			reservedSites = new AtomicInteger(siteCount);
+			reservedQuads = new AtomicInteger(quadCount);
+		}
+		else if(!shared && sharedQuads != null){
+			siteCount = sharedSites.get();
+			quadCount = sharedQuads.get();
+			sharedSites = sharedQuads = null;
+			reservedSites = reservedQuads = null;
+		}
+	}
+
+	final boolean reserve(int quads, int sites){
+		/* Reserves room for quad-edges and sites one insertion will allocate,
+		 * returns false if the mesh has to grow first.
+		 */
+		if(!reserve(reservedQuads, quads, quadCapacity())){
+			return false;
+		}
+		if(!reserve(reservedSites, sites, siteCapacity())){
+			reservedQuads.addAndGet(-quads);
+			return false;
+		}
+		return true;
+	}
+
+	private static boolean reserve(AtomicInteger reserved, int n, int capacity){
+		while(true){
+			int current = reserved.get();
+			if(current + n > capacity){
+				return false;
+			}
+			if(reserved.compareAndSet(current, current + n)){
+				return true;
+			}
+		}
+	}
+
+	final void growShared(int quads, int sites){
+		// Makes room for reservations, must be called while no other thread uses the mesh
+		if(reservedQuads.get() + quads > quadCapacity()){
+			growQuads(2 * quadCapacity());
+		}
+		if(reservedSites.get() + sites > siteCapacity()){
+			growSites(2 * siteCapacity());
+		}
+		prepareShared();
+	}
+
+	// EDGE OPERATORS //
+	public final int newEdge(int origin, int dest){
+		// Make new edge within a quad-edge and set its end points
+		return initEdge(newQuad(), origin, dest);
+	}
+
+	final int initEdge(int quad, int origin, int dest){
+		// Makes a single edge from origin to dest in given unused quad-edge
+		initQuad(quad);
+		int e = quad << 2;
+		// Edges 0 and 2 are connecting sites
+		setONext(e, e);
+		setONext(e + 2, e + 2);
+		// Edges 1 and 3 are connecting faces (dual edges)
+		setONext(e + 1, e + 3);
+		setONext(e + 3, e + 1);
+		setEnds(e, origin, dest);
+		return e;
+	}
+
+	public final void splice(int a, int b){
+		/* Operator that modifies edges, affecting two tuples of edge rings:
+		 * [a.origin and b.origin] and [a.left and b.left]. If the two rings in
+		 * a tuple are different, splice will merge them, and if they are same,
+		 * splice will split them. (Guibas and Stolfi, 1985, pages 96 - 102)
+		 */
+		int alpha = rot(oNext(a));
+		int beta = rot(oNext(b));
+		// Swap values of a.oNext <-> b.oNext and alpha.oNext <-> beta.oNext
+		int temp = oNext(a);
+		setONext(a, oNext(b));
+		setONext(b, temp);
+		temp = oNext(alpha);
+		setONext(alpha, oNext(beta));
+		setONext(beta, temp);
+		quadChanged(a);
+		quadChanged(b);
+		quadChanged(alpha);
+		quadChanged(beta);
+	}
+
+	public final int connect(int a, int b){
+		/* Connects a.dest and b.orig by newly created edge, returns this new
+		 * connection edge.
+		 */
+		int e = newEdge(dest(a), origin(b));
+		// Connect the rings
+		splice(e, lNext(a));	// connect e.origin <--> a.dest==a.lNext.origin
+		splice(sym(e), b);		// connect e.dest==e.sym.origin <--> b.origin
+		// Both faces along e were changed
+		markFaceDirty(e);
+		markFaceDirty(sym(e));
+		return e;
+	}
+
+	public final void delete(int e){
+		unlink(e);
+		releaseQuad(e >> 2);
+	}
+
+	final void unlink(int e){
+		// Disconnects e from the mesh, its quad-edge is not released
+		leaveEnds(e);
+		splice(e, oPrev(e));				// disconnect e.origin from vertex
+		splice(sym(e), oPrev(sym(e)));	// disconnect e.dest from vertex
+	}
+
+	public final void flip(int e){
+		// Flips the edge to the other diagonal by turning it CCW.
+		int botR = oPrev(e);
+		int topR = dNext(e);
+		int botL = lPrev(e);
+		int topL = oPrev(sym(e));
+		leaveEnds(e);
+		setEnds(e, origin(topR), origin(botL));
+		// Disconnect from structure
+		splice(e, botR);
+		splice(sym(e), topL);
+		// Connect to right place
+		splice(e, topR);
+		splice(sym(e), botL);
+		// Both faces along e were changed
+		markFaceDirty(e);
+		markFaceDirty(sym(e));
+	}
+
+	public final void markFaceDirty(int triSide){
+		/* Invalidates cached circumCenter of face on the left of triSide, so
+		 * that it will be recomputed when someone asks for it.
+		 */
+		int e = triSide;
+		do{
+			setCenter(rotInv(e), null);
+			quadChanged(e);
+			e = lNext(e);
+		} while(e != triSide);
+	}
+
+	// GEOMETRIC PREDICATES on sites //
+	public final double det3(int a, int b, double x, double y){
+		// Operators.det3 of sites a, b and point [x, y], sign is exact
+		if(a < BOUNDS || b < BOUNDS){
+			return Operators.det3Symbolic(xs[a], ys[a], a < BOUNDS, xs[b], ys[b], b < BOUNDS, x, y, false);
+		}
+		return Operators.det3(xs[a], ys[a], xs[b], ys[b], x, y);
+	}
+
+	public final double det3(int a, int b, int c){
+		if(c < BOUNDS){
+			return Operators.det3Symbolic(xs[a], ys[a], a < BOUNDS, xs[b], ys[b], b < BOUNDS, xs[c], ys[c], true);
+		}
+		return det3(a, b, xs[c], ys[c]);
+	}
+
+	public final boolean rightOf(double x, double y, int e){
+		/* Standard orientation function - returns true if [x, y] is strictly
+		 * on the right side of an oriented line defined by edge e.
+		 */
+		return det3(origin(e), dest(e), x, y) < 0;
+	}
+
+	public final boolean rightOf(int site, int e){
+		return det3(origin(e), dest(e), site) < 0;
+	}
+
+	public final boolean onEdge(double x, double y, int e){
+		// Returns true if [x, y] is on the line of e and within its segment, the orientation test is exact
+		int o = origin(e), d = dest(e);
+		if(o < BOUNDS || d < BOUNDS){
+			return Operators.onEdgeSymbolic(xs[o], ys[o], o < BOUNDS, xs[d], ys[d], d < BOUNDS, x, y);
+		}
+		if(Operators.det3(xs[o], ys[o], xs[d], ys[d], x, y) != 0){
+			return false;
+		}
+		return	Math.min(xs[o], xs[d]) <= x && x <= Math.max(xs[o], xs[d]) &&
+				Math.min(ys[o], ys[d]) <= y && y <= Math.max(ys[o], ys[d]);
+	}
+
+	public final boolean inCircle(int a, int b, int c, double x, double y){
+		// Returns true if [x, y] is inside of the circle through sites a, b and c
+		if(a < BOUNDS || b < BOUNDS || c < BOUNDS){
+			return Operators.inCircleSymbolic(	xs[a], ys[a], a < BOUNDS, xs[b], ys[b], b < BOUNDS,
+												xs[c], ys[c], c < BOUNDS, x, y, false);
+		}
+		return Operators.inCircle(xs[a], ys[a], xs[b], ys[b], xs[c], ys[c], x, y);
+	}
+
+	public final boolean inCircle(int a, int b, int c, int d){
+		if(d < BOUNDS){
+			return Operators.inCircleSymbolic(	xs[a], ys[a], a < BOUNDS, xs[b], ys[b], b < BOUNDS,
+												xs[c], ys[c], c < BOUNDS, xs[d], ys[d], true);
+		}
+		return inCircle(a, b, c, xs[d], ys[d]);
+	}
+
+	// Point location
+	public final int locate(double x, double y, int start){
+		/* Jump-and-Walk algorithm. Returns any edge of a triangle containing
+		 * given point [x, y] ([x, y] is on left of result edge or on it).
+		 */
+		if(!Statistics.ENABLED){
+			return walk(x, y, start, null);
+		}
+		int[] steps = { 0 };
+		return located(walk(x, y, start, steps), steps[0]);
+	}
+
+	final int walk(double x, double y, int start, int[] steps){
+		// The walk of locate, adds the number of visited triangles to steps (if not null) instead of counting a locate
+		int e = start;
+		for(int step = 1; ; step++){
+			int side = NONE;
+			// x is on edge of triangle
+			if(onEdge(x, y, e)){ side = e; }
+			else if(onEdge(x, y, lNext(e))){ side = lNext(e); }
+			else if(onEdge(x, y, lPrev(e))){ side = lPrev(e); }
+			// x is elsewhere
+			else if(rightOf(x, y, e)){
+				e = sym(e);
+			}
+			else if(rightOf(x, y, lNext(e))){
+				// Move towards lNext triangle
+				e = sym(lNext(e));
+			}
+			else if(rightOf(x, y, lPrev(e))){
+				// Move towards lPrev triangle
+				e = sym(lPrev(e));
+			}
+			else{
+				// x is on left of all sides of triangle => is in triangle
+				side = e;
+			}
+			if(side != NONE){
+				if(steps != null){
+					steps[0] += step;
+				}
+				return side;
+			}
+		}
+	}
+
+	static int located(int result, int steps){
+		// Result of a walk, counts triangles visited by it
+		if(Statistics.ENABLED){
+			Statistics.locates.increment();
+			Statistics.locateSteps.add(steps);
+			Statistics.locateStepsHistogram.record(steps);
+		}
+		return result;
+	}
+
+	public final int inTriangle(double x, double y, int e){
+		/* Returns the side of triangle on the left of e that [x, y] is on, e
+		 * if [x, y] is inside of the triangle, or NONE if it is outside.
+		 */
+		int lNext = lNext(e), lPrev = lPrev(e);
+		if(rightOf(x, y, e) || rightOf(x, y, lNext) || rightOf(x, y, lPrev)){
+			return NONE;
+		}
+		if(onEdge(x, y, lNext)){ return lNext; }
+		if(onEdge(x, y, lPrev)){ return lPrev; }
+		return e;
+	}
+
+	final int racyLocate(double x, double y, int start, int maxSteps){
+		/* Same walk as locate, but while other threads change the mesh. Any
+		 * read can be stale or half written, so racyONext and racyOrigin
+		 * return NONE for anything that is not a valid edge or site, and the
+		 * walk gives up (returns NONE) when it meets one or when it does not
+		 * finish within maxSteps. Result is only a guess, the caller must
+		 * validate it after locking the triangle.
+		 */
+		int e = start;
+		for(int step = 0; step < maxSteps; step++){
+			int next = racyNextStep(x, y, e);
+			if(next == e || next == NONE){
+				return located(next, step + 1);
+			}
+			e = next;
+		}
+		return located(NONE, maxSteps);
+	}
+
+	private int racyNextStep(double x, double y, int e){
+		// One step of racyLocate from triangle on the left of e, returns e if [x, y] is in it
+		int lNext = racyLNext(e);
+		int lPrev = (lNext != NONE) ? racyLNext(lNext) : NONE;
+		if(lPrev == NONE){
+			return NONE;
+		}
+		int	a = racyOrigin(e), b = racyOrigin(lNext), c = racyOrigin(lPrev);
+		if(!isSite(a) || !isSite(b) || !isSite(c)){
+			return NONE;
+		}
+		if(racySide(x, y, a, b) < 0){
+			return sym(e);
+		}
+		else if(racySide(x, y, b, c) < 0){
+			return sym(lNext);
+		}
+		else if(racySide(x, y, c, a) < 0){
+			return sym(lPrev);
+		}
+		return e;
+	}
+
+	final int racyLNext(int e){
+		int next = racyONext(rotInv(e));
+		return (next != NONE) ? rot(next) : NONE;
+	}
+
+	private boolean isSite(int site){
+		return site >= 0 && site < xs.length;
+	}
+
+	private double racySide(double x, double y, int a, int b){
+		return det3(a, b, x, y);
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,115 @@
+package delaunayVoronoi;
+
+class SiteDensity {
+	/* Numbers of sites in a pyramid of square grids over the bounding box of
+	 * sites. Level 0 is the finest grid, every next level has half of its
+	 * resolution. Used by DrawPanel to paint meshes, where many sites fall
+	 * into one pixel, in time depending on number of pixels only.
+	 */
+	private static final int LEVELS = 11;	// Finest grid is 1024 x 1024
+	private double minX, minY, cellSize;	// Cell size of level 0
+	private int[][] counts = new int[LEVELS][];
+	private int total = 0;
+
+	SiteDensity(MeshSnapshot mesh){
+		// Bounding box of sites
+		double	minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY,
+				maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for(int site = QuadEdgeMesh.BOUNDS; site < mesh.siteCount(); site++){
+			if(mesh.edgeOf(site) != MeshSnapshot.NONE){
+				minX = Math.min(minX, mesh.x(site));
+				minY = Math.min(minY, mesh.y(site));
+				maxX = Math.max(maxX, mesh.x(site));
+				maxY = Math.max(maxY, mesh.y(site));
+			}
+		}
+		int size = 1 << (LEVELS - 1);
+		for(int level = 0; level < LEVELS; level++){
+			counts[level] = new int[(size >> level) * (size >> level)];
+		}
+		if(minX > maxX){
+			// No sites
+			cellSize = 1;
+			return;
+		}
+		this.minX = minX;
+		this.minY = minY;
+		cellSize = Math.max(Math.max(maxX - minX, maxY - minY), Double.MIN_NORMAL) * (1 + 1e-9) / size;
+		// Count sites of finest level, then sum them to coarser ones
+		int[] finest = counts[0];
+		for(int site = QuadEdgeMesh.BOUNDS; site < mesh.siteCount(); site++){
+			if(mesh.edgeOf(site) != MeshSnapshot.NONE){
+				int	cx = Math.min(size - 1, (int)((mesh.x(site) - minX) / cellSize)),
+					cy = Math.min(size - 1, (int)((mesh.y(site) - minY) / cellSize));
+				finest[cy * size + cx]++;
+				total++;
+			}
+		}
+		for(int level = 1; level < LEVELS; level++){
+			int s = size >> level;
+			int[] fine = counts[level - 1], coarse = counts[level];
+			for(int y = 0; y < s; y++){
+				for(int x = 0; x < s; x++){
+					coarse[y * s + x] =	fine[(2*y) * (2*s) + 2*x]     + fine[(2*y) * (2*s) + 2*x + 1] +
+										fine[(2*y + 1) * (2*s) + 2*x] + fine[(2*y + 1) * (2*s) + 2*x + 1];
+				}
+			}
+		}
+	}
+
+	int total(){
+		return total;
+	}
+
+	int sitesIn(double x, double y, double width, double height){
+		// Estimate of the number of sites in given rectangle, cells overlapping it are counted whole
+		int level = 0;
+		while(level < LEVELS - 1 && cellSize * (1 << level) * 16 < Math.max(width, height)){
+			level++;
+		}
+		int s = (1 << (LEVELS - 1)) >> level;
+		double size = cellSize * (1 << level);
+		int	x1 = Math.max(0, (int)Math.floor((x - minX) / size)),
+			y1 = Math.max(0, (int)Math.floor((y - minY) / size)),
+			x2 = Math.min(s - 1, (int)Math.floor((x + width - minX) / size)),
+			y2 = Math.min(s - 1, (int)Math.floor((y + height - minY) / size));
+		int sum = 0;
+		for(int cy = y1; cy <= y2; cy++){
+			for(int cx = x1; cx <= x2; cx++){
+				sum += counts[level][cy * s + cx];
+			}
+		}
+		return sum;
+	}
+
+	void paint(int[] pixels, int width, int height, double viewX, double viewY, double zoom, int rgb){
+		/* Paints density of sites into ARGB pixels of an image showing given
+		 * view (world coordinates of its top left corner and pixels per unit).
+		 * A pixel gets color rgb, opacity grows with the expected number of
+		 * sites in it.
+		 */
+		double pixelSize = 1 / zoom;
+		int level = 0;
+		while(level < LEVELS - 1 && cellSize * (1 << level) < pixelSize){
+			level++;
+		}
+		int s = (1 << (LEVELS - 1)) >> level;
+		double size = cellSize * (1 << level);
+		double perCell = (pixelSize * pixelSize) / (size * size);	// Share of a cell in one pixel
+		int[] grid = counts[level];
+		for(int py = 0; py < height; py++){
+			int cy = (int)Math.floor((viewY + (py + 0.5) * pixelSize - minY) / size);
+			for(int px = 0; px < width; px++){
+				int cx = (int)Math.floor((viewX + (px + 0.5) * pixelSize - minX) / size);
+				int a = 0;
+				if(cx >= 0 && cy >= 0 && cx < s && cy < s && grid[cy * s + cx] != 0){
+					// Expected number of sites in the pixel, any site is visible
+					double expected = grid[cy * s + cx] * perCell;
+					a = Math.max(32, (int)(255 * (1 - Math.exp(-expected))));
+				}
+				pixels[py * width + px] = (a << 24) | (rgb & 0xFFFFFF);
+			}
+		}
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,255 @@
+package delaunayVoronoi;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+
+public class SiteReader {
+	/* Adds sites from large files to a triangulation (with either mesh). The file is read in big chunks and parsed on a separate
+	 * thread, which hands batches of sites to the calling thread through a
+	 * bounded queue. So parsing overlaps with insertion and at most a few
+	 * batches are held in memory at once. Each batch is added by addAll,
+	 * so it is inserted in spatial order and published as one snapshot.
+	 * Supported files are:
+	 *   CSV  - x and y are the first two fields of each line (separated by
+	 *          comma, semicolon, tab or spaces), lines not starting with two
+	 *          numbers (headers, comments) are skipped
+	 *   raw  - pairs of little-endian doubles x, y
+	 * NaN or infinite coordinates fail the reading with an IOException that
+	 * tells the line (or offset of the pair) where they are, sites read
+	 * before them stay in the triangulation.
+	 */
+	private static final int CHUNK_SIZE = 1 << 22;
+	private static final int BATCH_SIZE = 1 << 16;
+	private static final int QUEUE_SIZE = 4;
+	private static final DataPoint[] END = new DataPoint[0];
+
+	public static long readCsv(Path file, Triangulation dt) throws IOException {
+		// Returns number of sites read
+		return ingest(new CsvParser(file), dt);
+	}
+
+	public static long readBinary(Path file, Triangulation dt) throws IOException {
+		// Returns number of sites read
+		return ingest(new BinaryParser(file), dt);
+	}
+
+	private static long ingest(final Parser parser, Triangulation dt) throws IOException {
+		final ArrayBlockingQueue<DataPoint[]> queue = new ArrayBlockingQueue<DataPoint[]>(QUEUE_SIZE);
+		final Exception[] failure = { null };
+		Thread thread = new Thread("SiteReader"){
+			@Override
+			public void run() {
+				try{
+					parser.parse(new Batches(queue));
+				}
+				catch(InterruptedException e){
+					// Insertion was stopped, nobody is waiting for batches
+					return;
+				}
+				catch(Exception e){
+					failure[0] = e;
+				}
+				try{
+					queue.put(END);
+				}
+				catch(InterruptedException e){
+					// Insertion was stopped
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+		long count = 0;
+		try{
+			while(true){
+				DataPoint[] batch = queue.take();
+				if(batch == END){
+					break;
+				}
+				dt.addAll(batch);
+				count += batch.length;
+			}
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Reading of sites was interrupted");
+		}
+		finally{
+			// Stops the parser if insertion failed
+			thread.interrupt();
+		}
+		if(failure[0] instanceof IOException){
+			throw (IOException)failure[0];
+		}
+		else if(failure[0] != null){
+			throw new IOException("Sites could not be parsed", failure[0]);
+		}
+		return count;
+	}
+
+	private static class Batches {
+		// Collects parsed sites and puts full batches to the queue
+		private ArrayBlockingQueue<DataPoint[]> queue;
+		private DataPoint[] batch = new DataPoint[BATCH_SIZE];
+		private int size = 0;
+
+		Batches(ArrayBlockingQueue<DataPoint[]> queue){
+			this.queue = queue;
+		}
+
+		void add(double x, double y) throws InterruptedException {
+			batch[size++] = new DataPoint(DataPoint.SITE, x, y);
+			if(size == batch.length){
+				queue.put(batch);
+				batch = new DataPoint[BATCH_SIZE];
+				size = 0;
+			}
+		}
+
+		void flush() throws InterruptedException {
+			if(size > 0){
+				DataPoint[] last = new DataPoint[size];
+				System.arraycopy(batch, 0, last, 0, size);
+				queue.put(last);
+				size = 0;
+			}
+		}
+	}
+
+	private static abstract class Parser {
+		Path file;
+
+		Parser(Path file){
+			this.file = file;
+		}
+
+		abstract void parse(Batches out) throws IOException, InterruptedException;
+	}
+
+	private static class BinaryParser extends Parser {
+		BinaryParser(Path file){
+			super(file);
+		}
+
+		@Override
+		void parse(Batches out) throws IOException, InterruptedException {
+			FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+			try{
+				ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+				long offset = 0;
+				while(channel.read(buffer) >= 0){
+					buffer.flip();
+					while(buffer.remaining() >= 16){
+						double x = buffer.getDouble(), y = buffer.getDouble();
+						if(!Triangulation.finite(x, y)){
+							throw new IOException("Site [" + x + ", " + y + "] at offset " + offset + " is not finite: " + file);
+						}
+						out.add(x, y);
+						offset += 16;
+					}
+					// Keep the incomplete pair for the next chunk
+					buffer.compact();
+				}
+				if(buffer.position() != 0){
+					throw new IOException("File does not contain whole pairs of doubles: " + file);
+				}
+				out.flush();
+			}
+			finally{
+				channel.close();
+			}
+		}
+	}
+
+	private static class CsvParser extends Parser {
+		CsvParser(Path file){
+			super(file);
+		}
+
+		@Override
+		void parse(Batches out) throws IOException, InterruptedException {
+			FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+			try{
+				byte[] chunk = new byte[CHUNK_SIZE];
+				ByteBuffer buffer = ByteBuffer.wrap(chunk);
+				boolean eof = false;
+				long line = 1;
+				while(!eof){
+					eof = channel.read(buffer) < 0;
+					int end = buffer.position();
+					int lineStart = 0;
+					for(int i = 0; i < end; i++){
+						if(chunk[i] == '\n'){
+							parseLine(chunk, lineStart, i, line++, out);
+							lineStart = i + 1;
+						}
+					}
+					if(eof){
+						// Last line without line break
+						parseLine(chunk, lineStart, end, line, out);
+					}
+					else if(lineStart == 0 && end == chunk.length){
+						throw new IOException("Line is longer than " + CHUNK_SIZE + " bytes: " + file);
+					}
+					else{
+						// Move the incomplete line to the beginning
+						System.arraycopy(chunk, lineStart, chunk, 0, end - lineStart);
+						buffer.position(end - lineStart);
+					}
+				}
+				out.flush();
+			}
+			finally{
+				channel.close();
+			}
+		}
+
+		private void parseLine(byte[] line, int from, int to, long number, Batches out) throws IOException, InterruptedException {
+			// Finds first two fields and adds them as a site, number of the line is used in errors
+			int[] fields = new int[4];
+			int found = 0;
+			int i = from;
+			while(found < 4 && i < to){
+				while(i < to && isSeparator(line[i])){
+					i++;
+				}
+				if(i == to){
+					break;
+				}
+				fields[found++] = i;
+				while(i < to && !isSeparator(line[i])){
+					i++;
+				}
+				fields[found++] = i;
+			}
+			if(found < 4){
+				return;
+			}
+			double x, y;
+			try{
+				x = Double.parseDouble(new String(line, fields[0], fields[1] - fields[0], StandardCharsets.ISO_8859_1));
+				y = Double.parseDouble(new String(line, fields[2], fields[3] - fields[2], StandardCharsets.ISO_8859_1));
+			}
+			catch(NumberFormatException e){
+				// Header or comment
+				return;
+			}
+			if(!Triangulation.finite(x, y)){
+				throw new IOException("Site [" + x + ", " + y + "] on line " + number + " is not finite: " + file);
+			}
+			out.add(x, y);
+		}
+
+		private boolean isSeparator(byte b){
+			return b == ',' || b == ';' || b == ' ' || b == '\t' || b == '\r';
+		}
+	}
+
+}
\ No newline at end of file
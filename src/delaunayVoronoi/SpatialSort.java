@@ -0,0 +1,110 @@
+package delaunayVoronoi;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.Random;
+
+public class SpatialSort {
+	/* Orders points so that consecutive points are close to each other,
+	 * which keeps point location walks short. Points are never moved, the
+	 * order is returned as their indexes.
+	 */
+	private static final int HILBERT_ORDER = 15;	// Grid of 2^15 x 2^15 cells
+	private static final int MIN_ROUND = 64;
+
+	public static long hilbertIndex(int x, int y, int order){
+		// Position of cell [x, y] along Hilbert curve filling 2^order x 2^order grid
+		long d = 0;
+		for(int s = 1 << (order - 1); s > 0; s >>= 1){
+			int rx = (x & s) != 0 ? 1 : 0;
+			int ry = (y & s) != 0 ? 1 : 0;
+			d += (long)s * s * ((3 * rx) ^ ry);
+			// Rotate quadrant
+			if(ry == 0){
+				if(rx == 1){
+					x = s - 1 - x;
+					y = s - 1 - y;
+				}
+				int temp = x;
+				x = y;
+				y = temp;
+			}
+		}
+		return d;
+	}
+
+	public static int[] hilbertOrder(Point2D[] points, int from, int to){
+		/* Returns indexes of points[from..to) in order along Hilbert curve
+		 * over bounding box of these points.
+		 */
+		int[] order = new int[to - from];
+		for(int i = 0; i < order.length; i++){
+			order[i] = from + i;
+		}
+		hilbertSort(points, order, 0, order.length, false);
+		return order;
+	}
+
+	public static void hilbertSort(Point2D[] points, int[] order, int from, int to, boolean reverse){
+		/* Sorts indexes order[from..to) along Hilbert curve over bounding box
+		 * of the points they index (in opposite direction if reverse is set).
+		 */
+		if(to - from < 2){
+			return;
+		}
+		double	minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY,
+				maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for(int i = from; i < to; i++){
+			Point2D p = points[order[i]];
+			minX = Math.min(minX, p.getX());
+			minY = Math.min(minY, p.getY());
+			maxX = Math.max(maxX, p.getX());
+			maxY = Math.max(maxY, p.getY());
+		}
+		int cells = 1 << HILBERT_ORDER;
+		double scale = (cells - 1) / Math.max(Math.max(maxX - minX, maxY - minY), Double.MIN_VALUE);
+		// Sort keys with position in order[from..to) in lower bits
+		long[] keys = new long[to - from];
+		for(int i = from; i < to; i++){
+			Point2D p = points[order[i]];
+			int	cx = (int)((p.getX() - minX) * scale),
+				cy = (int)((p.getY() - minY) * scale);
+			keys[i - from] = (hilbertIndex(cx, cy, HILBERT_ORDER) << 32) | (i - from);
+		}
+		Arrays.sort(keys);
+		int[] sorted = new int[keys.length];
+		for(int i = 0; i < keys.length; i++){
+			int k = reverse ? keys.length - 1 - i : i;
+			sorted[k] = order[from + (int)(keys[i] & 0xFFFFFFFFL)];
+		}
+		System.arraycopy(sorted, 0, order, from, sorted.length);
+	}
+
+	public static int[] brio(Point2D[] points, Random rand){
+		/* Biased randomized insertion order: indexes of points are shuffled
+		 * and split into rounds of doubling size, each round is sorted along
+		 * Hilbert curve. Rounds alternate the direction, so that each round
+		 * starts close to where the previous one ended.
+		 */
+		int[] order = new int[points.length];
+		for(int i = 0; i < order.length; i++){
+			order[i] = i;
+		}
+		for(int i = order.length - 1; i > 0; i--){
+			int j = rand.nextInt(i + 1);
+			int temp = order[i];
+			order[i] = order[j];
+			order[j] = temp;
+		}
+		int to = order.length;
+		int rounds = 0;
+		while(to > 0){
+			int from = (to <= MIN_ROUND) ? 0 : to / 2;
+			hilbertSort(points, order, from, to, rounds % 2 == 1);
+			to = from;
+			rounds++;
+		}
+		return order;
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,245 @@
+package delaunayVoronoi;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public class Statistics implements StatisticsMBean {
+	/* Counters of hot paths of Triangulation and Operators: locate walks,
+	 * flips, predicate calls (and how many of them needed exact arithmetic),
+	 * and time spent in each phase. Switched on by the system property
+	 * -DdelaunayVoronoi.statistics=true . ENABLED is a constant, so when it
+	 * is false, the JIT removes all counting code. Counters are LongAdders,
+	 * so threads inserting concurrently do not contend on them. Values are
+	 * read by snapshot() or over JMX after register().
+	 */
+	public static final boolean ENABLED = Boolean.getBoolean("delaunayVoronoi.statistics");
+	public static final String OBJECT_NAME = "delaunayVoronoi:type=Statistics";
+
+	static final LongAdder locates = new LongAdder();
+	static final LongAdder locateSteps = new LongAdder();
+	static final LongAdder inserts = new LongAdder();
+	static final LongAdder insertRetries = new LongAdder();
+	static final LongAdder flips = new LongAdder();
+	static final LongAdder removes = new LongAdder();
+	static final LongAdder moves = new LongAdder();
+	static final LongAdder circumCenters = new LongAdder();
+	static final LongAdder publishes = new LongAdder();
+	static final LongAdder publishedPages = new LongAdder();
+	static final LongAdder relaxIterations = new LongAdder();
+	static final LongAdder interpolations = new LongAdder();
+	static final LongAdder det3Calls = new LongAdder();
+	static final LongAdder det3ExactCalls = new LongAdder();
+	static final LongAdder inCircleCalls = new LongAdder();
+	static final LongAdder inCircleExactCalls = new LongAdder();
+	static final LongAdder circleTests = new LongAdder();
+	static final LongAdder circleExactTests = new LongAdder();
+	static final LongAdder locateNanos = new LongAdder();
+	static final LongAdder insertNanos = new LongAdder();
+	static final LongAdder removeNanos = new LongAdder();
+	static final LongAdder moveNanos = new LongAdder();
+	static final LongAdder voronoiNanos = new LongAdder();
+	static final LongAdder publishNanos = new LongAdder();
+	static final LongAdder relaxNanos = new LongAdder();
+	static final LongAdder interpolateNanos = new LongAdder();
+	static final Histogram locateStepsHistogram = new Histogram();
+	static final Histogram flipsPerInsertHistogram = new Histogram();
+
+	private Triangulation dt;
+
+	private Statistics(Triangulation dt){
+		this.dt = dt;
+	}
+
+	public static ObjectName register(Triangulation dt) throws JMException {
+		/* Publishes counters as MBean OBJECT_NAME in the platform MBean
+		 * server, with sizes of given triangulation (may be null). Replaces
+		 * previously registered one.
+		 */
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		if(ManagementFactory.getPlatformMBeanServer().isRegistered(name)){
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		}
+		ManagementFactory.getPlatformMBeanServer().registerMBean(new Statistics(dt), name);
+		return name;
+	}
+
+	public static Snapshot snapshot(Triangulation dt){
+		// Current values, with sizes of given triangulation (zeros if it is null)
+		return new Snapshot(dt);
+	}
+
+	public static void resetAll(){
+		LongAdder[] counters = {
+			locates, locateSteps, inserts, insertRetries, flips, removes, moves, circumCenters, publishes, publishedPages, relaxIterations, interpolations,
+			det3Calls, det3ExactCalls, inCircleCalls, inCircleExactCalls, circleTests, circleExactTests,
+			locateNanos, insertNanos, removeNanos, moveNanos, voronoiNanos, publishNanos, relaxNanos, interpolateNanos
+		};
+		for(LongAdder counter : counters){
+			counter.reset();
+		}
+		locateStepsHistogram.reset();
+		flipsPerInsertHistogram.reset();
+	}
+
+	// Sizes of triangulation with n sites, all faces are triangles within bounding triangle
+	static int edges(int sites){
+		return 3 * sites + 3;
+	}
+
+	static int faces(int sites){
+		return 2 * sites + 1;
+	}
+
+	// MBean
+	@Override public boolean isEnabled(){ return ENABLED; }
+	@Override public int getSites(){ return (dt != null) ? dt.size() : 0; }
+	@Override public int getEdges(){ return (dt != null) ? edges(dt.size()) : 0; }
+	@Override public int getFaces(){ return (dt != null) ? faces(dt.size()) : 0; }
+	@Override public long getLocates(){ return locates.sum(); }
+	@Override public long getLocateSteps(){ return locateSteps.sum(); }
+	@Override public long getInserts(){ return inserts.sum(); }
+	@Override public long getInsertRetries(){ return insertRetries.sum(); }
+	@Override public long getFlips(){ return flips.sum(); }
+	@Override public long getRemoves(){ return removes.sum(); }
+	@Override public long getMoves(){ return moves.sum(); }
+	@Override public long getCircumCenters(){ return circumCenters.sum(); }
+	@Override public long getPublishes(){ return publishes.sum(); }
+	@Override public long getPublishedPages(){ return publishedPages.sum(); }
+	@Override public long getRelaxIterations(){ return relaxIterations.sum(); }
+	@Override public long getInterpolations(){ return interpolations.sum(); }
+	@Override public long getDet3Calls(){ return det3Calls.sum(); }
+	@Override public long getDet3ExactCalls(){ return det3ExactCalls.sum(); }
+	@Override public long getInCircleCalls(){ return inCircleCalls.sum(); }
+	@Override public long getInCircleExactCalls(){ return inCircleExactCalls.sum(); }
+	@Override public long getCircleTests(){ return circleTests.sum(); }
+	@Override public long getCircleExactTests(){ return circleExactTests.sum(); }
+	@Override public long getLocateNanos(){ return locateNanos.sum(); }
+	@Override public long getInsertNanos(){ return insertNanos.sum(); }
+	@Override public long getRemoveNanos(){ return removeNanos.sum(); }
+	@Override public long getMoveNanos(){ return moveNanos.sum(); }
+	@Override public long getVoronoiNanos(){ return voronoiNanos.sum(); }
+	@Override public long getPublishNanos(){ return publishNanos.sum(); }
+	@Override public long getRelaxNanos(){ return relaxNanos.sum(); }
+	@Override public long getInterpolateNanos(){ return interpolateNanos.sum(); }
+	@Override public long[] getLocateStepsHistogram(){ return locateStepsHistogram.counts(); }
+	@Override public long[] getFlipsPerInsertHistogram(){ return flipsPerInsertHistogram.counts(); }
+	@Override public void reset(){ resetAll(); }
+
+	static class Histogram {
+		// Counts of values in power of two buckets
+		private final LongAdder[] buckets = new LongAdder[33];
+
+		Histogram(){
+			for(int i = 0; i < buckets.length; i++){
+				buckets[i] = new LongAdder();
+			}
+		}
+
+		void record(int value){
+			buckets[32 - Integer.numberOfLeadingZeros(value)].increment();
+		}
+
+		long[] counts(){
+			// Trailing empty buckets are left out
+			int length = buckets.length;
+			while(length > 0 && buckets[length - 1].sum() == 0){
+				length--;
+			}
+			long[] result = new long[length];
+			for(int i = 0; i < length; i++){
+				result[i] = buckets[i].sum();
+			}
+			return result;
+		}
+
+		void reset(){
+			for(LongAdder bucket : buckets){
+				bucket.reset();
+			}
+		}
+	}
+
+	public static class Snapshot {
+		// Values of all statistics at one moment (counters are read one by one, so not atomically)
+		public final int sites, edges, faces;
+		public final long locates, locateSteps, inserts, insertRetries, flips, removes, moves, circumCenters, publishes, publishedPages, relaxIterations, interpolations;
+		public final long det3Calls, det3ExactCalls, inCircleCalls, inCircleExactCalls, circleTests, circleExactTests;
+		public final long locateNanos, insertNanos, removeNanos, moveNanos, voronoiNanos, publishNanos, relaxNanos, interpolateNanos;
+		public final long[] locateStepsHistogram, flipsPerInsertHistogram;
+
+		Snapshot(Triangulation dt){
+			sites = (dt != null) ? dt.size() : 0;
+			edges = (dt != null) ? Statistics.edges(sites) : 0;
+			faces = (dt != null) ? Statistics.faces(sites) : 0;
+			locates = Statistics.locates.sum();
+			locateSteps = Statistics.locateSteps.sum();
+			inserts = Statistics.inserts.sum();
+			insertRetries = Statistics.insertRetries.sum();
+			flips = Statistics.flips.sum();
+			removes = Statistics.removes.sum();
+			moves = Statistics.moves.sum();
+			circumCenters = Statistics.circumCenters.sum();
+			publishes = Statistics.publishes.sum();
+			publishedPages = Statistics.publishedPages.sum();
+			relaxIterations = Statistics.relaxIterations.sum();
+			interpolations = Statistics.interpolations.sum();
+			det3Calls = Statistics.det3Calls.sum();
+			det3ExactCalls = Statistics.det3ExactCalls.sum();
+			inCircleCalls = Statistics.inCircleCalls.sum();
+			inCircleExactCalls = Statistics.inCircleExactCalls.sum();
+			circleTests = Statistics.circleTests.sum();
+			circleExactTests = Statistics.circleExactTests.sum();
+			locateNanos = Statistics.locateNanos.sum();
+			insertNanos = Statistics.insertNanos.sum();
+			removeNanos = Statistics.removeNanos.sum();
+			moveNanos = Statistics.moveNanos.sum();
+			voronoiNanos = Statistics.voronoiNanos.sum();
+			publishNanos = Statistics.publishNanos.sum();
+			relaxNanos = Statistics.relaxNanos.sum();
+			interpolateNanos = Statistics.interpolateNanos.sum();
+			locateStepsHistogram = Statistics.locateStepsHistogram.counts();
+			flipsPerInsertHistogram = Statistics.flipsPerInsertHistogram.counts();
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append(String.format("sites %d, edges %d, faces %d%n", sites, edges, faces));
+			sb.append(String.format("locate   %12d calls %14d steps (%.1f per call) %10.1f ms%n",
+					locates, locateSteps, ratio(locateSteps, locates), locateNanos / 1e6));
+			sb.append(String.format("insert   %12d calls %14d flips (%.1f per call) %10.1f ms, %d retries%n",
+					inserts, flips, ratio(flips, inserts), insertNanos / 1e6, insertRetries));
+			sb.append(String.format("remove   %12d calls %31s %10.1f ms%n", removes, "", removeNanos / 1e6));
+			sb.append(String.format("move     %12d calls %31s %10.1f ms%n", moves, "", moveNanos / 1e6));
+			sb.append(String.format("voronoi  %12d circumCenters %23s %10.1f ms%n", circumCenters, "", voronoiNanos / 1e6));
+			sb.append(String.format("publish  %12d snapshots %10d pages %10s %10.1f ms%n", publishes, publishedPages, "", publishNanos / 1e6));
+			sb.append(String.format("relax    %12d iterations %26s %10.1f ms%n", relaxIterations, "", relaxNanos / 1e6));
+			sb.append(String.format("sibson   %12d queries %29s %10.1f ms%n", interpolations, "", interpolateNanos / 1e6));
+			sb.append(String.format("det3     %12d calls %14d exact%n", det3Calls, det3ExactCalls));
+			sb.append(String.format("inCircle %12d calls %14d exact%n", inCircleCalls, inCircleExactCalls));
+			sb.append(String.format("circle   %12d tests %14d exact%n", circleTests, circleExactTests));
+			sb.append("locate steps histogram    ").append(histogram(locateStepsHistogram)).append(String.format("%n"));
+			sb.append("flips per insert histogram").append(histogram(flipsPerInsertHistogram));
+			return sb.toString();
+		}
+
+		private static double ratio(long a, long b){
+			return (b != 0) ? (double)a / b : 0;
+		}
+
+		private static String histogram(long[] counts){
+			// Buckets as "<2^i:count"
+			StringBuilder sb = new StringBuilder();
+			for(int i = 0; i < counts.length; i++){
+				if(counts[i] != 0){
+					sb.append(' ').append((i == 0) ? "0" : "<" + (1L << i)).append(':').append(counts[i]);
+				}
+			}
+			return sb.toString();
+		}
+	}
+
+}
\ No newline at end of file
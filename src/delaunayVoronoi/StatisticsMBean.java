@@ -0,0 +1,47 @@
+package delaunayVoronoi;
+
+public interface StatisticsMBean {
+	// Attributes and operations of Statistics published over JMX
+	public boolean isEnabled();
+
+	// Gauges of the monitored triangulation
+	public int getSites();
+	public int getEdges();
+	public int getFaces();
+
+	// Counters
+	public long getLocates();
+	public long getLocateSteps();
+	public long getInserts();
+	public long getInsertRetries();
+	public long getFlips();
+	public long getRemoves();
+	public long getMoves();
+	public long getCircumCenters();
+	public long getPublishes();
+	public long getPublishedPages();	// Pages copied by publishes
+	public long getRelaxIterations();
+	public long getInterpolations();
+	public long getDet3Calls();
+	public long getDet3ExactCalls();
+	public long getInCircleCalls();
+	public long getInCircleExactCalls();
+	public long getCircleTests();	// Bowyer-Watson circle tests and how many of them needed the exact predicate
+	public long getCircleExactTests();
+
+	// Timings in nanoseconds
+	public long getLocateNanos();
+	public long getInsertNanos();
+	public long getRemoveNanos();
+	public long getMoveNanos();
+	public long getVoronoiNanos();
+	public long getPublishNanos();
+	public long getRelaxNanos();
+	public long getInterpolateNanos();
+
+	// Histograms, count of values in [2^(i-1), 2^i) at index i (zeros at index 0)
+	public long[] getLocateStepsHistogram();
+	public long[] getFlipsPerInsertHistogram();
+
+	public void reset();
+}
\ No newline at end of file
@@ -1,211 +1,2053 @@
 package delaunayVoronoi;
 
-import java.awt.Point;
-import java.util.HashSet;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class Triangulation {
-	private static final int BOUNDARY_SIZE = 10000;
-	private static final double EPSILON = 0.001;
-	private Edge firstEdge;
-	private DataPoint boundA, boundB, boundC;
-	private int siteCount = 0;
-	
+	/* Delaunay triangulation kept in a QuadEdgeMesh, so it runs on either
+	 * backend: ObjectMesh (the default) or CompactMesh. Edges and sites are
+	 * ints of the mesh. Sites 0, 1 and 2 are corners of the bounding
+	 * triangle, so boundary checks compare site numbers only. The corners
+	 * are symbolic points in infinity (see QuadEdgeMesh), so sites can have
+	 * any coordinates.
+	 */
+	private static final int BOUNDS = QuadEdgeMesh.BOUNDS;	// Sites below are corners of the bounding triangle
+	private static final double FAR = 16;	// Voronoi vertexes in infinity are put this many times farther than their sites
+	private QuadEdgeMesh mesh;
+	private int firstEdge;
+	private int lastEdge = QuadEdgeMesh.NONE;	// Where the last insertion finished, start for next locate
+	private AtomicInteger siteCount = new AtomicInteger();
+	private boolean lazyVoronoi = false;
+	private double[] values = new double[0];	// Values of sites by their numbers, NaN if not set
+	private Random rand = new Random();
+	// Traversal state
+	private int epoch = 0;
+	private int[] stack = new int[64];
+	private int stackTop = 0;
+
 	public Triangulation(){
+		this(new ObjectMesh());
+	}
+
+	public Triangulation(QuadEdgeMesh mesh){
+		// Triangulation in given empty mesh, e.g. new CompactMesh(expectedSites)
+		if(mesh.siteCount() != 0){
+			throw new IllegalArgumentException("Mesh is not empty");
+		}
+		this.mesh = mesh;
 		// Make bounding triangle
-		boundA = new DataPoint(DataPoint.SITE, 0, -BOUNDARY_SIZE);
-		boundB = new DataPoint(DataPoint.SITE, BOUNDARY_SIZE, BOUNDARY_SIZE);
-		boundC = new DataPoint(DataPoint.SITE, -BOUNDARY_SIZE, BOUNDARY_SIZE);
-		Edge	e1 = Operators.newEdge(boundA, boundB),
-				e2 = Operators.newEdge(boundB, boundC),
-				e3 = Operators.newEdge(boundC, boundA);
+		newBoundingSites(mesh);
+		int	boundA = 0, boundB = 1, boundC = 2;
+		int	e1 = mesh.newEdge(boundA, boundB),
+			e2 = mesh.newEdge(boundB, boundC),
+			e3 = mesh.newEdge(boundC, boundA);
 		// Connect edges
-		Operators.splice(e1.sym(), e2);
-		Operators.splice(e2.sym(), e3);
-		Operators.splice(e3.sym(), e1);
+		mesh.splice(mesh.sym(e1), e2);
+		mesh.splice(mesh.sym(e2), e3);
+		mesh.splice(mesh.sym(e3), e1);
 		// Save first edge for traversal
 		firstEdge = e1;
 		// Compute Voronoi diagram
 		computeVoronoi();
 	}
-	
+
+	Triangulation(QuadEdgeMesh mesh, int firstEdge, int siteCount, boolean lazyVoronoi){
+		// Wraps already built mesh, whose first edge goes from corner A to corner B of bounding triangle
+		this.mesh = mesh;
+		this.firstEdge = firstEdge;
+		this.siteCount.set(siteCount);
+		this.lazyVoronoi = lazyVoronoi;
+		if(!lazyVoronoi){
+			computeVoronoi();
+		}
+	}
+
+	static void newBoundingSites(QuadEdgeMesh mesh){
+		/* Corners A, B, C of bounding triangle in CCW order become sites 0,
+		 * 1, 2. Their coordinates are directions to them, irrational so that
+		 * lines of sites (like axes of a grid) do not pass through them.
+		 */
+		mesh.newSite(Math.E / 1000, -1);
+		mesh.newSite(1, Math.PI / 3);
+		mesh.newSite(-1, Math.sqrt(1.2));
+	}
+
 	// Adding sites to triangulation
-	public void addSite(DataPoint x){
-		// Locate triangle
-		Edge triSide = locate(x);
-		if(triSide.origin().equals(x) || triSide.dest().equals(x)){
+	public int addSite(DataPoint x){
+		return addSite(x.x, x.y);
+	}
+
+	public int addSite(double x, double y){
+		/* Adds site [x, y] and returns its number in the mesh. If there
+		 * already is a site at [x, y], nothing is added and its number is
+		 * returned. Throws IllegalArgumentException if x or y is NaN or
+		 * infinite.
+		 */
+		checkSite(x, y);
+		if(concurrentInsertion){
+			return addSiteConcurrent(x, y);
+		}
+		int site = addSiteSequential(x, y, hierarchy != null);
+		published();
+		return site;
+	}
+
+	private int addSiteSequential(double x, double y, boolean descend){
+		// Locate triangle, walk starts where the last insertion finished, or at the coarsest level of the hierarchy
+		long start = Statistics.ENABLED ? System.nanoTime() : 0;
+		int triSide;
+		if(descend){
+			triSide = descend(x, y, path);
+		}
+		else{
+			Arrays.fill(path, QuadEdgeMesh.NONE);
+			triSide = mesh.locate(x, y, (lastEdge != QuadEdgeMesh.NONE) ? lastEdge : firstEdge);
+		}
+		if(Statistics.ENABLED){
+			long now = System.nanoTime();
+			Statistics.locateNanos.add(now - start);
+			start = now;
+		}
+		int count = siteCount.get();
+		lastEdge = bowyerWatson ? insertCavity(x, y, triSide) : insert(x, y, triSide, QuadEdgeMesh.NONE);
+		if(Statistics.ENABLED){
+			Statistics.insertNanos.add(System.nanoTime() - start);
+		}
+		int site = mesh.origin(lastEdge);
+		if(hierarchy != null && siteCount.get() != count){
+			promote(site);
+		}
+		return site;
+	}
+
+	private int insert(double x, double y, int triSide, int site){
+		/* Inserts [x, y] into triangle on the left of triSide (which was found
+		 * by locate). Site is the number of a moved site already at [x, y],
+		 * NONE for a new site. Returns an edge leaving the inserted site, or
+		 * leaving the site which already is at [x, y].
+		 */
+		if(isAt(mesh.origin(triSide), x, y)){
 			// Site is already in the triangulation
-			return;
+			return triSide;
+		}
+		if(isAt(mesh.dest(triSide), x, y)){
+			return mesh.sym(triSide);
 		}
-		if(onEdge(x, triSide)){
+		touchFace(triSide);
+		if(mesh.onEdge(x, y, triSide)){
 			// Three colinear points - delete original edge
-			Edge temp = triSide.oPrev();
-			Operators.delete(triSide);
+			touchFace(mesh.sym(triSide));
+			int temp = mesh.oPrev(triSide);
+			mesh.delete(triSide);
 			triSide = temp;
 		}
-		
+
 		// Connect x to sites within its triangle
-		DataPoint firstSite = triSide.origin();
-		Edge starEdge = Operators.newEdge(firstSite, x);
-		Operators.splice(starEdge, triSide);	// Connect to first point
-		while(true){
-			starEdge = Operators.connect(triSide, starEdge.sym());
-			triSide = starEdge.oPrev();				// Move to next triangle side
-			if(triSide.dest().equals(firstSite)){	// Connected to all sites
-				break;
-			}
+		if(site == QuadEdgeMesh.NONE){
+			site = mesh.newSite(x, y);
 		}
+		int firstSite = mesh.origin(triSide);
+		int starEdge = connectStar(site, triSide);
 
 		// Inspecting suspect edges and swapping
-		Edge suspectEdge = starEdge.oPrev();
+		int suspectEdge = mesh.oPrev(starEdge);
+		int flips = 0;
 		while(true){
-			Edge suspectTri = suspectEdge.oPrev();
-			if(	Operators.rightOf(suspectTri.dest(), suspectEdge) &&			// We`re inside of bounding triangle
-				Operators.inCircle(suspectEdge.origin(), suspectTri.dest(), suspectEdge.dest(), x)	// In circle test
+			int suspectTri = mesh.oPrev(suspectEdge);
+			if(	mesh.rightOf(mesh.dest(suspectTri), suspectEdge) &&			// We`re inside of bounding triangle
+				mesh.inCircle(mesh.origin(suspectEdge), mesh.dest(suspectTri), mesh.dest(suspectEdge), x, y)	// In circle test
 			){
 				// Bad edge - flip
-				Operators.flip(suspectEdge);
+				touchFace(mesh.sym(suspectEdge));
+				mesh.flip(suspectEdge);
+				flips++;
 				// Move to new suspect edge (one CW). The other suspect edge (one CCW) will be examined in next step by turning twice CCW.
-				suspectEdge = suspectEdge.oPrev();
+				suspectEdge = mesh.oPrev(suspectEdge);
 			}
-			else if(suspectEdge.origin().equals(firstSite)){
-				// We returned to start no more suspect edges. Recompute face circumCenters for Voroni diagram and quit. 
-				computeVoronoi();
-				siteCount++;
-				return;
+			else if(mesh.origin(suspectEdge) == firstSite){
+				// We returned to start no more suspect edges. All created or flipped faces are now around x, so only their circumCenters are recomputed.
+				if(!lazyVoronoi){
+					computeVoronoiAround(mesh.sym(starEdge));
+				}
+				if(trackChanges){
+					touchFacesAround(mesh.sym(starEdge));
+				}
+				siteCount.incrementAndGet();
+				if(Statistics.ENABLED){
+					Statistics.inserts.increment();
+					Statistics.flips.add(flips);
+					Statistics.flipsPerInsertHistogram.record(flips);
+				}
+				return mesh.sym(starEdge);
 			}
 			else{
 				// Move to next suspect edge (skip one newly added edge in between).
-				suspectEdge = suspectEdge.oNext().oNext().sym();
+				suspectEdge = mesh.sym(mesh.oNext(mesh.oNext(suspectEdge)));
 			}
 		}
 	}
-	
-	private Edge locate(Point x){
-		/* Jump-and-Walk algorithm. Returns any edge of a triangle containing
-		 * given point x (x is on left of result edge or on it).
-		 */
-		Edge e = getFirstEdge();
+
+	private int connectStar(int site, int triSide){
+		// Connects site to all sites of the face on the left of triSide, returns the last new edge (going to site)
+		int firstSite = mesh.origin(triSide);
+		int starEdge = mesh.newEdge(firstSite, site);
+		mesh.splice(starEdge, triSide);	// Connect to first point
 		while(true){
-			// x is on edge of triangle
-			if(onEdge(x, e)){ return e; }
-			else if(onEdge(x, e.lNext())){ return e.lNext(); }
-			else if(onEdge(x, e.lPrev())){ return e.lPrev(); }
-			// x is elsewhere
-			if(Operators.rightOf(x, e)){
-				e = e.sym();
-			}
-			else if(Operators.rightOf(x, e.lNext())){
-				// Move towards lNext triangle
-				e = e.lNext().sym();
-			}
-			else if(Operators.rightOf(x, e.lPrev())){
-				// Move towards lPrev triangle
-				e = e.lPrev().sym();
+			starEdge = mesh.connect(triSide, mesh.sym(starEdge));
+			triSide = mesh.oPrev(starEdge);			// Move to next side
+			if(mesh.dest(triSide) == firstSite){	// Connected to all sites
+				return starEdge;
+			}
+		}
+	}
+
+	// Bowyer-Watson insertion
+	/* Alternative serial insertion: all faces whose circumCircle contains
+	 * the new site (the cavity) are found by a walk from the located face,
+	 * their inner edges are deleted and the site is connected to the
+	 * boundary of the cavity in one pass, without flips. The cavity has no
+	 * sites inside, so the walk never reaches a face twice. Circle tests use
+	 * circumCenters cached in dual edges (which are the Voronoi vertexes)
+	 * together with their squared radius (as Circle), so a test is one
+	 * distance comparison. circumCenter keeps the radius only if the center
+	 * is accurate to MAX_CENTER_ERROR of the radius, then every test outside
+	 * of CIRCLE_MARGIN around the circle is decided correctly, and tests
+	 * within it fall back to the exact inCircle of the mesh. So do tests of
+	 * faces with a corner of the bounding triangle (their center is in
+	 * infinity) and of faces loaded by TriangulationIO, until they change.
+	 * Moves and concurrent insertion always use flips.
+	 */
+	private static final double CIRCLE_MARGIN = 1e-8;		// Of squared radius, more than 4 * MAX_CENTER_ERROR and rounding
+	private static final double MAX_CENTER_ERROR = 1e-9;	// Of radius
+	private static final double ROUNDING = 8 * Math.ulp(1.0);
+	private boolean bowyerWatson = false;
+	private int[] cavityStack = new int[16];
+	private int[] cavityInside = new int[16];
+
+	private static class Circle extends DataPoint {
+		// circumCenter of a face with squared radius of its circumCircle, NaN if the center is not accurate enough
+		private static final long serialVersionUID = 1L;
+		final double radiusSq;
+
+		Circle(double x, double y, double radiusSq){
+			super(DataPoint.FACE, x, y);
+			this.radiusSq = radiusSq;
+		}
+	}
+
+	public void setBowyerWatson(boolean cavities){
+		// Switches addSite and addAll between flip-based and cavity insertion
+		bowyerWatson = cavities;
+	}
+
+	public boolean isBowyerWatson(){
+		return bowyerWatson;
+	}
+
+	private int insertCavity(double x, double y, int triSide){
+		/* Inserts [x, y] into triangle on the left of triSide (which was found
+		 * by locate) by Bowyer-Watson algorithm. Returns an edge leaving the
+		 * inserted site, or leaving the site which already is at [x, y].
+		 */
+		if(isAt(mesh.origin(triSide), x, y)){
+			return triSide;
+		}
+		if(isAt(mesh.dest(triSide), x, y)){
+			return mesh.sym(triSide);
+		}
+		// Cavity, walked across sides of its faces
+		touchFace(triSide);
+		int top = 0, inside = 0;
+		cavityStack[top++] = mesh.lPrev(triSide);
+		cavityStack[top++] = mesh.lNext(triSide);
+		if(mesh.onEdge(x, y, triSide)){
+			// [x, y] is on a side, both faces along it are in the cavity
+			int across = mesh.sym(triSide);
+			touchFace(across);
+			cavityInside[inside++] = triSide;
+			cavityStack[top++] = mesh.lPrev(across);
+			cavityStack[top++] = mesh.lNext(across);
+		}
+		else{
+			cavityStack[top++] = triSide;
+		}
+		int boundary = QuadEdgeMesh.NONE;
+		while(top > 0){
+			int side = cavityStack[--top];
+			int across = mesh.sym(side);
+			if(	(mesh.origin(side) >= BOUNDS || mesh.dest(side) >= BOUNDS) &&	// Across a side of the bounding triangle is its outer face
+				inCircumCircle(across, x, y)
+			){
+				touchFace(across);
+				if(inside == cavityInside.length){
+					cavityInside = Arrays.copyOf(cavityInside, 2 * inside);
+				}
+				cavityInside[inside++] = side;
+				if(top + 2 > cavityStack.length){
+					cavityStack = Arrays.copyOf(cavityStack, 2 * cavityStack.length);
+				}
+				cavityStack[top++] = mesh.lPrev(across);
+				cavityStack[top++] = mesh.lNext(across);
 			}
 			else{
-				// x is on left of all sides of triangle => is in triangle
-				return e;
+				boundary = side;
+			}
+		}
+		// Remove inner edges, cavity becomes one face on the left of its boundary, and connect the site to its sites
+		for(int i = 0; i < inside; i++){
+			mesh.delete(cavityInside[i]);
+		}
+		int starEdge = mesh.sym(connectStar(mesh.newSite(x, y), boundary));
+		if(!lazyVoronoi){
+			computeVoronoiAround(starEdge);
+		}
+		if(trackChanges){
+			touchFacesAround(starEdge);
+		}
+		siteCount.incrementAndGet();
+		if(Statistics.ENABLED){
+			Statistics.inserts.increment();
+		}
+		return starEdge;
+	}
+
+	private boolean inCircumCircle(int triSide, double x, double y){
+		// Returns true if [x, y] is inside of circumCircle of face on the left of triSide
+		if(Statistics.ENABLED){
+			Statistics.circleTests.increment();
+		}
+		DataPoint center = voronoiVertex(mesh.rotInv(triSide));
+		double radiusSq = (center instanceof Circle) ? ((Circle)center).radiusSq : Double.NaN;
+		if(!Double.isNaN(radiusSq)){
+			double dx = x - center.x, dy = y - center.y;
+			double diff = dx*dx + dy*dy - radiusSq;
+			if(diff > CIRCLE_MARGIN * radiusSq){
+				return false;
+			}
+			if(-diff > CIRCLE_MARGIN * radiusSq){
+				return true;
+			}
+		}
+		if(Statistics.ENABLED){
+			Statistics.circleExactTests.increment();
+		}
+		return mesh.inCircle(mesh.origin(triSide), mesh.dest(triSide), mesh.dest(mesh.lNext(triSide)), x, y);
+	}
+
+	public int[] addAll(Collection<? extends Point2D> sites){
+		return addAll(sites.toArray(new Point2D[sites.size()]));
+	}
+
+	public int[] addAll(Point2D[] sites){
+		/* Adds sites in biased randomized order along Hilbert curve, so each
+		 * locate starts close to the previously added site. Returns numbers of
+		 * the sites in order of given array, which is not reordered. If some
+		 * site is not finite, nothing is added. Sites are published together.
+		 */
+		for(Point2D p : sites){
+			checkSite(p.getX(), p.getY());
+		}
+		int[] result = new int[sites.length];
+		for(int i : SpatialSort.brio(sites, rand)){
+			double x = sites[i].getX(), y = sites[i].getY();
+			// Consecutive sites are close, so walks from the previous one are shorter than descents
+			result[i] = concurrentInsertion ? addSiteConcurrent(x, y) : addSiteSequential(x, y, false);
+		}
+		if(!concurrentInsertion){
+			published();
+		}
+		return result;
+	}
+
+	static boolean finite(double x, double y){
+		return !Double.isNaN(x) && !Double.isInfinite(x) && !Double.isNaN(y) && !Double.isInfinite(y);
+	}
+
+	static void checkSite(double x, double y){
+		if(!finite(x, y)){
+			throw new IllegalArgumentException("Site [" + x + ", " + y + "] is not finite");
+		}
+	}
+
+	private boolean isAt(int site, double x, double y){
+		return site >= BOUNDS && mesh.x(site) == x && mesh.y(site) == y;
+	}
+
+	int findSite(double x, double y){
+		// Returns the site at [x, y], or NONE if there is none
+		int triSide = locate(x, y, QuadEdgeMesh.NONE);
+		lastEdge = triSide;
+		if(isAt(mesh.origin(triSide), x, y)){
+			return mesh.origin(triSide);
+		}
+		if(isAt(mesh.dest(triSide), x, y)){
+			return mesh.dest(triSide);
+		}
+		return QuadEdgeMesh.NONE;
+	}
+
+	// Removing sites from triangulation
+	public boolean removeSite(Point2D x){
+		// Removes the site at x, returns false if there is none
+		requireSequential();
+		int site = findSite(x.getX(), x.getY());
+		return site != QuadEdgeMesh.NONE && removeSite(site);
+	}
+
+	public boolean removeSite(int site){
+		/* Removes site and retriangulates the star-shaped hole left after it,
+		 * so the work is proportional to the degree of the site. Returns false
+		 * if site is not in the triangulation or is a corner of the bounding
+		 * triangle. Number of the site is reused by a later insertion. Must
+		 * not be called during concurrent insertion.
+		 */
+		requireSequential();
+		if(!isSite(site)){
+			return false;
+		}
+		long start = Statistics.ENABLED ? System.nanoTime() : 0;
+		if(hierarchy != null){
+			demote(site);
+		}
+		detach(site);
+		mesh.releaseSite(site);
+		if(site < values.length){
+			values[site] = Double.NaN;
+		}
+		siteCount.decrementAndGet();
+		if(Statistics.ENABLED){
+			Statistics.removes.increment();
+			Statistics.removeNanos.add(System.nanoTime() - start);
+		}
+		published();
+		return true;
+	}
+
+	private boolean isSite(int site){
+		// Site is in the triangulation and is not a corner of the bounding triangle
+		return site >= BOUNDS && site < mesh.siteCount() && mesh.edgeOf(site) != QuadEdgeMesh.NONE;
+	}
+
+	private void detach(int site){
+		/* Deletes edges of site and retriangulates the hole left after it, the
+		 * site keeps its number.
+		 */
+		// Collect edges out of site and its link (polygon around it, with the site on the left of its sides)
+		int star = mesh.edgeOf(site);
+		int degree = 0;
+		int e = star;
+		do{
+			degree++;
+			e = mesh.oNext(e);
+		} while(e != star);
+		int[] starEdges = new int[degree], link = new int[degree];
+		for(int i = 0; i < degree; i++){
+			starEdges[i] = e;
+			link[i] = mesh.lNext(e);
+			e = mesh.oNext(e);
+		}
+		double x = mesh.x(site), y = mesh.y(site);
+		if(trackChanges){
+			touchFacesAround(star);
+		}
+		for(int s : starEdges){
+			mesh.delete(s);
+		}
+		mesh.markFaceDirty(link[0]);	// Hole is one face now
+
+		// Retriangulate the hole, ears are chosen in floating-point, so the result is made exactly Delaunay by flips
+		int[] diagonals = fillHole(x, y, link);
+		legalize(diagonals.clone(), diagonals.length);
+		if(trackChanges){
+			// Every face of the hole has a diagonal (or is the hole itself)
+			touchFace(link[0]);
+			for(int d : diagonals){
+				touchFace(d);
+				touchFace(mesh.sym(d));
+			}
+		}
+		if(!lazyVoronoi){
+			for(int d : diagonals){
+				voronoiVertex(mesh.rotInv(d));
+				voronoiVertex(mesh.rotInv(mesh.sym(d)));
+			}
+			voronoiVertex(mesh.rotInv(link[0]));
+		}
+		lastEdge = link[0];
+	}
+
+	private int[] fillHole(double x, double y, int[] link){
+		/* Cuts ears off the polygon left after removal of site [x, y]
+		 * (Devillers, 1999). An ear is cut by an edge from its last site to
+		 * its first site. The valid ear whose circumCircle has the lowest
+		 * power of the removed site is cut first. Returns new edges.
+		 */
+		int n = link.length;
+		int[] side = link.clone();
+		int[] next = new int[n], prev = new int[n], stamp = new int[n];
+		for(int i = 0; i < n; i++){
+			next[i] = (i + 1) % n;
+			prev[i] = (i + n - 1) % n;
+		}
+		PriorityQueue<Ear> ears = new PriorityQueue<Ear>();
+		for(int i = 0; i < n; i++){
+			offerEar(ears, x, y, side, next, stamp, i);
+		}
+		int[] diagonals = new int[Math.max(n - 3, 0)];
+		int count = 0;
+		while(n > 3){
+			Ear ear = ears.poll();
+			int i = ear.side, j = next[i];
+			if(ear.stamp != stamp[i]){
+				// Polygon changed around this ear since it was offered
+				continue;
+			}
+			// Ear is triangle side[i], side[j] and new edge, the rest of polygon continues along new edge
+			int d = mesh.connect(side[j], side[i]);
+			diagonals[count++] = d;
+			side[i] = mesh.sym(d);
+			next[i] = next[j];
+			prev[next[j]] = i;
+			stamp[j]++;
+			n--;
+			offerEar(ears, x, y, side, next, stamp, prev[i]);
+			offerEar(ears, x, y, side, next, stamp, i);
+		}
+		return diagonals;
+	}
+
+	private void offerEar(PriorityQueue<Ear> ears, double x, double y, int[] side, int[] next, int[] stamp, int i){
+		/* Ear side[i], side[next[i]] can be cut, if it is convex and does not
+		 * reach over the removed site (then no other site of star-shaped
+		 * polygon is in it).
+		 */
+		stamp[i]++;
+		int	a = mesh.origin(side[i]),
+			b = mesh.dest(side[i]),
+			c = mesh.dest(side[next[i]]);
+		double det = mesh.det3(a, b, c);
+		if(det > 0 && mesh.det3(a, c, x, y) >= 0){
+			double power;
+			if(a < BOUNDS || b < BOUNDS || c < BOUNDS){
+				// Circle in infinity
+				power = mesh.inCircle(a, b, c, x, y) ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+			}
+			else{
+				power = power(x, y, mesh.x(a), mesh.y(a), mesh.x(b), mesh.y(b), mesh.x(c), mesh.y(c)) / det;
+			}
+			ears.add(new Ear(i, stamp[i], power));
+		}
+	}
+
+	private static double power(double x, double y, double ax, double ay, double bx, double by, double cx, double cy){
+		// Power of [x, y] with respect to circumCircle of CCW triangle a, b, c, times det3(a, b, c)
+		double	adx = ax - x, ady = ay - y,
+				bdx = bx - x, bdy = by - y,
+				cdx = cx - x, cdy = cy - y;
+		return	-(	(adx*adx + ady*ady) * (bdx*cdy - cdx*bdy) +
+					(bdx*bdx + bdy*bdy) * (cdx*ady - adx*cdy) +
+					(cdx*cdx + cdy*cdy) * (adx*bdy - bdx*ady));
+	}
+
+	private static class Ear implements Comparable<Ear> {
+		int side, stamp;
+		double power;
+
+		Ear(int side, int stamp, double power){
+			this.side = side;
+			this.stamp = stamp;
+			this.power = power;
+		}
+
+		@Override
+		public int compareTo(Ear o) {
+			return Double.compare(power, o.power);
+		}
+	}
+
+	private int[] legalize(int[] suspects, int count){
+		/* Flips suspects[0..count) and edges around flipped ones until all of
+		 * them are Delaunay, returns the flipped edges.
+		 */
+		int[] flipped = new int[4];
+		int flips = 0;
+		while(count > 0){
+			int e = suspects[--count];
+			if(edgeFromBoundary(e) && edgeFromBoundary(mesh.sym(e))){
+				// Side of bounding triangle
+				continue;
+			}
+			int far = mesh.dest(mesh.lNext(mesh.sym(e)));
+			if(mesh.inCircle(mesh.origin(e), mesh.dest(e), mesh.dest(mesh.lNext(e)), far)){
+				touchFace(e);
+				touchFace(mesh.sym(e));
+				mesh.flip(e);
+				touchFace(e);
+				touchFace(mesh.sym(e));
+				if(Statistics.ENABLED){
+					Statistics.flips.increment();
+				}
+				if(flips == flipped.length){
+					flipped = Arrays.copyOf(flipped, 2 * flips);
+				}
+				flipped[flips++] = e;
+				if(count + 4 > suspects.length){
+					suspects = Arrays.copyOf(suspects, 2 * count + 4);
+				}
+				suspects[count++] = mesh.lNext(e);
+				suspects[count++] = mesh.lPrev(e);
+				suspects[count++] = mesh.lNext(mesh.sym(e));
+				suspects[count++] = mesh.lPrev(mesh.sym(e));
 			}
 		}
+		return Arrays.copyOf(flipped, flips);
 	}
-	
-	private boolean onEdge(Point x, Edge e){
-		// Vectors e.orig -> e.dest and e.orig -> x :
-		double	ex = e.dest().getX() - e.origin().getX(),
-				ey = e.dest().getY() - e.origin().getY(),
-				xx = x.getX() - e.origin().getX(),
-				xy = x.getY() - e.origin().getY();
-		// Parameter of formula x = e.orig + t*(e.dest - e.orig)
-		double	tx = xx / ex,
-				ty = xy / ey;
-		if(Math.abs(tx - ty) > EPSILON){
-			// x is not on line defined by e
+
+	// Moving sites
+	public boolean moveSite(int site, double x, double y){
+		/* Moves site to [x, y], it keeps its number. If the new position is
+		 * inside of the kernel of the polygon around the site, the
+		 * triangulation stays valid and the site is moved in place, the
+		 * Delaunay property is then restored by flips. Otherwise the site is
+		 * removed and inserted again. Returns false if site is not in the
+		 * triangulation, or if there already is another site at [x, y]. Must
+		 * not be called during concurrent insertion, throws
+		 * IllegalArgumentException if x or y is not finite.
+		 */
+		requireSequential();
+		checkSite(x, y);
+		if(!moveSiteSequential(site, x, y)){
 			return false;
 		}
-		if(tx < 0 || tx > 1 || ty < 0 || ty > 1){
-			// x is on the line, but not within the segment of e
+		published();
+		return true;
+	}
+
+	public double moveAll(int[] sites, double[] x, double[] y){
+		/* Moves sites[i] to [x[i], y[i]] like moveSite, one by one in given
+		 * order, so consecutive sites should be close to each other (like
+		 * along Hilbert curve). Sites with NaN position stay in place. Moves
+		 * are published together. Returns the longest distance a site moved.
+		 * If some other position is not finite, nothing is moved. Must not be
+		 * called during concurrent insertion.
+		 */
+		requireSequential();
+		for(int i = 0; i < sites.length; i++){
+			if(!Double.isNaN(x[i]) && !Double.isNaN(y[i])){
+				checkSite(x[i], y[i]);
+			}
+		}
+		double longest = 0;
+		for(int i = 0; i < sites.length; i++){
+			int site = sites[i];
+			if(Double.isNaN(x[i]) || Double.isNaN(y[i]) || !isSite(site)){
+				continue;
+			}
+			double oldX = mesh.x(site), oldY = mesh.y(site);
+			if((oldX != x[i] || oldY != y[i]) && moveSiteSequential(site, x[i], y[i])){
+				longest = Math.max(longest, Math.hypot(x[i] - oldX, y[i] - oldY));
+			}
+		}
+		published();
+		return longest;
+	}
+
+	private boolean moveSiteSequential(int site, double x, double y){
+		if(!isSite(site)){
 			return false;
 		}
+		long start = Statistics.ENABLED ? System.nanoTime() : 0;
+		int star = mesh.edgeOf(site);
+		int degree = 0;
+		boolean inKernel = true;
+		int e = star;
+		do{
+			int a = mesh.dest(e), b = mesh.dest(mesh.oNext(e));
+			if(mesh.det3(a, b, x, y) <= 0){
+				inKernel = false;
+			}
+			degree++;
+			e = mesh.oNext(e);
+		} while(e != star);
+
+		if(!inKernel){
+			// Delete and insert again, unless the new position is taken
+			int triSide = (hierarchy != null) ? descend(x, y, null) : mesh.locate(x, y, star);
+			if(isAt(mesh.origin(triSide), x, y) || isAt(mesh.dest(triSide), x, y)){
+				return false;
+			}
+			detach(site);
+			siteCount.decrementAndGet();
+			mesh.setSite(site, x, y);
+			lastEdge = insert(x, y, locate(x, y, QuadEdgeMesh.NONE), site);
+			if(hierarchy != null){
+				moveCopies(site, x, y);
+			}
+			moved(start);
+			return true;
+		}
+
+		// Move in place, all faces around the site change and both kinds of their sides can become non-Delaunay
+		int[] suspects = new int[2 * degree];
+		if(trackChanges){
+			touchFacesAround(star);
+		}
+		for(int i = 0; i < degree; i++){
+			mesh.markFaceDirty(e);
+			suspects[2 * i] = e;
+			suspects[2 * i + 1] = mesh.lNext(e);
+			e = mesh.oNext(e);
+		}
+		mesh.setSite(site, x, y);
+		int[] flipped = legalize(suspects, suspects.length);
+		if(trackChanges){
+			// Faces around the site, flipped ones were touched by legalize
+			touchFacesAround(mesh.edgeOf(site));
+		}
+		if(!lazyVoronoi){
+			computeVoronoiAround(mesh.edgeOf(site));
+			for(int f : flipped){
+				voronoiVertex(mesh.rotInv(f));
+				voronoiVertex(mesh.rotInv(mesh.sym(f)));
+			}
+		}
+		lastEdge = mesh.edgeOf(site);
+		if(hierarchy != null){
+			moveCopies(site, x, y);
+		}
+		moved(start);
 		return true;
 	}
-	
-	// Computing vertexes (face circumCenters) of Voronoi diagram
-	public void computeVoronoi(){
-		traverse(firstEdge.rot(), new HashSet<Edge>(), new HashSet<DataPoint>());
+
+	private static void moved(long start){
+		if(Statistics.ENABLED){
+			Statistics.moves.increment();
+			Statistics.moveNanos.add(System.nanoTime() - start);
+		}
 	}
-	
-	private void traverse(Edge e, HashSet<Edge> visitedE, HashSet<DataPoint> computedF){
-		if(!visitedE.add(e)){
+
+	// Delaunay hierarchy
+	/* Optional coarser levels for point location (Devillers, 2002). Level
+	 * 0 is this triangulation, every site of level k is also inserted into
+	 * level k + 1 with probability 1 / HIERARCHY_RATIO. Locate walks the
+	 * coarsest level from its last insertion, then goes from the closest
+	 * site of the found triangle down to the same site one level finer and
+	 * walks from it again. Each walk visits a few triangles, so a locate
+	 * visits O(log n) of them however far it is from the previous one, and
+	 * the statistics count the whole descent as one locate. Levels above 0
+	 * are triangulations in CompactMesh with lazy Voronoi, the same site in
+	 * neighbouring levels is linked by side tables up and down indexed by
+	 * site numbers. Insertions, removals and moves keep the levels, single
+	 * nearestSite and interpolate queries start at the coarsest level,
+	 * batches and grids walk from their previous query instead. Concurrent
+	 * insertion does not update the levels, they are built again when it
+	 * ends.
+	 */
+	private static final int HIERARCHY_RATIO = 30;
+	private static final int MAX_LEVELS = 5;
+	private Triangulation[] hierarchy = null;	// Levels from the finest (this one), null if off
+	private int[] up = new int[0];		// Site -> the same site in the coarser level, NONE if it is not there
+	private int[] down = new int[0];	// Site -> the same site in the finer level, in levels above 0
+	private int[] path = new int[MAX_LEVELS];	// Triangles found in each level by the last descent of an insertion
+
+	public void setHierarchy(boolean levels){
+		/* Builds the coarser levels from the sites of this triangulation, or
+		 * drops them. Must not be called during concurrent insertion.
+		 */
+		requireSequential();
+		if(!levels){
+			hierarchy = null;
+			up = new int[0];
+			return;
+		}
+		if(hierarchy != null){
 			return;
 		}
-		if(!computedF.contains(e.origin())){
-			// Get face sites
-			boolean isBoundingTri = true;
-			
-			Edge triSide = e.rot();
-			isBoundingTri &= edgeFromBoundary(triSide);
-			DataPoint a = triSide.origin();
-			
-			triSide = triSide.lNext();
-			isBoundingTri &= edgeFromBoundary(triSide);
-			DataPoint b = triSide.origin();
-			
-			triSide = triSide.lNext();
-			isBoundingTri &= edgeFromBoundary(triSide);
-			DataPoint c = triSide.origin();
-
-			if(!isBoundingTri){
-				// Compute circumCenter of face
-				e.data = circumCenter(a, b, c);
+		hierarchy = new Triangulation[MAX_LEVELS];
+		hierarchy[0] = this;
+		for(int k = 1; k < MAX_LEVELS; k++){
+			Triangulation below = hierarchy[k - 1], level = new Triangulation(new CompactMesh());
+			level.setLazyVoronoi(true);
+			hierarchy[k] = level;
+			int[] promoted = new int[16];
+			int count = 0;
+			for(int site = BOUNDS; site < below.mesh.siteCount(); site++){
+				if(below.mesh.edgeOf(site) != QuadEdgeMesh.NONE && rand.nextInt(HIERARCHY_RATIO) == 0){
+					if(count == promoted.length){
+						promoted = Arrays.copyOf(promoted, 2 * count);
+					}
+					promoted[count++] = site;
+				}
+			}
+			Point2D[] sites = new Point2D[count];
+			for(int i = 0; i < count; i++){
+				sites[i] = new Point2D.Double(below.mesh.x(promoted[i]), below.mesh.y(promoted[i]));
+			}
+			int[] added = level.addAll(sites);
+			for(int i = 0; i < count; i++){
+				link(below, promoted[i], level, added[i]);
+			}
+		}
+	}
+
+	public boolean isHierarchy(){
+		return hierarchy != null;
+	}
+
+	public int[] getLevelSizes(){
+		// Numbers of sites in the levels from the finest, just this one without hierarchy
+		if(hierarchy == null){
+			return new int[]{ size() };
+		}
+		int[] sizes = new int[hierarchy.length];
+		for(int k = 0; k < sizes.length; k++){
+			sizes[k] = hierarchy[k].size();
+		}
+		return sizes;
+	}
+
+	Triangulation getLevel(int k){
+		return (k == 0) ? this : hierarchy[k];
+	}
+
+	int siteAbove(int site){
+		// The same site in the coarser level, NONE if it is not there
+		return (site < up.length) ? up[site] : QuadEdgeMesh.NONE;
+	}
+
+	int siteBelow(int site){
+		// The same site in the finer level (levels above 0)
+		return (site < down.length) ? down[site] : QuadEdgeMesh.NONE;
+	}
+
+	private static void link(Triangulation below, int site, Triangulation above, int copy){
+		below.up = linked(below.up, site, copy);
+		above.down = linked(above.down, copy, site);
+	}
+
+	private static int[] linked(int[] table, int site, int value){
+		if(site >= table.length){
+			int length = table.length;
+			table = Arrays.copyOf(table, Math.max(site + 1, 2 * length));
+			Arrays.fill(table, length, table.length, QuadEdgeMesh.NONE);
+		}
+		table[site] = value;
+		return table;
+	}
+
+	private int locate(double x, double y, int start){
+		// Locates [x, y] from start, without it (NONE) descends the levels or walks from where the last insertion finished
+		if(start != QuadEdgeMesh.NONE){
+			return mesh.locate(x, y, start);
+		}
+		if(hierarchy != null){
+			return descend(x, y, null);
+		}
+		return mesh.locate(x, y, (lastEdge != QuadEdgeMesh.NONE) ? lastEdge : firstEdge);
+	}
+
+	private int descend(double x, double y, int[] found){
+		/* Locates [x, y] in level 0 through the coarser levels. Triangles
+		 * found in the coarser levels are stored to found, unless it is null.
+		 */
+		int[] steps = Statistics.ENABLED ? new int[1] : null;
+		int start = QuadEdgeMesh.NONE;
+		for(int k = hierarchy.length - 1; ; k--){
+			Triangulation level = hierarchy[k];
+			if(k > 0 && level.size() < HIERARCHY_RATIO){
+				// Most triangles of a small level have a corner in infinity, whose tests are slow, the finer level is walked instead
+				if(found != null){
+					found[k] = QuadEdgeMesh.NONE;
+				}
+				continue;
+			}
+			if(start == QuadEdgeMesh.NONE){
+				start = (level.lastEdge != QuadEdgeMesh.NONE) ? level.lastEdge : level.firstEdge;
+			}
+			int e = level.mesh.walk(x, y, start, steps);
+			if(k == 0){
+				return QuadEdgeMesh.located(e, (steps != null) ? steps[0] : 0);
+			}
+			if(found != null){
+				found[k] = e;
+			}
+			// A moved site can be missing in the finer level for a while, the walk then starts from its last insertion
+			int closest = level.closestCorner(e, x, y);
+			start = (closest == QuadEdgeMesh.NONE) ? QuadEdgeMesh.NONE : hierarchy[k - 1].mesh.edgeOf(level.down[level.mesh.origin(closest)]);
+		}
+	}
+
+	private void promote(int site){
+		// Inserts a new site of level 0 into coarser levels, path holds its triangles in them
+		double x = mesh.x(site), y = mesh.y(site);
+		for(int k = 1; k < hierarchy.length && rand.nextInt(HIERARCHY_RATIO) == 0; k++){
+			Triangulation level = hierarchy[k];
+			int start = (path[k] != QuadEdgeMesh.NONE) ? path[k] : (level.lastEdge != QuadEdgeMesh.NONE) ? level.lastEdge : level.firstEdge;
+			level.lastEdge = level.insert(x, y, level.mesh.walk(x, y, start, null), QuadEdgeMesh.NONE);
+			int copy = level.mesh.origin(level.lastEdge);
+			link(hierarchy[k - 1], site, level, copy);
+			site = copy;
+		}
+	}
+
+	private void demote(int site){
+		// Removes copies of a site of level 0 from coarser levels
+		for(int k = 1; k < hierarchy.length; k++){
+			Triangulation below = hierarchy[k - 1], level = hierarchy[k];
+			int copy = below.siteAbove(site);
+			if(copy == QuadEdgeMesh.NONE){
+				return;
+			}
+			below.up[site] = QuadEdgeMesh.NONE;
+			level.down[copy] = QuadEdgeMesh.NONE;
+			level.removeSite(copy);
+			site = copy;
+		}
+	}
+
+	private void moveCopies(int site, double x, double y){
+		// Moves copies of a moved site of level 0 after it
+		for(int k = 1; k < hierarchy.length; k++){
+			site = hierarchy[k - 1].siteAbove(site);
+			if(site == QuadEdgeMesh.NONE){
+				return;
+			}
+			hierarchy[k].moveSiteSequential(site, x, y);
+		}
+	}
+
+	// Concurrent insertion
+	/* In concurrent mode several threads may call addSite at once. Each
+	 * insertion locates its triangle without locking (racyLocate), then
+	 * locks sites of its conflict region: corners of triangles whose
+	 * circumCircle contains the new site, and sites across their sides.
+	 * Every change made by insertion touches only edges between these sites
+	 * and faces around them, so insertions with disjoint regions run in
+	 * parallel. If any site is already locked, all locks are released and
+	 * the insertion is retried, so there is no deadlock.
+	 *
+	 * Locks are the only synchronization of the mesh itself. Taking a lock
+	 * by CAS happens after the previous holder released it, so everything
+	 * that holder wrote around the site is visible to the new holder. A
+	 * triangle found by the racy walk is a guess only: once its corners are
+	 * locked, lockRegion reads it again and checks its corners and that it
+	 * contains the new site. Nobody else can change an edge between two
+	 * locked sites, nor a face across such an edge, so the checked triangle
+	 * and the region grown from it stay as they were read. Deleted quad-edges
+	 * are not reused in this mode, so a stale edge never passes the check.
+	 *
+	 * Mesh arrays grow only under the write lock of growLock, insertions run
+	 * under its read lock and reserve room for what they allocate first.
+	 */
+	private volatile boolean concurrentInsertion = false;
+	private final ReentrantReadWriteLock growLock = new ReentrantReadWriteLock();
+	private AtomicIntegerArray siteLocks = null;	// 1 if the site is locked by an insertion
+	private final ThreadLocal<Region> threadRegion = new ThreadLocal<Region>();
+
+	public void setConcurrentInsertion(boolean concurrent){
+		/* Must not be switched while insertions are running. Other operations
+		 * (traversals, painting) must not run during concurrent insertion.
+		 */
+		if(concurrent && !concurrentInsertion){
+			mesh.setShared(true);
+			siteLocks = new AtomicIntegerArray(mesh.siteCapacity());
+		}
+		else if(!concurrent && concurrentInsertion){
+			mesh.setShared(false);
+			siteLocks = null;
+			lastEdge = QuadEdgeMesh.NONE;	// Could have been deleted by another thread
+			concurrentInsertion = false;
+			if(hierarchy != null){
+				// Sites inserted concurrently are only in level 0
+				setHierarchy(false);
+				setHierarchy(true);
+			}
+			published();
+		}
+		concurrentInsertion = concurrent;
+	}
+
+	public boolean isConcurrentInsertion(){
+		return concurrentInsertion;
+	}
+
+	private void requireSequential(){
+		if(concurrentInsertion){
+			throw new IllegalStateException("Sites are being inserted concurrently");
+		}
+	}
+
+	private static class Region {
+		// Locked sites and conflict triangles of one insertion, reused by its thread
+		int[] sites = new int[16];
+		int siteCount = 0;
+		int[] faces = new int[16];
+		int faceCount = 0;
+		int lastEdge = QuadEdgeMesh.NONE;	// Where the last insertion of the thread finished
+	}
+
+	private int addSiteConcurrent(double x, double y){
+		if(trackChanges){
+			changedAll = true;
+		}
+		Region r = threadRegion.get();
+		if(r == null){
+			r = new Region();
+			threadRegion.set(r);
+		}
+		for(int attempt = 0; ; attempt++){
+			int quads = 0, sites = 0;
+			boolean grow = false;
+			growLock.readLock().lock();
+			try{
+				// Every other attempt starts from first edge, in case the last edge of this thread was deleted
+				int start = (r.lastEdge == QuadEdgeMesh.NONE || attempt % 2 == 1) ? firstEdge : r.lastEdge;
+				long time = Statistics.ENABLED ? System.nanoTime() : 0;
+				int triSide = mesh.racyLocate(x, y, start, 4 * siteCount.get() + 64);
+				if(Statistics.ENABLED){
+					long now = System.nanoTime();
+					Statistics.locateNanos.add(now - time);
+					time = now;
+				}
+				if(triSide != QuadEdgeMesh.NONE && (triSide = lockRegion(x, y, triSide, r)) != QuadEdgeMesh.NONE){
+					try{
+						if(!isAt(mesh.origin(triSide), x, y) && !isAt(mesh.dest(triSide), x, y)){
+							// Star of a site inside of a triangle has 3 edges, on an edge 4 (and one is deleted)
+							quads = mesh.onEdge(x, y, triSide) ? 4 : 3;
+							sites = 1;
+						}
+						if(mesh.reserve(quads, sites)){
+							r.lastEdge = insert(x, y, triSide, QuadEdgeMesh.NONE);
+							if(Statistics.ENABLED){
+								Statistics.insertNanos.add(System.nanoTime() - time);
+							}
+							return mesh.origin(r.lastEdge);
+						}
+						grow = true;
+					}
+					finally{
+						unlockAll(r);
+					}
+				}
+				unlockAll(r);
+			}
+			finally{
+				growLock.readLock().unlock();
+			}
+			if(Statistics.ENABLED){
+				Statistics.insertRetries.increment();
+			}
+			if(grow){
+				growLock.writeLock().lock();
+				try{
+					mesh.growShared(quads, sites);
+					if(siteLocks.length() < mesh.siteCapacity()){
+						// Nobody holds a lock now
+						siteLocks = new AtomicIntegerArray(mesh.siteCapacity());
+					}
+				}
+				finally{
+					growLock.writeLock().unlock();
+				}
 			}
 			else{
-				// Point in infinity
-				e.data = new DataPoint(DataPoint.NONE, 0, 0);
-			}
-			computedF.add(e.origin());
-		}
-		traverse(e.sym(), visitedE, computedF);
-		traverse(e.oNext(), visitedE, computedF);
-		traverse(e.lNext(), visitedE, computedF);
-	}
-	
-	private DataPoint circumCenter(DataPoint a, DataPoint b, DataPoint c){
-		// Formula from http://en.wikipedia.org/wiki/Circumscribed_circle#Cartesian_coordinates
-		Point	bb = new Point(b.x - a.x, b.y - a.y),
-				cc = new Point(c.x - a.x, c.y - a.y);
-		double d = 2*(bb.getX() * cc.getY()  -  bb.getY() * cc.getX());
-		double	bXsqr = bb.getX()*bb.getX(),
-				bYsqr = bb.getY()*bb.getY(),
-				cXsqr = cc.getX()*cc.getX(),
-				cYsqr = cc.getY()*cc.getY();
-		// circumCenter of triangle [0,0], bb, cc =
-		int centerX = (int)Math.round(  (cc.getY() * (bXsqr + bYsqr)  -  bb.getY() * (cXsqr + cYsqr)) / d  );
-		int centerY = (int)Math.round(  (bb.getX() * (cXsqr + cYsqr)  -  cc.getX() * (bXsqr + bYsqr)) / d  );
+				Thread.yield();
+			}
+		}
+	}
+
+	private int lockRegion(double x, double y, int guess, Region r){
+		/* Locks conflict region of [x, y] around triangle on the left of guess
+		 * (a result of racyLocate). Returns the side of the triangle that
+		 * locate would return, or NONE if the region could not be locked.
+		 */
+		r.faceCount = 0;
+		int lNext = mesh.racyLNext(guess);
+		int lPrev = (lNext != QuadEdgeMesh.NONE) ? mesh.racyLNext(lNext) : QuadEdgeMesh.NONE;
+		if(lPrev == QuadEdgeMesh.NONE){
+			return QuadEdgeMesh.NONE;
+		}
+		int a = mesh.racyOrigin(guess), b = mesh.racyOrigin(lNext), c = mesh.racyOrigin(lPrev);
+		if(a == b || b == c || c == a || !tryLock(a, r) || !tryLock(b, r) || !tryLock(c, r)){
+			return QuadEdgeMesh.NONE;
+		}
+		// Triangle could have changed before we locked it, now it is stable
+		if(	(guess & 1) != 0 || mesh.isDeleted(guess >> 2) ||
+			mesh.origin(guess) != a || mesh.dest(guess) != b ||
+			mesh.dest(mesh.lNext(guess)) != c || mesh.lPrev(mesh.lPrev(guess)) != mesh.lNext(guess)
+		){
+			return QuadEdgeMesh.NONE;
+		}
+		int triSide = mesh.inTriangle(x, y, guess);
+		if(triSide == QuadEdgeMesh.NONE){
+			return QuadEdgeMesh.NONE;
+		}
+		addFace(guess, r);
+		for(int i = 0; i < r.faceCount; i++){
+			int side = r.faces[i];
+			do{
+				// Lock site across this side and add the neighbouring triangle if [x, y] is in its circle
+				int across = mesh.sym(side);
+				int apex = mesh.dest(mesh.lNext(across));
+				if(!tryLock(apex, r)){
+					return QuadEdgeMesh.NONE;
+				}
+				if(	mesh.rightOf(apex, side) &&
+					!inRegion(across, r) &&
+					mesh.inCircle(mesh.origin(across), mesh.dest(across), apex, x, y)
+				){
+					addFace(across, r);
+				}
+				side = mesh.lNext(side);
+			} while(side != r.faces[i]);
+		}
+		return triSide;
+	}
+
+	private void addFace(int triSide, Region r){
+		if(r.faceCount == r.faces.length){
+			r.faces = Arrays.copyOf(r.faces, 2 * r.faceCount);
+		}
+		r.faces[r.faceCount++] = triSide;
+	}
+
+	private boolean inRegion(int triSide, Region r){
+		for(int i = 0; i < r.faceCount; i++){
+			int e = r.faces[i];
+			if(e == triSide || mesh.lNext(e) == triSide || mesh.lPrev(e) == triSide){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean tryLock(int site, Region r){
+		if(site < 0 || site >= siteLocks.length()){
+			return false;
+		}
+		for(int i = 0; i < r.siteCount; i++){
+			if(r.sites[i] == site){
+				return true;
+			}
+		}
+		if(siteLocks.compareAndSet(site, 0, 1)){
+			if(r.siteCount == r.sites.length){
+				r.sites = Arrays.copyOf(r.sites, 2 * r.siteCount);
+			}
+			r.sites[r.siteCount++] = site;
+			return true;
+		}
+		return false;
+	}
+
+	private void unlockAll(Region r){
+		for(int i = 0; i < r.siteCount; i++){
+			siteLocks.set(r.sites[i], 0);
+		}
+		r.siteCount = 0;
+	}
+
+	// Tracking of changed area
+	/* When tracking is on, every face destroyed or created by adding,
+	 * removing or moving a site extends the changed area by the bounding box
+	 * of its circumCircle (which contains its sides and sites) and by
+	 * circumCenters of its neighbours, which are the other ends of its Voronoi
+	 * edges. Concurrent insertion is not tracked, it changes the whole area.
+	 */
+	private boolean trackChanges = false;
+	private Rectangle2D changedArea = null;
+	private volatile boolean changedAll = false;
+
+	public void setTrackChanges(boolean track){
+		trackChanges = track;
+		changedArea = null;
+		changedAll = false;
+	}
+
+	public boolean isTrackChanges(){
+		return trackChanges;
+	}
+
+	public Rectangle2D takeChangedArea(){
+		// Returns area changed since the last call (null if nothing changed) and starts a new one
+		Rectangle2D result = changedArea;
+		if(changedAll){
+			result = everywhere();
+		}
+		changedArea = null;
+		changedAll = false;
+		return result;
+	}
+
+	static Rectangle2D everywhere(){
+		return new Rectangle2D.Double(-Double.MAX_VALUE / 2, -Double.MAX_VALUE / 2, Double.MAX_VALUE, Double.MAX_VALUE);
+	}
+
+	private void touchFace(int triSide){
+		// Adds circumCircle of face on the left of triSide and ends of its Voronoi edges to changed area
+		if(!trackChanges || concurrentInsertion){
+			return;
+		}
+		DataPoint center = faceCenter(triSide);
+		if(center.type != DataPoint.FACE){
+			// Bounding triangle
+			changedAll = true;
+			return;
+		}
+		int a = mesh.origin(siteOf(triSide));
+		double radius = center.distance(mesh.x(a), mesh.y(a));
+		touchPoint(center.x - radius, center.y - radius);
+		touchPoint(center.x + radius, center.y + radius);
+		int e = triSide;
+		do{
+			if(!edgeToFromBoundary(e)){
+				DataPoint neighbour = faceCenter(mesh.sym(e));
+				touchPoint(neighbour.x, neighbour.y);
+			}
+			e = mesh.lNext(e);
+		} while(e != triSide);
+	}
+
+	private void touchPoint(double x, double y){
+		if(!finite(x, y)){
+			changedAll = true;
+		}
+		else if(changedArea == null){
+			changedArea = new Rectangle2D.Double(x, y, 0, 0);
+		}
+		else{
+			changedArea.add(x, y);
+		}
+	}
+
+	private void touchFacesAround(int fromSite){
+		int e = fromSite;
+		do{
+			touchFace(e);
+			e = mesh.oNext(e);
+		} while(e != fromSite);
+	}
+
+	// Published snapshots
+	/* When publishing is on, every change (addSite, addAll, removeSite,
+	 * moveSite) ends by publishing a new MeshSnapshot, so readers on other
+	 * threads see all of the change or none of it, without locking. addAll
+	 * is one change, so a batch of sites is published once. A snapshot
+	 * copies only pages of the mesh changed by the change, so publishing
+	 * takes time proportional to its size. Concurrent insertion is published
+	 * when it is switched off. When changes are tracked, every snapshot
+	 * takes the area changed since the previous one.
+	 */
+	private boolean publishSnapshots = false;
+	private volatile MeshSnapshot snapshot = null;
+	private long version = 0;
+
+	public void setPublishSnapshots(boolean publish){
+		// Switching publishing on publishes the current state, it must not be switched during concurrent insertion
+		requireSequential();
+		publishSnapshots = publish;
+		if(publish){
+			publish();
+		}
+		else{
+			mesh.trackPages(false);
+		}
+	}
+
+	public boolean isPublishSnapshots(){
+		return publishSnapshots;
+	}
+
+	public MeshSnapshot publish(){
+		/* Publishes the current state, called by the thread which changes the
+		 * triangulation. The first snapshot copies the whole mesh, later ones
+		 * only pages changed since the previous one.
+		 */
+		requireSequential();
+		long start = Statistics.ENABLED ? System.nanoTime() : 0;
+		BitSet quadPages = mesh.takeChangedQuadPages(), sitePages = mesh.takeChangedSitePages();
+		if(quadPages == null){
+			// Not tracked yet (or concurrent insertion was not), everything is copied
+			mesh.trackPages(true);
+		}
+		MeshSnapshot published = new MeshSnapshot(this, snapshot, quadPages, sitePages, ++version, trackChanges ? takeChangedArea() : everywhere());
+		snapshot = published;
+		if(Statistics.ENABLED){
+			Statistics.publishes.increment();
+			Statistics.publishedPages.add(published.copiedPages());
+			Statistics.publishNanos.add(System.nanoTime() - start);
+		}
+		return published;
+	}
+
+	public MeshSnapshot getSnapshot(){
+		// Latest published snapshot (null if nothing was published yet), may be called by any thread
+		return snapshot;
+	}
+
+	private void published(){
+		// End of a change
+		if(publishSnapshots){
+			publish();
+		}
+	}
+
+	// Computing vertexes (face circumCenters) of Voronoi diagram
+	public void setLazyVoronoi(boolean lazy){
+		/* In lazy mode faces are only marked dirty when they change, and their
+		 * circumCenters are computed when someone asks for them.
+		 */
+		lazyVoronoi = lazy;
+	}
+
+	public boolean isLazyVoronoi(){
+		return lazyVoronoi;
+	}
+
+	public DataPoint voronoiVertex(int dual){
+		// Returns origin of dual edge (circumCenter of a face), computing it if it is dirty
+		DataPoint center = mesh.center(dual);
+		if(center == null){
+			center = computeFace(mesh.rot(dual));
+		}
+		return center;
+	}
+
+	public void computeVoronoi(){
+		// Computes circumCenters of all dirty faces
+		long start = Statistics.ENABLED ? System.nanoTime() : 0;
+		forEachFace(new EdgeProcessor() {
+			@Override
+			public void process(int e) {
+				voronoiVertex(mesh.rotInv(e));
+			}
+		});
+		if(Statistics.ENABLED){
+			Statistics.voronoiNanos.add(System.nanoTime() - start);
+		}
+	}
+
+	private void computeVoronoiAround(int fromSite){
+		// Recomputes circumCenters of all dirty faces around origin of given edge
+		int e = fromSite;
+		do{
+			voronoiVertex(mesh.rotInv(e));
+			e = mesh.oNext(e);
+		} while(e != fromSite);
+	}
+
+	private DataPoint computeFace(int triSide){
+		// Computes circumCenter of face on the left of triSide and stores it in all dual edges leaving this face
+		if(Statistics.ENABLED){
+			Statistics.circumCenters.increment();
+		}
+		DataPoint center = faceCenter(triSide);
+		int e = triSide;
+		do{
+			mesh.setCenter(mesh.rotInv(e), center);
+			e = mesh.lNext(e);
+		} while(e != triSide);
+		return center;
+	}
+
+	private DataPoint faceCenter(int triSide){
+		/* circumCenter of face on the left of triSide. Faces with corners of
+		 * the bounding triangle have it in infinity, they get a far point in
+		 * its direction instead, FAR times farther than their sites are from
+		 * the origin. The bounding triangle itself has none (type NONE).
+		 */
+		int e = siteOf(triSide);
+		if(e == QuadEdgeMesh.NONE){
+			return new DataPoint(DataPoint.NONE, 0, 0);
+		}
+		// Corners (if any) come last in CCW order
+		for(int i = 0; i < 2 && !edgeFromBoundary(mesh.lPrev(e)); i++){
+			e = mesh.lPrev(e);
+		}
+		int a = mesh.origin(e), b = mesh.dest(e), c = mesh.origin(mesh.lPrev(e));
+		if(b >= BOUNDS && c >= BOUNDS){
+			return circumCenter(a, b, c);
+		}
+		double ax = mesh.x(a), ay = mesh.y(a);
+		double dx, dy, far;
+		if(b >= BOUNDS){
+			// Only c is in infinity, center goes along bisector of a, b to the side of c (left of a -> b)
+			double bx = mesh.x(b), by = mesh.y(b);
+			dx = ay - by;
+			dy = bx - ax;
+			far = FAR * (1 + Math.max(Math.max(Math.abs(ax), Math.abs(ay)), Math.max(Math.abs(bx), Math.abs(by))));
+			ax = (ax + bx) / 2;
+			ay = (ay + by) / 2;
+		}
+		else{
+			// Center goes like circumCenter of the origin and directions to b and c
+			double	bx = mesh.x(b), by = mesh.y(b),
+					cx = mesh.x(c), cy = mesh.y(c);
+			double d = 2*(bx * cy  -  by * cx);
+			dx = (cy * (bx*bx + by*by)  -  by * (cx*cx + cy*cy)) / d;
+			dy = (bx * (cx*cx + cy*cy)  -  cx * (bx*bx + by*by)) / d;
+			far = FAR * (1 + Math.max(Math.abs(ax), Math.abs(ay)));
+		}
+		double length = Math.sqrt(dx*dx + dy*dy);
+		return new DataPoint(DataPoint.FACE, ax + dx / length * far, ay + dy / length * far);
+	}
+
+	private int siteOf(int triSide){
+		// Side of face on the left of triSide going from a site (not from the bounding triangle), or NONE
+		int e = triSide;
+		do{
+			if(!edgeFromBoundary(e)){
+				return e;
+			}
+			e = mesh.lNext(e);
+		} while(e != triSide);
+		return QuadEdgeMesh.NONE;
+	}
+
+	private DataPoint circumCenter(int a, int b, int c){
+		/* Formula from http://en.wikipedia.org/wiki/Circumscribed_circle#Cartesian_coordinates
+		 * Corners are rotated to start at the leftmost (then lowest) site,
+		 * so the rounding depends neither on which edge of the face asked for
+		 * it, nor on the order the sites were numbered in.
+		 */
+		while(before(b, a) || before(c, a)){
+			int temp = a;
+			a = b;
+			b = c;
+			c = temp;
+		}
+		double	bx = mesh.x(b) - mesh.x(a), by = mesh.y(b) - mesh.y(a),
+				cx = mesh.x(c) - mesh.x(a), cy = mesh.y(c) - mesh.y(a);
+		double d = 2*(bx * cy  -  by * cx);
+		double	bSqr = bx*bx + by*by,
+				cSqr = cx*cx + cy*cy;
+		// circumCenter of triangle [0,0], b, c =
+		double centerX = (cy * bSqr  -  by * cSqr) / d;
+		double centerY = (bx * cSqr  -  cx * bSqr) / d;
 		// circumCenter of triangle a, b, c =
-		centerX += a.x;
-		centerY += a.y;
-		return new DataPoint(DataPoint.FACE, centerX, centerY);
+		double x = centerX + mesh.x(a), y = centerY + mesh.y(a);
+		// Squared radius, if rounding errors of the center are small enough for Bowyer-Watson circle tests
+		double radiusSq = centerX*centerX + centerY*centerY;
+		double error = ROUNDING * (
+				(Math.abs(centerX) + Math.abs(centerY)) * (Math.abs(bx * cy) + Math.abs(by * cx)) * 2 / Math.abs(d) +
+				(Math.abs(cy) * bSqr + Math.abs(by) * cSqr + Math.abs(bx) * cSqr + Math.abs(cx) * bSqr) / Math.abs(d) +
+				Math.abs(x) + Math.abs(y));
+		return new Circle(x, y, (error <= MAX_CENTER_ERROR * Math.sqrt(radiusSq)) ? radiusSq : Double.NaN);
+	}
+
+	private boolean before(int a, int b){
+		return mesh.x(a) < mesh.x(b) || (mesh.x(a) == mesh.x(b) && mesh.y(a) < mesh.y(b));
+	}
+
+	// Nearest site queries
+	/* Nearest site is found by locating the query point and walking from the
+	 * closest site of its triangle to closer neighbours, until none of them
+	 * is closer. Boundary points are never returned. Queries must not run
+	 * while the triangulation is being changed, but any number of them can
+	 * run at once. Each thread starts its walk where its previous query
+	 * finished, or with Delaunay hierarchy at its coarsest level, queries
+	 * do not write lastEdge.
+	 */
+	private static final int BATCH_THRESHOLD = 4096;
+	private final ThreadLocal<int[]> queryHint = new ThreadLocal<int[]>();
+
+	public int nearestSite(double x, double y){
+		// Returns the site closest to [x, y], or NONE if there are no sites
+		int[] hint = queryHint();
+		int nearest = nearestEdge(x, y, (hierarchy != null) ? QuadEdgeMesh.NONE : queryStart(hint[0]));
+		if(nearest == QuadEdgeMesh.NONE){
+			return QuadEdgeMesh.NONE;
+		}
+		hint[0] = nearest;
+		return mesh.origin(nearest);
+	}
+
+	private int[] queryHint(){
+		// Edge where the last query of this thread finished
+		int[] hint = queryHint.get();
+		if(hint == null){
+			hint = new int[]{ QuadEdgeMesh.NONE };
+			queryHint.set(hint);
+		}
+		return hint;
+	}
+
+	private int queryStart(int hint){
+		// Start of a walk, the hint unless it was deleted since
+		if(hint == QuadEdgeMesh.NONE || mesh.isDeleted(hint >> 2)){
+			return (lastEdge != QuadEdgeMesh.NONE) ? lastEdge : firstEdge;
+		}
+		return hint;
+	}
+
+	private int nearestEdge(double x, double y, int start){
+		// Returns an edge leaving the site closest to [x, y], or NONE if there are no sites
+		if(siteCount.get() == 0){
+			return QuadEdgeMesh.NONE;
+		}
+		int best = closestCorner(locate(x, y, start), x, y);
+		// Greedy walk to closer neighbours
+		double bestDist = distanceSq(mesh.origin(best), x, y);
+		int closer = best;
+		while(closer != QuadEdgeMesh.NONE){
+			best = closer;
+			closer = QuadEdgeMesh.NONE;
+			int e = best;
+			do{
+				if(!edgeFromBoundary(mesh.sym(e)) && distanceSq(mesh.dest(e), x, y) < bestDist){
+					closer = mesh.sym(e);
+					bestDist = distanceSq(mesh.dest(e), x, y);
+				}
+				e = mesh.oNext(e);
+			} while(e != best);
+		}
+		return best;
+	}
+
+	private int closestCorner(int e, double x, double y){
+		// Edge of the triangle leaving its site closest to [x, y], NONE if all its corners are bounds
+		int best = QuadEdgeMesh.NONE;
+		double bestDist = Double.POSITIVE_INFINITY;
+		for(int i = 0; i < 3; i++){
+			if(!edgeFromBoundary(e) && distanceSq(mesh.origin(e), x, y) < bestDist){
+				best = e;
+				bestDist = distanceSq(mesh.origin(e), x, y);
+			}
+			e = mesh.lNext(e);
+		}
+		return best;
 	}
-	
+
+	private double distanceSq(int site, double x, double y){
+		double dx = mesh.x(site) - x, dy = mesh.y(site) - y;
+		return dx*dx + dy*dy;
+	}
+
+	public int[] nearestSites(Point2D[] queries){
+		return nearestSites(queries, ForkJoinPool.commonPool());
+	}
+
+	public int[] nearestSites(Point2D[] queries, ForkJoinPool pool){
+		/* Answers nearestSite for every query point, result[i] belongs to
+		 * queries[i]. Queries are ordered along Hilbert curve and split into
+		 * chunks answered in parallel, each query starts where the previous
+		 * one of its chunk finished.
+		 */
+		int[] result = new int[queries.length];
+		int[] order = SpatialSort.hilbertOrder(queries, 0, queries.length);
+		pool.invoke(new NearestTask(queries, order, result, 0, queries.length));
+		return result;
+	}
+
+	private class NearestTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private Point2D[] queries;
+		private int[] order;
+		private int[] result;
+		private int from, to;
+
+		NearestTask(Point2D[] queries, int[] order, int[] result, int from, int to){
+			this.queries = queries;
+			this.order = order;
+			this.result = result;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from <= BATCH_THRESHOLD){
+				int hint = (lastEdge != QuadEdgeMesh.NONE) ? lastEdge : firstEdge;
+				for(int i = from; i < to; i++){
+					Point2D q = queries[order[i]];
+					int nearest = nearestEdge(q.getX(), q.getY(), hint);
+					if(nearest == QuadEdgeMesh.NONE){
+						result[order[i]] = QuadEdgeMesh.NONE;
+						continue;
+					}
+					result[order[i]] = mesh.origin(nearest);
+					hint = nearest;
+				}
+				return;
+			}
+			int mid = (from + to) / 2;
+			invokeAll(	new NearestTask(queries, order, result, from, mid),
+						new NearestTask(queries, order, result, mid, to));
+		}
+	}
+
+	public DataPoint[] voronoiCell(int site){
+		/* Vertexes of Voronoi cell of given site in CCW order, computing the
+		 * dirty ones.
+		 */
+		int fromSite = mesh.edgeOf(site);
+		int degree = 0;
+		int e = fromSite;
+		do{
+			degree++;
+			e = mesh.oNext(e);
+		} while(e != fromSite);
+		DataPoint[] cell = new DataPoint[degree];
+		e = mesh.rot(fromSite);
+		for(int i = 0; i < degree; i++){
+			cell[i] = voronoiVertex(e);
+			e = mesh.lNext(e);
+		}
+		return cell;
+	}
+
+	// Values of sites
+	public void setValue(int site, double value){
+		/* Sets the value interpolated at site. Values are kept by site
+		 * numbers, a moved site keeps its value, a removed one loses it.
+		 * Must not be called while values are being interpolated.
+		 */
+		if(!isSite(site)){
+			throw new IllegalArgumentException("Site " + site + " is not in the triangulation");
+		}
+		if(site >= values.length){
+			int length = values.length;
+			values = Arrays.copyOf(values, Math.max(mesh.siteCount(), 2 * length));
+			Arrays.fill(values, length, values.length, Double.NaN);
+		}
+		values[site] = value;
+	}
+
+	public double getValue(int site){
+		// Value of site, NaN if it was not set
+		return (site >= 0 && site < values.length) ? values[site] : Double.NaN;
+	}
+
+	boolean hasValues(){
+		// Some site has a value, or had it before it was removed
+		return values.length > 0;
+	}
+
+	// Natural neighbour interpolation
+	/* Values of sites are interpolated with Sibson's natural neighbour
+	 * weights: weight of a site is the area its Voronoi cell would lose to
+	 * the query point if the point was inserted. Nothing is inserted, the
+	 * would-be insertion cavity (faces whose circumCircle contains the
+	 * point, by the inCircle test of the mesh) is found by a walk from the
+	 * located face. Sites on its boundary are the natural neighbours, and
+	 * the area lost by each of them is a polygon of circumCenters of cavity
+	 * faces around it and of two new faces. Cached circumCenters are used,
+	 * dirty ones are computed without storing them. Outside of the hull of
+	 * sites the result is NaN, on the hull it is linear along the hull edge.
+	 * Like nearest site queries, interpolation only reads the mesh and each
+	 * thread starts where its previous query finished.
+	 */
+	public double interpolate(double x, double y){
+		int[] hint = queryHint();
+		Cavity cavity = new Cavity();
+		double result = interpolate(x, y, (hierarchy != null) ? QuadEdgeMesh.NONE : queryStart(hint[0]), cavity);
+		hint[0] = cavity.located;
+		return result;
+	}
+
+	public double[] interpolateGrid(Rectangle2D area, int width, int height){
+		return interpolateGrid(area, width, height, ForkJoinPool.commonPool());
+	}
+
+	public double[] interpolateGrid(Rectangle2D area, int width, int height, ForkJoinPool pool){
+		/* Interpolated values of all pixels, row by row. Pixel [px, py] is
+		 * the point area.x + (px + 0.5) * area.width / width, area.y + (py +
+		 * 0.5) * area.height / height, like in VoronoiRaster. Bands of rows
+		 * are interpolated in parallel, each query starts where the previous
+		 * one finished.
+		 */
+		if(width <= 0 || height <= 0 || (long)width * height > Integer.MAX_VALUE){
+			throw new IllegalArgumentException("Grid size " + width + "x" + height);
+		}
+		double[] result = new double[width * height];
+		pool.invoke(new GridTask(area, width, height, result, 0, height));
+		return result;
+	}
+
+	private double interpolate(double x, double y, int start, Cavity cavity){
+		long begin = Statistics.ENABLED ? System.nanoTime() : 0;
+		double result = sibson(x, y, start, cavity);
+		if(Statistics.ENABLED){
+			Statistics.interpolations.increment();
+			Statistics.interpolateNanos.add(System.nanoTime() - begin);
+		}
+		return result;
+	}
+
+	private double sibson(double x, double y, int start, Cavity cavity){
+		int t = locate(x, y, start);
+		cavity.located = t;
+		int e = t;
+		do{
+			if(isAt(mesh.origin(e), x, y)){
+				// Query at a site
+				return getValue(mesh.origin(e));
+			}
+			e = mesh.lNext(e);
+		} while(e != t);
+		if(mesh.origin(t) < BOUNDS || mesh.dest(t) < BOUNDS || mesh.origin(mesh.lPrev(t)) < BOUNDS){
+			// Outside of the hull, or on a hull edge of an outer face
+			do{
+				if(!edgeToFromBoundary(e) && mesh.onEdge(x, y, e)){
+					return linear(e, x, y);
+				}
+				e = mesh.lNext(e);
+			} while(e != t);
+			return Double.NaN;
+		}
+		// Cavity, its boundary edges are collected in CCW order (cavity is on their left)
+		cavity.stackTop = 0;
+		cavity.size = 0;
+		cavity.push(mesh.lPrev(t));
+		cavity.push(mesh.lNext(t));
+		cavity.push(t);
+		while(cavity.stackTop > 0){
+			e = cavity.stack[--cavity.stackTop];
+			int across = mesh.sym(e);
+			int c = mesh.dest(mesh.lNext(across));
+			boolean inside;
+			if(c < BOUNDS){
+				// Edge of the hull
+				if(mesh.det3(mesh.origin(e), mesh.dest(e), x, y) == 0){
+					return linear(e, x, y);
+				}
+				if(mesh.inCircle(mesh.origin(across), mesh.dest(across), c, x, y)){
+					return Double.NaN;
+				}
+				inside = false;
+			}
+			else{
+				inside = mesh.inCircle(mesh.origin(across), mesh.dest(across), c, x, y);
+			}
+			if(inside){
+				cavity.push(mesh.lPrev(across));
+				cavity.push(mesh.lNext(across));
+			}
+			else{
+				cavity.add(e);
+			}
+		}
+		// New circumCenters, of the query point and every boundary edge (relative to the query point)
+		int m = cavity.size;
+		for(int j = 0; j < m; j++){
+			int b = cavity.boundary[j];
+			cavity.center(x, y, mesh.origin(b), mesh.dest(b), x, y);
+			cavity.newX[j] = cavity.centerX;
+			cavity.newY[j] = cavity.centerY;
+		}
+		// Area lost by boundary site v: new center after v, old centers of cavity faces around v, new center before v
+		double total = 0, sum = 0;
+		for(int i = 0; i < m; i++){
+			int before = (i == 0) ? m - 1 : i - 1;
+			int out = cavity.boundary[i], end = mesh.sym(cavity.boundary[before]);
+			double area = 0, prevX = cavity.newX[i], prevY = cavity.newY[i];
+			for(int f = out; f != end; f = mesh.oNext(f)){
+				DataPoint center = mesh.center(mesh.rotInv(f));
+				double cx, cy;
+				if(center != null){
+					cx = center.x - x;
+					cy = center.y - y;
+				}
+				else{
+					cavity.center(mesh.x(mesh.origin(f)), mesh.y(mesh.origin(f)), mesh.dest(f), mesh.origin(mesh.lPrev(f)), x, y);
+					cx = cavity.centerX;
+					cy = cavity.centerY;
+				}
+				area += prevX * cy - cx * prevY;
+				prevX = cx;
+				prevY = cy;
+			}
+			area += prevX * cavity.newY[before] - cavity.newX[before] * prevY;
+			area += cavity.newX[before] * cavity.newY[i] - cavity.newX[i] * cavity.newY[before];
+			total += area;
+			sum += area * getValue(mesh.origin(out));
+		}
+		return sum / total;
+	}
+
+	private double linear(int e, double x, double y){
+		// Value at [x, y] on edge e, linear between its ends
+		int a = mesh.origin(e), b = mesh.dest(e);
+		double dx = mesh.x(b) - mesh.x(a), dy = mesh.y(b) - mesh.y(a);
+		double t = ((x - mesh.x(a)) * dx + (y - mesh.y(a)) * dy) / (dx*dx + dy*dy);
+		return getValue(a) + t * (getValue(b) - getValue(a));
+	}
+
+	private class Cavity {
+		// Scratch state of one interpolating thread
+		private int located;	// Result of the last locate, start of the next one
+		private int[] stack = new int[16];
+		private int stackTop = 0;
+		private int[] boundary = new int[16];
+		private double[] newX = new double[16], newY = new double[16];
+		private int size = 0;
+		private double centerX, centerY;
+
+		void push(int e){
+			if(stackTop == stack.length){
+				stack = Arrays.copyOf(stack, 2 * stackTop);
+			}
+			stack[stackTop++] = e;
+		}
+
+		void add(int e){
+			if(size == boundary.length){
+				boundary = Arrays.copyOf(boundary, 2 * size);
+				newX = new double[2 * size];
+				newY = new double[2 * size];
+			}
+			boundary[size++] = e;
+		}
+
+		void center(double ax, double ay, int b, int c, double x, double y){
+			// circumCenter of triangle [ax, ay], b, c, relative to [x, y]
+			double	bx = mesh.x(b) - ax, by = mesh.y(b) - ay,
+					cx = mesh.x(c) - ax, cy = mesh.y(c) - ay;
+			double d = 2*(bx * cy  -  by * cx);
+			double	bSqr = bx*bx + by*by,
+					cSqr = cx*cx + cy*cy;
+			centerX = (cy * bSqr  -  by * cSqr) / d  +  (ax - x);
+			centerY = (bx * cSqr  -  cx * bSqr) / d  +  (ay - y);
+		}
+	}
+
+	private class GridTask extends RecursiveAction {
+		// Rows from .. to - 1 of the grid, each row starts where the previous one started
+		private static final long serialVersionUID = 1L;
+		private Rectangle2D area;
+		private int width, height;
+		private double[] result;
+		private int from, to;
+
+		GridTask(Rectangle2D area, int width, int height, double[] result, int from, int to){
+			this.area = area;
+			this.width = width;
+			this.height = height;
+			this.result = result;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if((long)(to - from) * width <= BATCH_THRESHOLD || to - from == 1){
+				// Bands are taken top to bottom by each worker, so the band starts where the previous band of its thread started its last row
+				Cavity cavity = new Cavity();
+				int[] threadHint = queryHint();
+				int rowStart = queryStart(threadHint[0]);
+				double pixelWidth = area.getWidth() / width, pixelHeight = area.getHeight() / height;
+				for(int row = from; row < to; row++){
+					double y = area.getMinY() + (row + 0.5) * pixelHeight;
+					int hint = rowStart;
+					for(int px = 0; px < width; px++){
+						result[row * width + px] = interpolate(area.getMinX() + (px + 0.5) * pixelWidth, y, hint, cavity);
+						hint = cavity.located;
+						if(px == 0){
+							rowStart = hint;
+						}
+					}
+				}
+				threadHint[0] = rowStart;
+				return;
+			}
+			int mid = (from + to) / 2;
+			invokeAll(	new GridTask(area, width, height, result, from, mid),
+						new GridTask(area, width, height, result, mid, to));
+		}
+	}
+
+	// Mesh traversal
+	/* Traversals are iterative and mark visited edges with a number of the
+	 * traversal (epoch), so no visited sets are needed. Processors must not
+	 * modify the mesh or start another traversal of this triangulation.
+	 */
+	private static final int WALK_EDGES = 1;
+	private static final int WALK_VERTEXES = 2;
+	private static final int WALK_FACES = 3;
+
+	public void forEachEdge(EdgeProcessor proc){
+		// Processes every primal edge once, in one of its two directions
+		walk(WALK_EDGES, firstEdge, proc);
+	}
+
+	public void forEachVertex(EdgeProcessor proc){
+		// Processes one edge leaving every site (bounding sites included)
+		walk(WALK_VERTEXES, firstEdge, proc);
+	}
+
+	public void forEachFace(EdgeProcessor proc){
+		// Processes one edge of every face, the face being on its left
+		walk(WALK_FACES, firstEdge, proc);
+	}
+
+	public void forEachDualEdge(EdgeProcessor proc){
+		// Processes every dual (Voronoi) edge once, in one of its two directions
+		walk(WALK_EDGES, mesh.rot(firstEdge), proc);
+	}
+
+	public void forEachFaceNear(Rectangle2D area, EdgeProcessor proc){
+		/* Processes one edge of every face whose circumCircle intersects given
+		 * area, the face being on its left. These are all faces intersecting
+		 * the area, and all faces whose sites, circumCenters or Voronoi edges
+		 * can reach into it. circumCircle of a face with a corner of the
+		 * bounding triangle is a half-plane, the bounding triangle itself is
+		 * left out. The set of such faces is connected, so it is walked from
+		 * the face containing a point of the area, and the work is
+		 * proportional to the number of faces found. Processors may compute
+		 * Voronoi vertexes.
+		 */
+		if(++epoch == 0){
+			epoch = 1;
+		}
+		int mark = epoch;
+		stackTop = 0;
+		// Corners of the bounding triangle are in infinity, so a corner of the area is in some face, which is near the area
+		push(mesh.locate(area.getMinX(), area.getMinY(), (lastEdge != QuadEdgeMesh.NONE) ? lastEdge : firstEdge));
+		while(stackTop > 0){
+			int e = stack[--stackTop];
+			if(mesh.mark(e) == mark){
+				continue;
+			}
+			int r = e;
+			do{
+				mesh.setMark(r, mark);
+				r = mesh.lNext(r);
+			} while(r != e);
+			if(!faceNear(e, area)){
+				continue;
+			}
+			do{
+				if(mesh.mark(mesh.sym(r)) != mark){
+					push(mesh.sym(r));
+				}
+				r = mesh.lNext(r);
+			} while(r != e);
+			proc.process(e);
+		}
+	}
+
+	private boolean faceNear(int e, Rectangle2D area){
+		// circumCircle of face on the left of e intersects area, the bounding triangle itself is never near
+		int t = siteOf(e);
+		if(t == QuadEdgeMesh.NONE){
+			return false;
+		}
+		// Corners (if any) come last in CCW order
+		for(int i = 0; i < 2 && !edgeFromBoundary(mesh.lPrev(t)); i++){
+			t = mesh.lPrev(t);
+		}
+		int a = mesh.origin(t), b = mesh.dest(t), c = mesh.origin(mesh.lPrev(t));
+		if(b < BOUNDS || c < BOUNDS){
+			return halfPlaneNear(area, mesh.x(a), mesh.y(a), mesh.x(b), mesh.y(b), mesh.x(c), mesh.y(c), b < BOUNDS);
+		}
+		DataPoint center = voronoiVertex(mesh.rotInv(e));
+		double	dx = Math.max(0, Math.max(area.getMinX() - center.x, center.x - area.getMaxX())),
+				dy = Math.max(0, Math.max(area.getMinY() - center.y, center.y - area.getMaxY()));
+		return dx*dx + dy*dy <= center.distanceSq(mesh.x(a), mesh.y(a));
+	}
+
+	static boolean halfPlaneNear(Rectangle2D area, double ax, double ay, double bx, double by, double cx, double cy, boolean twoCorners){
+		/* Whether area intersects the circumCircle of face a, b, c (in CCW
+		 * order) with corners of the bounding triangle last. Coordinates of
+		 * corners are their directions. Such circle is a half-plane: left of
+		 * a -> b with one corner, with two corners the one through a whose
+		 * normal points like circumCenter of the origin and directions to b
+		 * and c (like in faceCenter). The corner of area farthest along the
+		 * normal is tested.
+		 */
+		double nx, ny;
+		if(!twoCorners){
+			nx = ay - by;
+			ny = bx - ax;
+		}
+		else{
+			double d = 2*(bx * cy  -  by * cx);
+			nx = (cy * (bx*bx + by*by)  -  by * (cx*cx + cy*cy)) / d;
+			ny = (bx * (cx*cx + cy*cy)  -  cx * (bx*bx + by*by)) / d;
+		}
+		double	px = (nx >= 0) ? area.getMaxX() : area.getMinX(),
+				py = (ny >= 0) ? area.getMaxY() : area.getMinY();
+		return (px - ax) * nx + (py - ay) * ny >= 0;
+	}
+
+	private void walk(int mode, int start, EdgeProcessor proc){
+		if(++epoch == 0){
+			epoch = 1;	// New edges have mark 0
+		}
+		int mark = epoch;
+		stackTop = 0;
+		push(start);
+		while(stackTop > 0){
+			int e = stack[--stackTop];
+			if(mesh.mark(e) == mark){
+				continue;
+			}
+			if(mode == WALK_EDGES){
+				mesh.setMark(e, mark);
+				mesh.setMark(mesh.sym(e), mark);
+				push(mesh.oNext(e));
+				push(mesh.oNext(mesh.sym(e)));
+			}
+			else{
+				// Mark whole ring around the vertex or face, continue to its neighbours
+				int r = e;
+				do{
+					mesh.setMark(r, mark);
+					if(mesh.mark(mesh.sym(r)) != mark){
+						push(mesh.sym(r));
+					}
+					r = (mode == WALK_VERTEXES) ? mesh.oNext(r) : mesh.lNext(r);
+				} while(r != e);
+			}
+			proc.process(e);
+		}
+	}
+
+	private void push(int e){
+		if(stackTop == stack.length){
+			int[] bigger = new int[stack.length * 2];
+			System.arraycopy(stack, 0, bigger, 0, stackTop);
+			stack = bigger;
+		}
+		stack[stackTop++] = e;
+	}
+
 	// Public helper methods
-	public Edge getFirstEdge(){
+	public QuadEdgeMesh getMesh(){
+		return mesh;
+	}
+
+	public int getFirstEdge(){
 		return firstEdge;
 	}
-	
+
+	int getLastEdge(){
+		// Where the last change finished, NONE if it is not known
+		return lastEdge;
+	}
+
 	public int size(){
-		return siteCount;
+		return siteCount.get();
 	}
-	
-	public boolean edgeFromBoundary(Edge e){
+
+	public boolean edgeFromBoundary(int e){
 		// Returns true if edge goes from a boundary point.
-		return	boundA.equals(e.origin()) ||
-				boundB.equals(e.origin()) ||
-				boundC.equals(e.origin());
+		return mesh.origin(e) < BOUNDS;
 	}
-	
-	public boolean edgeToFromBoundary(Edge e){
+
+	public boolean edgeToFromBoundary(int e){
 		// Returns true if edge goes to or from a boundary point.
-		return edgeFromBoundary(e) || edgeFromBoundary(e.sym());
+		return edgeFromBoundary(e) || edgeFromBoundary(mesh.sym(e));
 	}
 
 }
\ No newline at end of file
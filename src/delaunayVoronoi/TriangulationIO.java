@@ -0,0 +1,295 @@
+package delaunayVoronoi;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class TriangulationIO {
+	/* Binary snapshot of a triangulation, so that it can be loaded without
+	 * inserting the sites again. All numbers are little-endian, every part
+	 * is an array, laid out like the arrays of CompactMesh:
+	 *   header:   MAGIC, VERSION, flags, siteCount, vertexCount, quadCount,
+	 *             faceCount, firstEdge (ints)
+	 *   vertexes: x of all, y of all (doubles), vertexes 0, 1, 2 are
+	 *             corners of bounding triangle, given by directions to
+	 *             them (they are in infinity)
+	 *   quads:    origins of edges 0 and 2 of all (ints, indexed by e >> 1),
+	 *             oNext of all edges (ints, indexed by e), edge number is
+	 *             4 * quad + number in quad
+	 * and if flags contain VORONOI:
+	 *   faces:    x of all, y of all (doubles), type of all (ints) of
+	 *             circumCenters, then faces of edges 1 and 3 of all quads
+	 *             (ints, indexed by e >> 1, -1 if dirty)
+	 * and if flags contain VALUES:
+	 *   values:   values of all vertexes (doubles, NaN if not set)
+	 * Deleted quad-edges and removed sites are left out, the rest is
+	 * renumbered in the same order. Loading maps the file to memory and
+	 * reads every part with one bulk get. CompactMesh takes the arrays as
+	 * they are, ObjectMesh makes a QuadEdge for every quad. No geometric
+	 * predicates are computed.
+	 */
+	private static final int MAGIC = 0x44545653;	// "DTVS"
+	private static final int VERSION = 1;
+	private static final int VORONOI = 1;
+	private static final int VALUES = 2;
+	private static final int BUFFER_SIZE = 1 << 20;
+	private static final long WINDOW_SIZE = 1 << 30;
+
+	// Writing
+	public static void write(Triangulation dt, Path file, boolean withVoronoi) throws IOException {
+		final QuadEdgeMesh mesh = dt.getMesh();
+		// Number sites and quad-edges which are in the mesh
+		int[] siteNumber = new int[mesh.siteCount()];
+		int vertexCount = 0;
+		for(int site = 0; site < siteNumber.length; site++){
+			siteNumber[site] = (mesh.edgeOf(site) != QuadEdgeMesh.NONE) ? vertexCount++ : QuadEdgeMesh.NONE;
+		}
+		final int[] quadNumber = new int[mesh.quadCount()];
+		int quadCount = 0;
+		for(int q = 0; q < quadNumber.length; q++){
+			quadNumber[q] = mesh.isDeleted(q) ? QuadEdgeMesh.NONE : quadCount++;
+		}
+		boolean withValues = dt.hasValues();
+		double[] xs = new double[vertexCount], ys = new double[vertexCount];
+		double[] values = withValues ? new double[vertexCount] : null;
+		for(int site = 0; site < siteNumber.length; site++){
+			if(siteNumber[site] != QuadEdgeMesh.NONE){
+				xs[siteNumber[site]] = mesh.x(site);
+				ys[siteNumber[site]] = mesh.y(site);
+				if(withValues){
+					values[siteNumber[site]] = dt.getValue(site);
+				}
+			}
+		}
+		int[] origins = new int[2 * quadCount], next = new int[4 * quadCount];
+		for(int q = 0; q < quadNumber.length; q++){
+			int n = quadNumber[q];
+			if(n == QuadEdgeMesh.NONE){
+				continue;
+			}
+			origins[2 * n] = siteNumber[mesh.origin(q << 2)];
+			origins[2 * n + 1] = siteNumber[mesh.dest(q << 2)];
+			for(int i = 0; i < 4; i++){
+				next[4 * n + i] = renumber(mesh.oNext((q << 2) + i), quadNumber);
+			}
+		}
+		// Number faces (circumCenters), and faces of edges 1 and 3 of every quad-edge
+		final int[] faces = withVoronoi ? new int[2 * quadCount] : null;
+		final double[][] centers = { new double[1024], new double[1024] };
+		final int[][] types = { new int[1024] };
+		final int[] faceCount = { 0 };
+		if(withVoronoi){
+			dt.forEachFace(new EdgeProcessor() {
+				@Override
+				public void process(int e) {
+					int f = -1;
+					DataPoint center = mesh.center(mesh.rotInv(e));
+					if(center != null){
+						f = faceCount[0]++;
+						if(f == types[0].length){
+							centers[0] = Arrays.copyOf(centers[0], 2 * f);
+							centers[1] = Arrays.copyOf(centers[1], 2 * f);
+							types[0] = Arrays.copyOf(types[0], 2 * f);
+						}
+						centers[0][f] = center.x;
+						centers[1][f] = center.y;
+						types[0][f] = center.type;
+					}
+					int s = e;
+					do{
+						faces[renumber(mesh.rotInv(s), quadNumber) >> 1] = f;
+						s = mesh.lNext(s);
+					} while(s != e);
+				}
+			});
+		}
+
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try{
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC).putInt(VERSION).putInt((withVoronoi ? VORONOI : 0) | (withValues ? VALUES : 0)).putInt(dt.size());
+			buffer.putInt(vertexCount).putInt(quadCount).putInt(faceCount[0]);
+			buffer.putInt(renumber(dt.getFirstEdge(), quadNumber));
+			buffer = putDoubles(channel, buffer, xs, vertexCount);
+			buffer = putDoubles(channel, buffer, ys, vertexCount);
+			buffer = putInts(channel, buffer, origins, origins.length);
+			buffer = putInts(channel, buffer, next, next.length);
+			if(withVoronoi){
+				buffer = putDoubles(channel, buffer, centers[0], faceCount[0]);
+				buffer = putDoubles(channel, buffer, centers[1], faceCount[0]);
+				buffer = putInts(channel, buffer, types[0], faceCount[0]);
+				buffer = putInts(channel, buffer, faces, faces.length);
+			}
+			if(withValues){
+				buffer = putDoubles(channel, buffer, values, vertexCount);
+			}
+			flush(channel, buffer);
+		}
+		finally{
+			channel.close();
+		}
+	}
+
+	private static int renumber(int e, int[] quadNumber){
+		return (quadNumber[e >> 2] << 2) | (e & 3);
+	}
+
+	private static ByteBuffer putInts(FileChannel channel, ByteBuffer buffer, int[] values, int count) throws IOException {
+		// Puts first count values through a view of the buffer, writing it out when it is full
+		for(int i = 0; i < count; ){
+			buffer = ensure(channel, buffer, 4);
+			int n = Math.min(count - i, buffer.remaining() / 4);
+			buffer.asIntBuffer().put(values, i, n);
+			buffer.position(buffer.position() + 4 * n);
+			i += n;
+		}
+		return buffer;
+	}
+
+	private static ByteBuffer putDoubles(FileChannel channel, ByteBuffer buffer, double[] values, int count) throws IOException {
+		for(int i = 0; i < count; ){
+			buffer = ensure(channel, buffer, 8);
+			int n = Math.min(count - i, buffer.remaining() / 8);
+			buffer.asDoubleBuffer().put(values, i, n);
+			buffer.position(buffer.position() + 8 * n);
+			i += n;
+		}
+		return buffer;
+	}
+
+	private static ByteBuffer ensure(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+		// Writes out the buffer if there is no space for given number of bytes
+		if(buffer.remaining() < bytes){
+			flush(channel, buffer);
+			buffer.clear();
+		}
+		return buffer;
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()){
+			channel.write(buffer);
+		}
+	}
+
+	// Loading
+	public static Triangulation read(Path file) throws IOException {
+		return read(file, new ObjectMesh());
+	}
+
+	public static Triangulation read(Path file, QuadEdgeMesh mesh) throws IOException {
+		/* Loads the snapshot into given empty mesh, e.g. new CompactMesh().
+		 * Returns triangulation in lazy Voronoi mode, faces that were not
+		 * written are computed when they are asked for.
+		 */
+		if(mesh.siteCount() != 0){
+			throw new IllegalArgumentException("Mesh is not empty");
+		}
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try{
+			MappedInput in = new MappedInput(channel);
+			if(in.getInt() != MAGIC || in.getInt() != VERSION){
+				throw new IOException("Not a triangulation snapshot: " + file);
+			}
+			int flags = in.getInt();
+			int siteCount = in.getInt();
+			int vertexCount = in.getInt();
+			int quadCount = in.getInt();
+			int faceCount = in.getInt();
+			int firstEdge = in.getInt();
+
+			double[] xs = in.getDoubles(vertexCount),
+					ys = in.getDoubles(vertexCount);
+			int[] origins = in.getInts(2 * quadCount),
+					next = in.getInts(4 * quadCount);
+			mesh.load(xs, ys, vertexCount, origins, next, quadCount);
+			if((flags & VORONOI) != 0){
+				double[] cxs = in.getDoubles(faceCount),
+						cys = in.getDoubles(faceCount);
+				int[] types = in.getInts(faceCount),
+						faces = in.getInts(2 * quadCount);
+				DataPoint[] centers = new DataPoint[faceCount];
+				for(int f = 0; f < centers.length; f++){
+					centers[f] = new DataPoint(types[f], cxs[f], cys[f]);
+				}
+				for(int i = 0; i < faces.length; i++){
+					if(faces[i] >= 0){
+						mesh.setCenter((i << 1) | 1, centers[faces[i]]);
+					}
+				}
+			}
+			Triangulation dt = new Triangulation(mesh, firstEdge, siteCount, true);
+			if((flags & VALUES) != 0){
+				double[] values = in.getDoubles(vertexCount);
+				for(int site = QuadEdgeMesh.BOUNDS; site < vertexCount; site++){
+					if(!Double.isNaN(values[site])){
+						dt.setValue(site, values[site]);
+					}
+				}
+			}
+			return dt;
+		}
+		finally{
+			channel.close();
+		}
+	}
+
+	private static class MappedInput {
+		// Reads the file through memory mapped windows of at most WINDOW_SIZE bytes
+		private FileChannel channel;
+		private long windowStart = 0;
+		private ByteBuffer window = ByteBuffer.allocate(0);
+
+		MappedInput(FileChannel channel){
+			this.channel = channel;
+		}
+
+		private void ensure(int bytes) throws IOException {
+			if(window.remaining() < bytes){
+				windowStart += window.position();
+				long size = Math.min(WINDOW_SIZE, channel.size() - windowStart);
+				if(size < bytes){
+					throw new EOFException("Snapshot is truncated");
+				}
+				window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, size).order(ByteOrder.LITTLE_ENDIAN);
+			}
+		}
+
+		int getInt() throws IOException {
+			ensure(4);
+			return window.getInt();
+		}
+
+		int[] getInts(int count) throws IOException {
+			// Bulk gets through views of the windows
+			int[] values = new int[count];
+			for(int i = 0; i < count; ){
+				ensure(4);
+				int n = Math.min(count - i, window.remaining() / 4);
+				window.asIntBuffer().get(values, i, n);
+				window.position(window.position() + 4 * n);
+				i += n;
+			}
+			return values;
+		}
+
+		double[] getDoubles(int count) throws IOException {
+			double[] values = new double[count];
+			for(int i = 0; i < count; ){
+				ensure(8);
+				int n = Math.min(count - i, window.remaining() / 8);
+				window.asDoubleBuffer().get(values, i, n);
+				window.position(window.position() + 8 * n);
+				i += n;
+			}
+			return values;
+		}
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,365 @@
+package delaunayVoronoi;
+
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class TriangulationTool {
+	/* Headless entry point: builds a triangulation from a file and streams
+	 * the result to files (or "-" for standard output) while traversing the
+	 * mesh, so no output model is held in memory. Edges, triangles, and
+	 * cells adjacent to the bounding triangle are left out of the output,
+	 * except that cells of hull sites list their far vertexes too. The
+	 * Voronoi raster is rendered by VoronoiRaster in parallel bands. Timing
+	 * and size stats are printed to standard error, followed by hot path
+	 * statistics if they are enabled (-DdelaunayVoronoi.statistics=true).
+	 * With -compact the sites go to CompactMesh, which holds large inputs
+	 * in a fraction of the memory.
+	 */
+	private static final String USAGE =
+			"Usage: TriangulationTool [options] input\n" +
+			"  -format csv|bin|snapshot  input format (default by extension: .csv and .txt are csv)\n" +
+			"  -compact                  build compact mesh\n" +
+			"  -relax n                  at most n Lloyd iterations within bounding box of sites\n" +
+			"  -tolerance d              stop relaxing when no site moves farther than d (default 0)\n" +
+			"  -edges file               Delaunay edges:    x1,y1,x2,y2\n" +
+			"  -triangles file           Delaunay triangles: x1,y1,x2,y2,x3,y3\n" +
+			"  -vertexes file            Voronoi vertexes:  x,y\n" +
+			"  -cells file               Voronoi cells:     x,y,n,x1,y1,...,xn,yn\n" +
+			"  -snapshot file            binary snapshot of the triangulation\n" +
+			"  -raster file              Voronoi raster, nearest site label of every pixel:\n" +
+			"                            .png colour image, otherwise little-endian ints\n" +
+			"  -size WxH                 raster size in pixels (default 1024x1024)\n" +
+			"  -area x,y,w,h             rastered area (default bounding box of sites)\n" +
+			"  -labels file              raster labels:    label,x,y of the labeled site\n";
+
+	public static void main(String[] args) {
+		String format = null, input = null;
+		String edges = null, triangles = null, vertexes = null, cells = null, snapshot = null;
+		String raster = null, labels = null;
+		int width = 1024, height = 1024;
+		int relax = 0;
+		double tolerance = 0;
+		Rectangle2D area = null;
+		boolean compact = false;
+		try{
+			for(int i = 0; i < args.length; i++){
+				String arg = args[i];
+				if(arg.equals("-format")){ format = args[++i]; }
+				else if(arg.equals("-compact")){ compact = true; }
+				else if(arg.equals("-edges")){ edges = args[++i]; }
+				else if(arg.equals("-triangles")){ triangles = args[++i]; }
+				else if(arg.equals("-vertexes")){ vertexes = args[++i]; }
+				else if(arg.equals("-cells")){ cells = args[++i]; }
+				else if(arg.equals("-snapshot")){ snapshot = args[++i]; }
+				else if(arg.equals("-raster")){ raster = args[++i]; }
+				else if(arg.equals("-labels")){ labels = args[++i]; }
+				else if(arg.equals("-relax")){ relax = Integer.parseInt(args[++i]); }
+				else if(arg.equals("-tolerance")){ tolerance = Double.parseDouble(args[++i]); }
+				else if(arg.equals("-size")){
+					String[] size = args[++i].split("x");
+					width = Integer.parseInt(size[0]);
+					height = Integer.parseInt(size[1]);
+					if(width <= 0 || height <= 0){
+						throw new IllegalArgumentException(arg);
+					}
+				}
+				else if(arg.equals("-area")){
+					String[] a = args[++i].split(",");
+					area = new Rectangle2D.Double(	Double.parseDouble(a[0]), Double.parseDouble(a[1]),
+													Double.parseDouble(a[2]), Double.parseDouble(a[3]));
+				}
+				else if(arg.startsWith("-") || input != null){ throw new IllegalArgumentException(arg); }
+				else{ input = arg; }
+			}
+		}
+		catch(ArrayIndexOutOfBoundsException e){
+			input = null;
+		}
+		catch(IllegalArgumentException e){
+			// Also a NumberFormatException of numeric options
+			input = null;
+		}
+		if(input == null){
+			System.err.print(USAGE);
+			System.exit(2);
+		}
+		if(format == null){
+			String name = input.toLowerCase();
+			format = (name.endsWith(".csv") || name.endsWith(".txt")) ? "csv" : "bin";
+		}
+
+		try{
+			// Build
+			long start = System.nanoTime();
+			Path inputPath = Paths.get(input);
+			QuadEdgeMesh mesh = compact ? new CompactMesh() : new ObjectMesh();
+			Triangulation dt;
+			long read;
+			if(format.equals("snapshot")){
+				dt = TriangulationIO.read(inputPath, mesh);
+				read = dt.size();
+			}
+			else if(format.equals("csv") || format.equals("bin")){
+				dt = new Triangulation(mesh);
+				dt.setLazyVoronoi(true);	// Voronoi vertexes are computed only if they are written
+				read = format.equals("csv") ? SiteReader.readCsv(inputPath, dt) : SiteReader.readBinary(inputPath, dt);
+			}
+			else{
+				System.err.print(USAGE);
+				System.exit(2);
+				return;
+			}
+			stat("build", start, read + " sites read, " + dt.size() + " in triangulation");
+			if(relax > 0 && dt.size() > 0){
+				start = System.nanoTime();
+				LloydRelaxation lloyd = new LloydRelaxation(dt, siteBounds(dt));
+				int done = lloyd.relax(relax, tolerance);
+				stat("relax", start, done + " iterations, last shift " + lloyd.getLastShift());
+			}
+
+			// Output
+			if(edges != null){
+				start = System.nanoTime();
+				stat("edges", start, writeEdges(dt, edges) + " written");
+			}
+			if(triangles != null){
+				start = System.nanoTime();
+				stat("triangles", start, writeTriangles(dt, triangles) + " written");
+			}
+			if(vertexes != null){
+				start = System.nanoTime();
+				stat("Voronoi vertexes", start, writeVertexes(dt, vertexes) + " written");
+			}
+			if(cells != null){
+				start = System.nanoTime();
+				stat("Voronoi cells", start, writeCells(dt, cells) + " written");
+			}
+			if(snapshot != null){
+				start = System.nanoTime();
+				TriangulationIO.write(dt, Paths.get(snapshot), vertexes != null || cells != null);
+				stat("snapshot", start, Files.size(Paths.get(snapshot)) + " bytes");
+			}
+			if(raster != null || labels != null){
+				start = System.nanoTime();
+				VoronoiRaster voronoiRaster = new VoronoiRaster(dt);
+				stat("raster labels", start, voronoiRaster.getSites().length + " sites labeled");
+				if(raster != null){
+					start = System.nanoTime();
+					if(area == null){
+						area = voronoiRaster.getBounds();
+					}
+					if(raster.toLowerCase().endsWith(".png")){
+						voronoiRaster.writePng(Paths.get(raster), area, width, height);
+					}
+					else{
+						voronoiRaster.writeRaw(Paths.get(raster), area, width, height);
+					}
+					stat("raster", start, width + "x" + height + ", " + Files.size(Paths.get(raster)) + " bytes");
+				}
+				if(labels != null){
+					start = System.nanoTime();
+					stat("labels", start, writeLabels(voronoiRaster, labels) + " written");
+				}
+			}
+			if(Statistics.ENABLED){
+				System.err.println(Statistics.snapshot(dt));
+			}
+		}
+		catch(IOException e){
+			System.err.println("Error: " + e);
+			System.exit(1);
+		}
+		catch(UncheckedIOException e){
+			System.err.println("Error: " + e.getCause());
+			System.exit(1);
+		}
+	}
+
+	private static void stat(String phase, long start, String info){
+		System.err.printf("%-18s %10.1f ms   %s%n", phase, (System.nanoTime() - start) / 1e6, info);
+	}
+
+	private static Rectangle2D siteBounds(Triangulation dt){
+		// Bounding box of the sites, at least 1 wide and high
+		QuadEdgeMesh mesh = dt.getMesh();
+		double	minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY,
+				maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for(int site = QuadEdgeMesh.BOUNDS; site < mesh.siteCount(); site++){
+			if(mesh.edgeOf(site) != QuadEdgeMesh.NONE){
+				minX = Math.min(minX, mesh.x(site));
+				minY = Math.min(minY, mesh.y(site));
+				maxX = Math.max(maxX, mesh.x(site));
+				maxY = Math.max(maxY, mesh.y(site));
+			}
+		}
+		return new Rectangle2D.Double(minX, minY, Math.max(maxX - minX, 1), Math.max(maxY - minY, 1));
+	}
+
+	// Writers
+	private static long writeEdges(final Triangulation dt, String file) throws IOException {
+		final QuadEdgeMesh mesh = dt.getMesh();
+		final Writer out = open(file);
+		final long[] count = { 0 };
+		try{
+			dt.forEachEdge(new EdgeProcessor() {
+				@Override
+				public void process(int e) {
+					if(dt.edgeToFromBoundary(e)){
+						return;
+					}
+					write(out, mesh, mesh.origin(e), ',');
+					write(out, mesh, mesh.dest(e), '\n');
+					count[0]++;
+				}
+			});
+		}
+		finally{
+			close(out, file);
+		}
+		return count[0];
+	}
+
+	private static long writeTriangles(final Triangulation dt, String file) throws IOException {
+		final QuadEdgeMesh mesh = dt.getMesh();
+		final Writer out = open(file);
+		final long[] count = { 0 };
+		try{
+			dt.forEachFace(new EdgeProcessor() {
+				@Override
+				public void process(int e) {
+					if(dt.edgeFromBoundary(e) || dt.edgeFromBoundary(mesh.lNext(e)) || dt.edgeFromBoundary(mesh.lPrev(e))){
+						return;
+					}
+					write(out, mesh, mesh.origin(e), ',');
+					write(out, mesh, mesh.origin(mesh.lNext(e)), ',');
+					write(out, mesh, mesh.origin(mesh.lPrev(e)), '\n');
+					count[0]++;
+				}
+			});
+		}
+		finally{
+			close(out, file);
+		}
+		return count[0];
+	}
+
+	private static long writeVertexes(final Triangulation dt, String file) throws IOException {
+		final QuadEdgeMesh mesh = dt.getMesh();
+		final Writer out = open(file);
+		final long[] count = { 0 };
+		try{
+			dt.forEachFace(new EdgeProcessor() {
+				@Override
+				public void process(int e) {
+					// Faces with a bounding corner have their vertex only far out on a ray of an open cell
+					if(dt.edgeFromBoundary(e) || dt.edgeFromBoundary(mesh.lNext(e)) || dt.edgeFromBoundary(mesh.lPrev(e))){
+						return;
+					}
+					DataPoint center = dt.voronoiVertex(mesh.rotInv(e));
+					write(out, center.x, center.y, '\n');
+					count[0]++;
+				}
+			});
+		}
+		finally{
+			close(out, file);
+		}
+		return count[0];
+	}
+
+	private static long writeCells(final Triangulation dt, String file) throws IOException {
+		final QuadEdgeMesh mesh = dt.getMesh();
+		final Writer out = open(file);
+		final long[] count = { 0 };
+		try{
+			dt.forEachVertex(new EdgeProcessor() {
+				@Override
+				public void process(int e) {
+					if(dt.edgeFromBoundary(e)){
+						return;
+					}
+					DataPoint[] cell = dt.voronoiCell(mesh.origin(e));
+					write(out, mesh, mesh.origin(e), ',');
+					try{
+						out.write(Integer.toString(cell.length));
+						for(DataPoint vertex : cell){
+							out.write(',');
+							write(out, vertex.x, vertex.y, (char)0);
+						}
+						out.write('\n');
+					}
+					catch(IOException ex){
+						throw new UncheckedIOException(ex);
+					}
+					count[0]++;
+				}
+			});
+		}
+		finally{
+			close(out, file);
+		}
+		return count[0];
+	}
+
+	private static long writeLabels(VoronoiRaster raster, String file) throws IOException {
+		Writer out = open(file);
+		int count = raster.getSites().length;
+		try{
+			for(int i = 0; i < count; i++){
+				out.write(Integer.toString(i));
+				out.write(',');
+				write(out, raster.x(i), raster.y(i), '\n');
+			}
+		}
+		finally{
+			close(out, file);
+		}
+		return count;
+	}
+
+	// Output helpers
+	private static Writer open(String file) throws IOException {
+		if(file.equals("-")){
+			return new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII), 1 << 16);
+		}
+		return Files.newBufferedWriter(Paths.get(file), StandardCharsets.US_ASCII);
+	}
+
+	private static void close(Writer out, String file) throws IOException {
+		// Standard output stays open for other outputs
+		if(file.equals("-")){
+			out.flush();
+		}
+		else{
+			out.close();
+		}
+	}
+
+	private static void write(Writer out, QuadEdgeMesh mesh, int site, char separator){
+		write(out, mesh.x(site), mesh.y(site), separator);
+	}
+
+	private static void write(Writer out, double x, double y, char separator){
+		// Writes "x,y" followed by separator (none if it is 0), processors cannot throw IOException
+		try{
+			out.write(Double.toString(x));
+			out.write(',');
+			out.write(Double.toString(y));
+			if(separator != 0){
+				out.write(separator);
+			}
+		}
+		catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,404 @@
+package delaunayVoronoi;
+
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+public class VoronoiRaster {
+	/* Raster of the Voronoi diagram, every pixel is labeled by its nearest
+	 * site. Sites are labeled 0 .. n-1 in the order of getSites(). Pixel
+	 * [px, py] is the point area.x + (px + 0.5) * area.width / width,
+	 * area.y + (py + 0.5) * area.height / height, so row 0 is at the top of
+	 * the area like on the screen.
+	 * Every row is scanned from the left. Site of a pixel is kept until the
+	 * row leaves its cell, at the nearest bisector with a neighbour on the
+	 * right, so the cost is given by the number of cells crossed rather than
+	 * by pixels. Next site is found by a greedy walk from that neighbour, and
+	 * every row starts at the site where the previous row started. Rows are
+	 * split into bands processed in parallel, and only a few bands are held
+	 * in memory at once, so big rasters are streamed to the file.
+	 * Sites and their neighbours are copied from the mesh when the raster is
+	 * created, which must not run while the triangulation is being changed.
+	 * Afterwards the raster does not read the mesh.
+	 */
+	public static final int NONE = -1;
+	private static final int BAND_PIXELS = 1 << 20;
+	private static final int LABELS = 0, RAW = 1, PNG = 2;
+	private static final byte[] PNG_SIGNATURE = { (byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+	private ForkJoinPool pool;
+	private int[] sites;			// Sites of the mesh by label
+	private double[] x, y;			// Coordinates of sites by label
+	private int[] first, neighbours;	// Labels of neighbours of site i are neighbours[first[i] .. first[i + 1] - 1]
+
+	public VoronoiRaster(Triangulation dt){
+		this(dt, ForkJoinPool.commonPool());
+	}
+
+	public VoronoiRaster(Triangulation dt, ForkJoinPool pool){
+		/* Copies sites and their neighbours to arrays ordered along Hilbert
+		 * curve, so that scanning does not jump around the mesh in memory.
+		 */
+		this.pool = pool;
+		QuadEdgeMesh mesh = dt.getMesh();
+		int n = dt.size();
+		DataPoint[] found = new DataPoint[n];
+		int[] foundSites = new int[n];
+		int count = 0;
+		for(int site = 0; site < mesh.siteCount(); site++){
+			int e = mesh.edgeOf(site);
+			if(e != QuadEdgeMesh.NONE && !dt.edgeFromBoundary(e)){
+				foundSites[count] = site;
+				found[count++] = new DataPoint(DataPoint.SITE, mesh.x(site), mesh.y(site));
+			}
+		}
+		// Label sites along Hilbert curve
+		int[] order = SpatialSort.hilbertOrder(found, 0, n);
+		int[] label = new int[mesh.siteCount()];
+		Arrays.fill(label, NONE);
+		sites = new int[n];
+		x = new double[n];
+		y = new double[n];
+		for(int i = 0; i < n; i++){
+			sites[i] = foundSites[order[i]];
+			label[sites[i]] = i;
+			x[i] = found[order[i]].x;
+			y[i] = found[order[i]].y;
+		}
+		// Neighbours, without boundary points, are destinations of edges around the site
+		first = new int[n + 1];
+		neighbours = new int[6 * n];
+		count = 0;
+		for(int i = 0; i < n; i++){
+			first[i] = count;
+			int start = mesh.edgeOf(sites[i]), e = start;
+			do{
+				int b = label[mesh.dest(e)];
+				if(b != NONE){
+					if(count == neighbours.length){
+						neighbours = Arrays.copyOf(neighbours, 2 * count);
+					}
+					neighbours[count++] = b;
+				}
+				e = mesh.oNext(e);
+			} while(e != start);
+		}
+		first[n] = count;
+	}
+
+	public int[] getSites(){
+		// Sites of the mesh in the order of their labels
+		return sites;
+	}
+
+	public double x(int label){
+		return x[label];
+	}
+
+	public double y(int label){
+		return y[label];
+	}
+
+	public Rectangle2D getBounds(){
+		// Bounding box of the sites, at least 1 wide and high
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for(int i = 0; i < sites.length; i++){
+			minX = Math.min(minX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxX = Math.max(maxX, x[i]);
+			maxY = Math.max(maxY, y[i]);
+		}
+		if(sites.length == 0){
+			return new Rectangle2D.Double(0, 0, 1, 1);
+		}
+		return new Rectangle2D.Double(	minX, minY,
+										Math.max(1, maxX - minX), Math.max(1, maxY - minY));
+	}
+
+	public static int color(int label){
+		// Pseudo-random RGB colour of a label, black for NONE
+		if(label == NONE){
+			return 0;
+		}
+		int h = label * 0x9E3779B1;
+		h ^= h >>> 15;
+		h *= 0x85EBCA77;
+		h ^= h >>> 13;
+		return h & 0xFFFFFF;
+	}
+
+	// Output
+	public int[] render(Rectangle2D area, int width, int height){
+		// Labels of all pixels, row by row
+		check(width, height);
+		if((long)width * height > Integer.MAX_VALUE){
+			throw new IllegalArgumentException("Raster " + width + "x" + height + " does not fit to an array, write it to a file");
+		}
+		int[] result = new int[width * height];
+		Band[] bands = bands(area, width, height, LABELS);
+		for(Band band : bands){
+			band.out = result;
+			band.offset = band.y0 * width;
+			pool.execute(band);
+		}
+		for(Band band : bands){
+			band.join();
+		}
+		return result;
+	}
+
+	public void writeRaw(Path file, Rectangle2D area, int width, int height) throws IOException {
+		// Labels as little-endian ints, row by row, without any header
+		check(width, height);
+		OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16);
+		try{
+			Band[] bands = bands(area, width, height, RAW);
+			ArrayDeque<Band> pending = new ArrayDeque<Band>();
+			int next = 0;
+			while(next < bands.length || !pending.isEmpty()){
+				next = submit(bands, next, pending);
+				Band band = pending.poll();
+				band.join();
+				out.write(band.bytes, 0, band.length);
+			}
+		}
+		finally{
+			out.close();
+		}
+	}
+
+	public void writePng(Path file, Rectangle2D area, int width, int height) throws IOException {
+		/* RGB image with color(label) of every pixel. Bands are compressed
+		 * in parallel as parts of one deflate stream (flushed to a byte
+		 * boundary), and checksums of the parts are combined.
+		 */
+		check(width, height);
+		OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16);
+		try{
+			out.write(PNG_SIGNATURE);
+			ByteBuffer header = ByteBuffer.allocate(13);
+			header.putInt(width).putInt(height).put((byte)8).put((byte)2).put((byte)0).put((byte)0).put((byte)0);
+			writeChunk(out, "IHDR", header.array(), header.position());
+			// zlib header: deflate, fastest compression
+			writeChunk(out, "IDAT", new byte[] { 0x78, 0x01 }, 2);
+			Band[] bands = bands(area, width, height, PNG);
+			bands[bands.length - 1].last = true;
+			ArrayDeque<Band> pending = new ArrayDeque<Band>();
+			int next = 0;
+			long adler = 1;
+			while(next < bands.length || !pending.isEmpty()){
+				next = submit(bands, next, pending);
+				Band band = pending.poll();
+				band.join();
+				writeChunk(out, "IDAT", band.bytes, band.length);
+				adler = combineAdler(adler, band.adler, band.rawLength);
+			}
+			byte[] trailer = ByteBuffer.allocate(4).putInt((int)adler).array();
+			writeChunk(out, "IDAT", trailer, 4);
+			writeChunk(out, "IEND", new byte[0], 0);
+		}
+		finally{
+			out.close();
+		}
+	}
+
+	private void check(int width, int height){
+		if(width <= 0 || height <= 0){
+			throw new IllegalArgumentException("Raster size " + width + "x" + height);
+		}
+	}
+
+	private Band[] bands(Rectangle2D area, int width, int height, int format){
+		int rows = Math.max(1, BAND_PIXELS / width);
+		Band[] bands = new Band[(height + rows - 1) / rows];
+		for(int i = 0; i < bands.length; i++){
+			bands[i] = new Band(area, width, height, i * rows, Math.min(rows, height - i * rows), format);
+		}
+		return bands;
+	}
+
+	private int submit(Band[] bands, int next, ArrayDeque<Band> pending){
+		// Keeps a few bands ahead of the writer running
+		while(next < bands.length && pending.size() < 2 * pool.getParallelism()){
+			pool.execute(bands[next]);
+			pending.add(bands[next++]);
+		}
+		return next;
+	}
+
+	private static void writeChunk(OutputStream out, String type, byte[] data, int length) throws IOException {
+		byte[] name = type.getBytes(StandardCharsets.US_ASCII);
+		CRC32 crc = new CRC32();
+		crc.update(name);
+		crc.update(data, 0, length);
+		out.write(ByteBuffer.allocate(4).putInt(length).array());
+		out.write(name);
+		out.write(data, 0, length);
+		out.write(ByteBuffer.allocate(4).putInt((int)crc.getValue()).array());
+	}
+
+	private static long combineAdler(long adler1, long adler2, long length2){
+		// Adler-32 of concatenated data from checksums of both parts (as adler32_combine of zlib)
+		final long base = 65521;
+		long rem = length2 % base;
+		long sum1 = adler1 & 0xFFFF;
+		long sum2 = (rem * sum1) % base;
+		sum1 += (adler2 & 0xFFFF) + base - 1;
+		sum2 += ((adler1 >>> 16) & 0xFFFF) + ((adler2 >>> 16) & 0xFFFF) + base - rem;
+		if(sum1 >= base) sum1 -= base;
+		if(sum1 >= base) sum1 -= base;
+		if(sum2 >= 2 * base) sum2 -= 2 * base;
+		if(sum2 >= base) sum2 -= base;
+		return sum1 | (sum2 << 16);
+	}
+
+	// Rasterization
+	private int closest(int from, double px, double py){
+		// Greedy walk from given site to the site closest to [px, py]
+		double bestDist = (x[from] - px) * (x[from] - px) + (y[from] - py) * (y[from] - py);
+		int best = NONE, closer = from;
+		while(closer != NONE){
+			best = closer;
+			closer = NONE;
+			for(int i = first[best]; i < first[best + 1]; i++){
+				int b = neighbours[i];
+				double dist = (x[b] - px) * (x[b] - px) + (y[b] - py) * (y[b] - py);
+				if(dist < bestDist){
+					closer = b;
+					bestDist = dist;
+				}
+			}
+		}
+		return best;
+	}
+
+	private void renderRows(int[] out, int offset, Rectangle2D area, int width, int height, int y0, int rows){
+		double pixelWidth = area.getWidth() / width, pixelHeight = area.getHeight() / height;
+		int rowStart = 0;
+		for(int row = 0; row < rows; row++){
+			int o = offset + row * width;
+			if(sites.length == 0){
+				Arrays.fill(out, o, o + width, NONE);
+				continue;
+			}
+			double py = area.getMinY() + (y0 + row + 0.5) * pixelHeight;
+			rowStart = closest(rowStart, area.getMinX() + 0.5 * pixelWidth, py);
+			int a = rowStart;
+			int px = 0;
+			while(true){
+				// Row leaves the cell at the nearest bisector with a neighbour on the right
+				double exit = Double.POSITIVE_INFINITY;
+				int across = NONE;
+				for(int i = first[a]; i < first[a + 1]; i++){
+					int b = neighbours[i];
+					if(x[b] > x[a]){
+						double bisector = ((x[b] - x[a]) * (x[b] + x[a]) + (y[b] - y[a]) * (y[b] + y[a] - 2 * py)) / (2 * (x[b] - x[a]));
+						if(bisector < exit){
+							exit = bisector;
+							across = b;
+						}
+					}
+				}
+				// Last pixel with center in the cell, at least the current one (a is its closest site)
+				int last = width - 1;
+				if(across != NONE){
+					last = (int)Math.max(px, Math.min(width - 1, Math.floor((exit - area.getMinX()) / pixelWidth - 0.5)));
+				}
+				Arrays.fill(out, o + px, o + last + 1, a);
+				if(last == width - 1){
+					break;
+				}
+				px = last + 1;
+				a = closest(across, area.getMinX() + (px + 0.5) * pixelWidth, py);
+			}
+		}
+	}
+
+	private class Band extends RecursiveAction {
+		// Rows y0 .. y0 + rows - 1, rendered and encoded for given format
+		private static final long serialVersionUID = 1L;
+		private Rectangle2D area;
+		private int width, height, y0, rows, format;
+		private int[] out;
+		private int offset;
+		private boolean last = false;
+		private byte[] bytes;
+		private int length, rawLength;
+		private long adler;
+
+		Band(Rectangle2D area, int width, int height, int y0, int rows, int format){
+			this.area = area;
+			this.width = width;
+			this.height = height;
+			this.y0 = y0;
+			this.rows = rows;
+			this.format = format;
+		}
+
+		@Override
+		protected void compute() {
+			if(format == LABELS){
+				renderRows(out, offset, area, width, height, y0, rows);
+				return;
+			}
+			int[] band = new int[rows * width];
+			renderRows(band, 0, area, width, height, y0, rows);
+			if(format == RAW){
+				ByteBuffer buffer = ByteBuffer.allocate(4 * band.length).order(ByteOrder.LITTLE_ENDIAN);
+				buffer.asIntBuffer().put(band);
+				bytes = buffer.array();
+				length = bytes.length;
+				return;
+			}
+			// PNG rows: filter type 0 (none) and RGB of every pixel
+			byte[] raw = new byte[rows * (1 + 3 * width)];
+			int i = 0;
+			for(int row = 0; row < rows; row++){
+				raw[i++] = 0;
+				for(int p = row * width; p < (row + 1) * width; p++){
+					int rgb = color(band[p]);
+					raw[i++] = (byte)(rgb >> 16);
+					raw[i++] = (byte)(rgb >> 8);
+					raw[i++] = (byte)rgb;
+				}
+			}
+			Adler32 checksum = new Adler32();
+			checksum.update(raw);
+			adler = checksum.getValue();
+			rawLength = raw.length;
+			// Raw deflate, flushed to a byte boundary so that bands can be concatenated
+			Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+			deflater.setInput(raw);
+			if(last){
+				deflater.finish();
+			}
+			bytes = new byte[raw.length / 8 + 64];
+			length = 0;
+			while(true){
+				if(length == bytes.length){
+					bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+				}
+				length += deflater.deflate(bytes, length, bytes.length - length, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+				if(last ? deflater.finished() : length < bytes.length){
+					break;
+				}
+			}
+			deflater.end();
+		}
+	}
+
+}
\ No newline at end of file
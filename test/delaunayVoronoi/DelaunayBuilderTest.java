@@ -0,0 +1,173 @@
+package delaunayVoronoi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class DelaunayBuilderTest {
+	/* Divide and conquer is checked below and above its sequential
+	 * threshold: every edge is locally Delaunay (which for a triangulation
+	 * means it is Delaunay) and sites in general position or on a line give
+	 * the same edges as incremental insertion. Cocircular sites have more
+	 * Delaunay triangulations, only the Delaunay property is checked for a
+	 * grid of them.
+	 */
+	private static final int SMALL = 1000, LARGE = 20000;	// Below and above DelaunayBuilder.SEQUENTIAL_THRESHOLD
+
+	private static void assertLocallyDelaunay(final Triangulation dt, int size){
+		assertEquals("size", size, dt.size());
+		final QuadEdgeMesh mesh = dt.getMesh();
+		assertEquals(size + 3, mesh.siteCount());
+		TriangulationTest.triangles(dt);
+		dt.forEachEdge(new EdgeProcessor() {
+			@Override
+			public void process(int e) {
+				if(dt.edgeFromBoundary(e) && dt.edgeFromBoundary(mesh.sym(e))){
+					// Side of bounding triangle
+					return;
+				}
+				int across = mesh.dest(mesh.lNext(mesh.sym(e)));
+				assertFalse("edge " + e + " is not Delaunay", mesh.inCircle(mesh.origin(e), mesh.dest(e), mesh.dest(mesh.lNext(e)), across));
+			}
+		});
+		dt.forEachVertex(new EdgeProcessor() {
+			@Override
+			public void process(int e) {
+				int site = mesh.origin(e);
+				assertEquals("edge of site", site, mesh.origin(mesh.edgeOf(site)));
+			}
+		});
+	}
+
+	private static Set<String> edges(final Triangulation dt){
+		/* Edges between sites, except the ones that may be flipped because
+		 * their two triangles are cocircular. Edges to the bounding corners
+		 * are left out too, the two builders may link a corner to different
+		 * sites when sites of the hull are collinear.
+		 */
+		final QuadEdgeMesh mesh = dt.getMesh();
+		final Set<String> found = new HashSet<String>();
+		dt.forEachEdge(new EdgeProcessor() {
+			@Override
+			public void process(int e) {
+				if(dt.edgeToFromBoundary(e) || dt.edgeToFromBoundary(mesh.lNext(e)) || dt.edgeToFromBoundary(mesh.lNext(mesh.sym(e)))){
+					return;
+				}
+				if(cocircular(mesh, mesh.origin(e), mesh.dest(e), mesh.dest(mesh.lNext(e)), mesh.dest(mesh.lNext(mesh.sym(e))))){
+					return;
+				}
+				String	a = mesh.x(mesh.origin(e)) + "," + mesh.y(mesh.origin(e)),
+						b = mesh.x(mesh.dest(e)) + "," + mesh.y(mesh.dest(e));
+				found.add((a.compareTo(b) < 0) ? a + " " + b : b + " " + a);
+			}
+		});
+		return found;
+	}
+
+	private static boolean cocircular(QuadEdgeMesh mesh, int a, int b, int c, int d){
+		// Exact in long arithmetic for integer coordinates
+		long[] x = new long[3], y = new long[3], sq = new long[3];
+		int[] p = { a, b, c };
+		for(int i = 0; i < 3; i++){
+			x[i] = (long)(mesh.x(p[i]) - mesh.x(d));
+			y[i] = (long)(mesh.y(p[i]) - mesh.y(d));
+			sq[i] = x[i]*x[i] + y[i]*y[i];
+		}
+		long det =	sq[0] * (x[1]*y[2] - x[2]*y[1]) -
+					sq[1] * (x[0]*y[2] - x[2]*y[0]) +
+					sq[2] * (x[0]*y[1] - x[1]*y[0]);
+		return det == 0;
+	}
+
+	private static Triangulation build(List<DataPoint> sites, QuadEdgeMesh mesh){
+		// Sites with every tenth of them twice
+		List<DataPoint> input = new ArrayList<DataPoint>(sites);
+		for(int i = 0; i < sites.size(); i += 10){
+			input.add(new DataPoint(DataPoint.SITE, sites.get(i).x, sites.get(i).y));
+		}
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try{
+			return DelaunayBuilder.build(input.toArray(new DataPoint[input.size()]), mesh, pool);
+		}
+		finally{
+			pool.shutdown();
+		}
+	}
+
+	private static List<DataPoint> spread(int n, long seed){
+		// Sites on a fine grid, four of them are cocircular rarely, so the Delaunay triangulation is unique
+		Random rand = new Random(seed);
+		List<DataPoint> sites = new ArrayList<DataPoint>();
+		for(int i = 0; i < n; i++){
+			sites.add(new DataPoint(DataPoint.SITE, rand.nextInt(6000) - 3000, rand.nextInt(6000)));
+		}
+		return sites;
+	}
+
+	private static int distinct(List<DataPoint> sites){
+		return new HashSet<DataPoint>(sites).size();
+	}
+
+	private static void assertAsIncremental(List<DataPoint> sites){
+		Triangulation built = build(sites, new CompactMesh(sites.size()));
+		assertLocallyDelaunay(built, distinct(sites));
+		Triangulation incremental = new Triangulation();
+		incremental.addAll(sites);
+		assertEquals(edges(incremental), edges(built));
+		assertEquals(edges(built), edges(build(sites, new ObjectMesh())));
+	}
+
+	@Test
+	public void generalPositionAsIncremental(){
+		List<DataPoint> small = spread(SMALL, 41);
+		assertAsIncremental(small);
+		TriangulationTest.assertDelaunay(build(small, new ObjectMesh()), small);
+		assertAsIncremental(spread(LARGE, 42));
+	}
+
+	@Test
+	public void collinearAsIncremental(){
+		for(int n : new int[]{ 0, 1, 2, 3, SMALL, LARGE }){
+			List<DataPoint> sites = new ArrayList<DataPoint>();
+			for(int i = 0; i < n; i++){
+				sites.add(new DataPoint(DataPoint.SITE, 2 * (i % 2500) + 100, (i % 2500) + 50));
+			}
+			assertAsIncremental(sites);
+		}
+	}
+
+	@Test
+	public void cocircularGridIsDelaunay(){
+		for(int side : new int[]{ 30, 150 }){
+			List<DataPoint> sites = new ArrayList<DataPoint>();
+			for(int i = 0; i < side; i++){
+				for(int j = 0; j < side; j++){
+					sites.add(new DataPoint(DataPoint.SITE, 2 * i, 2 * j));
+				}
+			}
+			assertLocallyDelaunay(build(sites, new CompactMesh()), sites.size());
+		}
+	}
+
+	@Test
+	public void builtMeshTakesNewSites(){
+		List<DataPoint> sites = TriangulationTest.uniform(SMALL, 43);
+		Triangulation dt = build(sites, new CompactMesh());
+		List<DataPoint> more = TriangulationTest.uniform(SMALL, 44);
+		dt.addAll(more);
+		sites.addAll(more);
+		TriangulationTest.assertDelaunay(dt, sites);
+		assertEquals(distinct(sites), dt.size());
+		assertTrue(dt.isLazyVoronoi());
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,159 @@
+package delaunayVoronoi;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DrawPanelTest {
+	/* Layers of DrawPanel repainted only in the changed area must have the
+	 * same pixels as a full paint of a new panel painting every face, after
+	 * additions, removals and moves of sites, for every layer, and after
+	 * panning and zooming. The panel is not shown, so it paints offscreen
+	 * without a display.
+	 */
+	private static final int WIDTH = 400, HEIGHT = 300;
+	// Delaunay, Voronoi, circles, sites are always shown
+	private static final boolean[][] LAYERS = {
+		{ false, false, false }, { true, false, false }, { false, true, false }, { false, false, true }, { true, true, true } };
+	// Zoom at the center of the panel, then pan by pixels: whole area of the sites, near the top edge of their hull, far from the hull
+	private static final double[][] VIEWS = { { 1, 0, 0 }, { 3, -50, 20 }, { 1, -1500, -200 } };
+
+	static DrawPanel panel(Triangulation dt, boolean[] layers, double[] view){
+		DrawPanel panel = new DrawPanel(dt);
+		panel.setLayers(layers[0], layers[1], layers[2]);
+		panel.setSize(WIDTH, HEIGHT);
+		panel.zoomAt(WIDTH / 2, HEIGHT / 2, view[0]);
+		panel.pan((int)view[1], (int)view[2]);
+		return panel;
+	}
+
+	static DrawPanel fullPanel(Triangulation dt, boolean[] layers, double[] view){
+		// Reference, paints all faces without culling
+		DrawPanel panel = panel(dt, layers, view);
+		panel.culling = false;
+		return panel;
+	}
+
+	static int[] paint(DrawPanel panel){
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		panel.paint(g);
+		g.dispose();
+		return image.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH);
+	}
+
+	static int[] fullPaint(DrawPanel panel){
+		panel.discardLayers();
+		return paint(panel);
+	}
+
+	static void assertSameImage(String message, int[] expected, int[] actual){
+		int differ = 0, first = -1;
+		for(int i = 0; i < expected.length; i++){
+			if(expected[i] != actual[i]){
+				differ++;
+				first = (first < 0) ? i : first;
+			}
+		}
+		assertEquals(message + ", first at [" + (first % WIDTH) + ", " + (first / WIDTH) + "], differing pixels", 0, differ);
+	}
+
+	static Triangulation triangulation(int n, long seed){
+		Random rand = new Random(seed);
+		Triangulation dt = new Triangulation();
+		for(int i = 0; i < n; i++){
+			dt.addSite(rand.nextDouble() * WIDTH, rand.nextDouble() * HEIGHT);
+		}
+		dt.setTrackChanges(true);
+		dt.setPublishSnapshots(true);
+		return dt;
+	}
+
+	@Test
+	public void partialRepaintMatchesFullPaint(){
+		for(double[] view : VIEWS)
+		for(boolean[] layers : LAYERS){
+			Random rand = new Random(1);
+			Triangulation dt = triangulation(300, 1);
+			DrawPanel cached = panel(dt, layers, view), full = fullPanel(dt, layers, view);
+			assertSameImage("first paint", paint(full), paint(cached));
+			for(int i = 0; i < 120; i++){
+				int site = dt.nearestSite(rand.nextDouble() * WIDTH, rand.nextDouble() * HEIGHT);
+				QuadEdgeMesh mesh = dt.getMesh();
+				String edit;
+				switch(i % 4){
+				case 0:
+					edit = "add";
+					dt.addSite(rand.nextDouble() * WIDTH, rand.nextDouble() * HEIGHT);
+					break;
+				case 1:
+					edit = "remove";
+					dt.removeSite(site);
+					break;
+				case 2:
+					edit = "short move";
+					dt.moveSite(site, mesh.x(site) + rand.nextDouble() * 4 - 2, mesh.y(site) + rand.nextDouble() * 4 - 2);
+					break;
+				default:
+					edit = "far move";
+					dt.moveSite(site, rand.nextDouble() * WIDTH, rand.nextDouble() * HEIGHT);
+				}
+				assertSameImage(edit + " " + i + " with layers " + Arrays.toString(layers) + " in view " + Arrays.toString(view), fullPaint(full), paint(cached));
+			}
+		}
+	}
+
+	@Test
+	public void culledViewMatchesFullPaint(){
+		// Views after panning and zooming, many of them far from the hull of the sites, where only circles and Voronoi edges reach
+		Random rand = new Random(3);
+		Triangulation dt = triangulation(300, 3);
+		DrawPanel culled = panel(dt, LAYERS[4], VIEWS[0]), full = fullPanel(dt, LAYERS[4], VIEWS[0]);
+		for(int i = 0; i < 150; i++){
+			String change;
+			if(i % 50 == 0){
+				change = "reset";
+				culled.resetView();
+				full.resetView();
+			}
+			else if(i % 3 == 0){
+				int x = rand.nextInt(WIDTH), y = rand.nextInt(HEIGHT);
+				double factor = Math.pow(4, 2 * rand.nextDouble() - 1);
+				change = "zoom " + factor + " at [" + x + ", " + y + "]";
+				culled.zoomAt(x, y, factor);
+				full.zoomAt(x, y, factor);
+			}
+			else{
+				int dx = rand.nextInt(1601) - 800, dy = rand.nextInt(1201) - 600;
+				change = "pan by [" + dx + ", " + dy + "]";
+				culled.pan(dx, dy);
+				full.pan(dx, dy);
+			}
+			assertSameImage(change + " " + i + " to " + culled.visibleArea(), paint(full), paint(culled));
+		}
+	}
+
+	@Test
+	public void shownLayerIsPaintedWhole(){
+		// Layers hidden during edits are not repainted, they are painted whole when shown
+		Random rand = new Random(2);
+		Triangulation dt = triangulation(300, 2);
+		DrawPanel cached = panel(dt, LAYERS[0], VIEWS[0]);
+		paint(cached);
+		for(int i = 0; i < 40; i++){
+			cached.setLayers(i % 3 == 0, i % 5 == 0, i % 7 == 0);
+			dt.moveSite(dt.nearestSite(rand.nextDouble() * WIDTH, rand.nextDouble() * HEIGHT), rand.nextDouble() * WIDTH, rand.nextDouble() * HEIGHT);
+			paint(cached);
+		}
+		for(boolean[] layers : LAYERS){
+			cached.setLayers(layers[0], layers[1], layers[2]);
+			assertSameImage("layers " + Arrays.toString(layers), paint(fullPanel(dt, layers, VIEWS[0])), paint(cached));
+		}
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,103 @@
+package delaunayVoronoi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ExpansionTest {
+	/* Results of expansion arithmetic must sum exactly to the BigDecimal
+	 * result, with nonzero components in increasing order of magnitude and
+	 * the estimate of the correct sign. Operands mix magnitudes, so most of
+	 * the results do not fit to one double.
+	 */
+
+	private static BigDecimal exact(double[] e){
+		BigDecimal sum = BigDecimal.ZERO;
+		for(double c : e){
+			sum = sum.add(new BigDecimal(c));
+		}
+		return sum;
+	}
+
+	private static void assertExpansion(BigDecimal expected, double[] e){
+		assertEquals(0, expected.compareTo(exact(e)));
+		double last = 0;
+		for(double c : e){
+			// Zero components may be left (by diff), other ones increase
+			if(c != 0){
+				assertTrue("components not increasing", Math.abs(last) < Math.abs(c));
+				last = c;
+			}
+		}
+		assertEquals(expected.signum(), (int)Math.signum(Expansion.estimate(e)));
+	}
+
+	private static double operand(Random rand){
+		// Random double of magnitude from 1e-20 to 1e20, sometimes an integer or zero
+		switch(rand.nextInt(4)){
+			case 0:		return rand.nextInt(201) - 100;
+			case 1:		return (rand.nextDouble() - 0.5) * Math.pow(10, rand.nextInt(41) - 20);
+			default:	return rand.nextGaussian() * Math.pow(2, rand.nextInt(21) - 10);
+		}
+	}
+
+	private static double[] expansion(Random rand){
+		// Sum of a few random operands
+		double[] e = Expansion.diff(operand(rand), operand(rand));
+		for(int i = rand.nextInt(3); i > 0; i--){
+			e = Expansion.sum(e, Expansion.diff(operand(rand), operand(rand)));
+		}
+		return e;
+	}
+
+	@Test
+	public void diff(){
+		Random rand = new Random(1);
+		for(int i = 0; i < 20000; i++){
+			double a = operand(rand), b = operand(rand);
+			assertExpansion(new BigDecimal(a).subtract(new BigDecimal(b)), Expansion.diff(a, b));
+		}
+		assertExpansion(BigDecimal.ZERO, Expansion.diff(0.1, 0.1));
+	}
+
+	@Test
+	public void sumAndNegate(){
+		Random rand = new Random(2);
+		for(int i = 0; i < 20000; i++){
+			double[] e = expansion(rand), f = expansion(rand);
+			assertExpansion(exact(e).add(exact(f)), Expansion.sum(e, f));
+			assertExpansion(exact(e).negate(), Expansion.negate(e));
+			assertExpansion(BigDecimal.ZERO, Expansion.sum(e, Expansion.negate(e)));
+		}
+	}
+
+	@Test
+	public void product(){
+		Random rand = new Random(3);
+		for(int i = 0; i < 20000; i++){
+			double[] e = expansion(rand), f = expansion(rand);
+			assertExpansion(exact(e).multiply(exact(f)), Expansion.product(e, f));
+		}
+	}
+
+	@Test
+	public void cancellation(){
+		// (a + b)^2 - a^2 - 2ab - b^2 is zero, its floating-point value usually is not
+		Random rand = new Random(4);
+		for(int i = 0; i < 5000; i++){
+			double a = operand(rand), b = operand(rand);
+			double[] s = Expansion.sum(new double[]{ a }, new double[]{ b });
+			double[] ab = Expansion.product(new double[]{ a }, new double[]{ b });
+			double[] result = Expansion.product(s, s);
+			result = Expansion.sum(result, Expansion.negate(Expansion.product(new double[]{ a }, new double[]{ a })));
+			result = Expansion.sum(result, Expansion.negate(Expansion.sum(ab, ab)));
+			result = Expansion.sum(result, Expansion.negate(Expansion.product(new double[]{ b }, new double[]{ b })));
+			assertExpansion(BigDecimal.ZERO, result);
+		}
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,206 @@
+package delaunayVoronoi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class HierarchyTest {
+	/* Every level of the hierarchy must stay a Delaunay triangulation of
+	 * its sites after insertion, removal and moving of sites, every site of
+	 * a coarser level must be linked to the same site in the finer level
+	 * and back, and queries through the levels must answer like brute
+	 * force.
+	 */
+
+	private static List<DataPoint> sites(Triangulation dt){
+		QuadEdgeMesh mesh = dt.getMesh();
+		List<DataPoint> result = new ArrayList<DataPoint>();
+		for(int site = QuadEdgeMesh.BOUNDS; site < mesh.siteCount(); site++){
+			if(mesh.edgeOf(site) != QuadEdgeMesh.NONE){
+				result.add(new DataPoint(DataPoint.SITE, mesh.x(site), mesh.y(site)));
+			}
+		}
+		return result;
+	}
+
+	static void assertHierarchy(Triangulation dt){
+		assertTrue(dt.isHierarchy());
+		int[] sizes = dt.getLevelSizes();
+		for(int k = 0; k < sizes.length; k++){
+			Triangulation level = dt.getLevel(k);
+			QuadEdgeMesh mesh = level.getMesh();
+			assertEquals(sizes[k], level.size());
+			TriangulationTest.assertDelaunay(level, sites(level));
+			for(int site = QuadEdgeMesh.BOUNDS; site < mesh.siteCount(); site++){
+				boolean live = mesh.edgeOf(site) != QuadEdgeMesh.NONE;
+				int above = level.siteAbove(site);
+				if(!live || k + 1 == sizes.length){
+					assertEquals("dead or top site " + site + " of level " + k + " is linked up", QuadEdgeMesh.NONE, above);
+				}
+				else if(above != QuadEdgeMesh.NONE){
+					Triangulation coarser = dt.getLevel(k + 1);
+					assertTrue("site of level " + k + " is linked to a dead site", coarser.getMesh().edgeOf(above) != QuadEdgeMesh.NONE);
+					assertEquals(site, coarser.siteBelow(above));
+				}
+				if(k == 0){
+					continue;
+				}
+				int below = level.siteBelow(site);
+				if(!live){
+					assertEquals("dead site " + site + " of level " + k + " is linked down", QuadEdgeMesh.NONE, below);
+					continue;
+				}
+				Triangulation finer = dt.getLevel(k - 1);
+				assertTrue("site of level " + k + " is not in level below", finer.getMesh().edgeOf(below) != QuadEdgeMesh.NONE);
+				assertEquals(mesh.x(site), finer.getMesh().x(below), 0);
+				assertEquals(mesh.y(site), finer.getMesh().y(below), 0);
+				assertEquals(site, finer.siteAbove(below));
+			}
+		}
+	}
+
+	private static void assertNearest(Triangulation dt, Random rand){
+		QuadEdgeMesh mesh = dt.getMesh();
+		for(int i = 0; i < 200; i++){
+			double x = -100 + 900 * rand.nextDouble(), y = -100 + 700 * rand.nextDouble();
+			double best = Double.POSITIVE_INFINITY;
+			for(DataPoint s : sites(dt)){
+				best = Math.min(best, Math.hypot(s.x - x, s.y - y));
+			}
+			int nearest = dt.nearestSite(x, y);
+			assertEquals(best, Math.hypot(mesh.x(nearest) - x, mesh.y(nearest) - y), 0);
+		}
+	}
+
+	private static void moveSome(Triangulation dt, int[] sites, Random rand, int count){
+		// Half of the moves stay in the kernel of the site, half go far
+		QuadEdgeMesh mesh = dt.getMesh();
+		for(int i = 0; i < count; i++){
+			int site = sites[rand.nextInt(sites.length)];
+			if(mesh.edgeOf(site) == QuadEdgeMesh.NONE){
+				continue;
+			}
+			double d = (i % 2 == 0) ? 0.01 : 300;
+			dt.moveSite(site, mesh.x(site) + (rand.nextDouble() - 0.5) * d, mesh.y(site) + (rand.nextDouble() - 0.5) * d);
+		}
+	}
+
+	@Test
+	public void insertKeepsLevelsDelaunay(){
+		for(QuadEdgeMesh mesh : new QuadEdgeMesh[]{ new ObjectMesh(), new CompactMesh(16) }){
+			Triangulation dt = new Triangulation(mesh);
+			dt.setHierarchy(true);
+			for(DataPoint x : TriangulationTest.uniform(3000, 11)){
+				dt.addSite(x);
+			}
+			int[] sizes = dt.getLevelSizes();
+			assertTrue(sizes[1] > 0 && sizes[1] < sizes[0] / 10);
+			assertHierarchy(dt);
+			assertNearest(dt, new Random(11));
+		}
+	}
+
+	@Test
+	public void removeKeepsLevelsDelaunay(){
+		Triangulation dt = new Triangulation(new CompactMesh());
+		dt.setHierarchy(true);
+		int[] sites = dt.addAll(TriangulationTest.uniform(3000, 12));
+		Random rand = new Random(13);
+		for(int i = 0; i < 1000; i++){
+			dt.removeSite(sites[rand.nextInt(sites.length)]);
+		}
+		assertHierarchy(dt);
+		// Removed numbers are reused by new sites
+		dt.addAll(TriangulationTest.uniform(500, 14));
+		assertHierarchy(dt);
+		// Removal by position finds the site through the levels
+		QuadEdgeMesh mesh = dt.getMesh();
+		int site = dt.nearestSite(350, 250);
+		DataPoint x = new DataPoint(DataPoint.SITE, mesh.x(site), mesh.y(site));
+		assertTrue(dt.removeSite(x));
+		assertFalse(dt.removeSite(x));
+		assertHierarchy(dt);
+	}
+
+	@Test
+	public void moveKeepsLevelsDelaunay(){
+		Triangulation dt = new Triangulation(new ObjectMesh());
+		dt.setHierarchy(true);
+		int[] sites = dt.addAll(TriangulationTest.uniform(3000, 15));
+		moveSome(dt, sites, new Random(16), 1500);
+		assertHierarchy(dt);
+		assertNearest(dt, new Random(17));
+	}
+
+	@Test
+	public void moveOntoSiteIsRefused(){
+		Triangulation dt = new Triangulation(new CompactMesh());
+		dt.setHierarchy(true);
+		int[] sites = dt.addAll(TriangulationTest.uniform(2000, 18));
+		QuadEdgeMesh mesh = dt.getMesh();
+		for(int i = 0; i + 1 < 200; i += 2){
+			int site = sites[i], other = sites[i + 1];
+			if(site != other){
+				assertFalse(dt.moveSite(site, mesh.x(other), mesh.y(other)));
+			}
+		}
+		assertHierarchy(dt);
+	}
+
+	@Test
+	public void hierarchyOfExistingSites(){
+		Triangulation dt = new Triangulation(new CompactMesh());
+		dt.setBowyerWatson(true);
+		int[] sites = dt.addAll(TriangulationTest.uniform(3000, 19));
+		dt.setHierarchy(true);
+		assertHierarchy(dt);
+		Random rand = new Random(20);
+		moveSome(dt, sites, rand, 500);
+		for(int i = 0; i < 500; i++){
+			dt.removeSite(sites[rand.nextInt(sites.length)]);
+		}
+		dt.addAll(TriangulationTest.uniform(500, 21));
+		assertHierarchy(dt);
+		assertNearest(dt, rand);
+		dt.setHierarchy(false);
+		assertFalse(dt.isHierarchy());
+		assertEquals(1, dt.getLevelSizes().length);
+		assertEquals(QuadEdgeMesh.NONE, dt.siteAbove(sites[0]));
+	}
+
+	@Test
+	public void concurrentInsertionRebuildsLevels() throws InterruptedException {
+		final List<DataPoint> sites = TriangulationTest.uniform(3000, 22);
+		final Triangulation dt = new Triangulation(new CompactMesh(16));
+		dt.setHierarchy(true);
+		dt.addAll(sites.subList(0, 1000));
+		dt.setConcurrentInsertion(true);
+		Thread[] threads = new Thread[2];
+		for(int t = 0; t < threads.length; t++){
+			final List<DataPoint> part = sites.subList(1000 + t * 1000, 2000 + t * 1000);
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for(DataPoint x : part){
+						dt.addSite(x);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for(Thread thread : threads){
+			thread.join();
+		}
+		dt.setConcurrentInsertion(false);
+		assertHierarchy(dt);
+		assertTrue(dt.getLevelSizes()[1] > dt.size() / 60);
+		assertNearest(dt, new Random(23));
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,157 @@
+package delaunayVoronoi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class LloydRelaxationTest {
+	/* Relaxation must move sites less and less, keep them inside of the
+	 * boundary and leave a Delaunay mesh after every moveAll.
+	 */
+
+	private static List<DataPoint> sites(Triangulation dt){
+		// Current positions of the sites
+		QuadEdgeMesh mesh = dt.getMesh();
+		List<DataPoint> result = new ArrayList<DataPoint>();
+		for(int site = QuadEdgeMesh.BOUNDS; site < mesh.siteCount(); site++){
+			if(mesh.edgeOf(site) != QuadEdgeMesh.NONE){
+				result.add(new DataPoint(DataPoint.SITE, mesh.x(site), mesh.y(site)));
+			}
+		}
+		return result;
+	}
+
+	@Test
+	public void shiftDecreases(){
+		for(QuadEdgeMesh mesh : new QuadEdgeMesh[]{ new ObjectMesh(), new CompactMesh() }){
+			Triangulation dt = new Triangulation(mesh);
+			dt.setLazyVoronoi(true);
+			dt.addAll(TriangulationTest.uniform(1000, 51));
+			int size = dt.size();
+			Rectangle2D boundary = new Rectangle2D.Double(0, 0, 700, 500);
+			LloydRelaxation lloyd = new LloydRelaxation(dt, boundary);
+			assertTrue(Double.isNaN(lloyd.getLastShift()));
+			double first = Double.NaN, previous = Double.POSITIVE_INFINITY;
+			for(int i = 0; i < 20; i++){
+				assertEquals(1, lloyd.relax(1, 0));
+				double shift = lloyd.getLastShift();
+				if(i == 0){
+					first = shift;
+				}
+				else if(i < 8){
+					// Random sites spread out fast at first, later they only oscillate a little
+					assertTrue("shift " + shift + " after " + previous, shift < previous);
+				}
+				previous = shift;
+				List<DataPoint> sites = sites(dt);
+				assertEquals(size, sites.size());
+				for(DataPoint x : sites){
+					assertTrue(x + " is outside of the boundary", boundary.contains(x));
+				}
+				if(i % 5 == 0){
+					TriangulationTest.assertDelaunay(dt, sites);
+				}
+			}
+			assertTrue("last shift " + previous + ", first " + first, previous < first / 10);
+			assertEquals(20, lloyd.getIterations());
+			TriangulationTest.assertDelaunay(dt, sites(dt));
+		}
+	}
+
+	@Test
+	public void relaxStopsAtTolerance(){
+		Triangulation dt = new Triangulation(new CompactMesh());
+		dt.setLazyVoronoi(true);
+		int[] sites = dt.addAll(TriangulationTest.uniform(500, 52));
+		QuadEdgeMesh mesh = dt.getMesh();
+		// Triangle within the area of sites, sites in it stay in it, sites outside of it move in if their cells reach into it
+		Point2D[] boundary = { new Point2D.Double(100, 50), new Point2D.Double(650, 100), new Point2D.Double(300, 450) };
+		List<Integer> inside = new ArrayList<Integer>();
+		for(int site : sites){
+			if(inside(boundary, mesh, site) && !inside.contains(site)){
+				inside.add(site);
+			}
+		}
+		LloydRelaxation lloyd = new LloydRelaxation(dt, boundary);
+		int done = lloyd.relax(200, 2);
+		assertTrue(done < 200);
+		assertTrue(lloyd.getLastShift() <= 2);
+		int count = 0;
+		for(int site = QuadEdgeMesh.BOUNDS; site < mesh.siteCount(); site++){
+			count += (mesh.edgeOf(site) != QuadEdgeMesh.NONE && inside(boundary, mesh, site)) ? 1 : 0;
+		}
+		for(int site : inside){
+			assertTrue(site + " left the boundary", inside(boundary, mesh, site));
+		}
+		assertTrue(count > inside.size());
+		TriangulationTest.assertDelaunay(dt, sites(dt));
+	}
+
+	private static boolean inside(Point2D[] triangle, QuadEdgeMesh mesh, int site){
+		Point2D x = new Point2D.Double(mesh.x(site), mesh.y(site));
+		for(int k = 0; k < 3; k++){
+			if(Operators.det3(triangle[k], triangle[(k + 1) % 3], x) < 0){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Test
+	public void moveAllKeepsDelaunay(){
+		Triangulation dt = new Triangulation(new ObjectMesh());
+		dt.setPublishSnapshots(true);
+		int[] sites = dt.addAll(TriangulationTest.uniform(600, 53));
+		QuadEdgeMesh mesh = dt.getMesh();
+		double[] x = new double[sites.length], y = new double[sites.length];
+		double longest = 0;
+		for(int i = 0; i < sites.length; i++){
+			// Short moves in place, long ones across the area, some stay
+			double dx = (i % 3 == 0) ? 300 : 0.7, dy = (i % 5 == 0) ? -200 : 0.4;
+			x[i] = (i % 7 == 0) ? Double.NaN : (mesh.x(sites[i]) + dx + 700) % 700;
+			y[i] = (mesh.y(sites[i]) + dy + 500) % 500;
+			if(!Double.isNaN(x[i])){
+				longest = Math.max(longest, Math.hypot(x[i] - mesh.x(sites[i]), y[i] - mesh.y(sites[i])));
+			}
+		}
+		long version = dt.getSnapshot().getVersion();
+		double[] stay = { mesh.x(sites[0]), mesh.y(sites[0]) };
+		double shift = dt.moveAll(sites, x, y);
+		assertEquals("moves are published together", version + 1, dt.getSnapshot().getVersion());
+		assertTrue(shift > 0 && shift <= longest);
+		assertEquals(stay[0], mesh.x(sites[0]), 0);
+		assertEquals(stay[1], mesh.y(sites[0]), 0);
+		assertEquals(x[1], mesh.x(sites[1]), 0);
+		assertEquals(y[1], mesh.y(sites[1]), 0);
+		TriangulationTest.assertDelaunay(dt, sites(dt));
+		// A site which is not finite moves nothing
+		double[] before = { mesh.x(sites[1]), mesh.y(sites[1]) };
+		x[1] += 1;
+		x[2] = Double.POSITIVE_INFINITY;
+		try{
+			dt.moveAll(sites, x, y);
+			fail("infinite position accepted");
+		}
+		catch(IllegalArgumentException e){}
+		assertEquals(before[0], mesh.x(sites[1]), 0);
+		assertEquals(before[1], mesh.y(sites[1]), 0);
+	}
+
+	@Test
+	public void boundaryMustBeConvex(){
+		Point2D[] clockwise = { new Point2D.Double(0, 0), new Point2D.Double(0, 1), new Point2D.Double(1, 0) };
+		try{
+			new LloydRelaxation(new Triangulation(new ObjectMesh()), clockwise);
+			fail("clockwise boundary accepted");
+		}
+		catch(IllegalArgumentException e){}
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,313 @@
+package delaunayVoronoi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class MeshSnapshotTest {
+	/* Snapshot queries must answer like the live triangulation it was
+	 * published from, after additions, removals and moves, on both
+	 * backends. Published snapshots stay as they were when the mesh
+	 * changes, later ones share the pages which did not change, and the
+	 * changed area covers every face gained or lost.
+	 */
+
+	private static String face(MeshSnapshot s, int e){
+		Set<String> corners = new TreeSet<String>();
+		int r = e;
+		do{
+			corners.add(s.x(s.origin(r)) + "," + s.y(s.origin(r)));
+			r = s.lNext(r);
+		} while(r != e);
+		return corners.toString();
+	}
+
+	private static Set<String> triangles(MeshSnapshot s){
+		// Triangles of sites (not bounds) as sorted coordinates, like TriangulationTest.triangles
+		Set<String> result = new TreeSet<String>();
+		for(int q = 0; q < s.quadCount(); q++){
+			if(s.isDeleted(q)){
+				continue;
+			}
+			for(int e = q << 2; e < (q << 2) + 4; e += 2){
+				assertEquals("face is not a triangle", e, s.lNext(s.lNext(s.lNext(e))));
+				if(!s.edgeFromBoundary(e) && !s.edgeFromBoundary(s.lNext(e)) && !s.edgeFromBoundary(s.lPrev(e))){
+					result.add(face(s, e));
+				}
+			}
+		}
+		return result;
+	}
+
+	private static List<String> cell(DataPoint[] vertexes){
+		List<String> result = new ArrayList<String>();
+		for(DataPoint p : vertexes){
+			result.add(p.type + " " + p.x + "," + p.y);
+		}
+		return result;
+	}
+
+	private static void assertAsLive(final Triangulation dt, final MeshSnapshot s, Random random){
+		final QuadEdgeMesh mesh = dt.getMesh();
+		assertEquals(dt.size(), s.size());
+		assertEquals(TriangulationTest.triangles(dt), triangles(s));
+		for(int site = QuadEdgeMesh.BOUNDS; site < mesh.siteCount(); site++){
+			assertEquals(mesh.edgeOf(site), s.edgeOf(site));
+			if(mesh.edgeOf(site) != QuadEdgeMesh.NONE){
+				assertEquals(mesh.x(site), s.x(site), 0);
+				assertEquals(mesh.y(site), s.y(site), 0);
+				assertEquals(cell(dt.voronoiCell(site)), cell(s.voronoiCell(site)));
+			}
+		}
+		int hint = MeshSnapshot.NONE;
+		for(int i = 0; i < 300; i++){
+			double x = -100 + 900 * random.nextDouble(), y = -100 + 700 * random.nextDouble();
+			int e = s.locate(x, y, MeshSnapshot.NONE);
+			for(int r = e, k = 0; k < 3; k++, r = s.lNext(r)){
+				assertTrue("[" + x + ", " + y + "] is not in face " + face(s, e), s.edgeFromBoundary(r) || s.edgeFromBoundary(s.sym(r)) || Operators.det3(s.x(s.origin(r)), s.y(s.origin(r)), s.x(s.dest(r)), s.y(s.dest(r)), x, y) >= 0);
+			}
+			hint = s.nearestSite(x, y, hint);
+			int live = dt.nearestSite(x, y);
+			assertEquals(Math.hypot(mesh.x(live) - x, mesh.y(live) - y), Math.hypot(s.x(hint) - x, s.y(hint) - y), 0);
+		}
+		for(int i = 0; i < 10; i++){
+			Rectangle2D area = new Rectangle2D.Double(-50 + 750 * random.nextDouble(), -50 + 550 * random.nextDouble(), 150 * random.nextDouble() * (i % 3), 100 * random.nextDouble());
+			final Set<String> near = new TreeSet<String>(), found = new TreeSet<String>();
+			dt.forEachFaceNear(area, new EdgeProcessor() {
+				@Override
+				public void process(int e) {
+					int a = mesh.origin(e), b = mesh.dest(e), c = mesh.origin(mesh.lPrev(e));
+					Set<String> corners = new TreeSet<String>();
+					for(int site : new int[]{ a, b, c }){
+						corners.add(mesh.x(site) + "," + mesh.y(site));
+					}
+					near.add(corners.toString());
+				}
+			});
+			s.forEachFaceNear(area, new EdgeProcessor() {
+				@Override
+				public void process(int e) {
+					found.add(face(s, e));
+				}
+			});
+			assertEquals(near, found);
+		}
+	}
+
+	@Test
+	public void queriesAsLiveMesh(){
+		for(QuadEdgeMesh mesh : new QuadEdgeMesh[]{ new ObjectMesh(16), new CompactMesh(16) }){
+			Random random = new Random(71);
+			List<DataPoint> sites = TriangulationTest.uniform(1500, 71);
+			Triangulation dt = new Triangulation(mesh);
+			dt.setLazyVoronoi(true);
+			dt.setPublishSnapshots(true);
+			int[] added = dt.addAll(sites);
+			assertAsLive(dt, dt.getSnapshot(), random);
+			// Removals
+			for(int i = 0; i < 400; i++){
+				dt.removeSite(added[random.nextInt(added.length)]);
+			}
+			assertAsLive(dt, dt.getSnapshot(), random);
+			// Moves, short ones and across the area
+			for(int i = 0; i < 300; i++){
+				int site = added[random.nextInt(added.length)];
+				if(mesh.edgeOf(site) == QuadEdgeMesh.NONE){
+					continue;
+				}
+				if(i % 2 == 0){
+					dt.moveSite(site, mesh.x(site) + random.nextDouble() - 0.5, mesh.y(site) + random.nextDouble() - 0.5);
+				}
+				else{
+					dt.moveSite(site, 700 * random.nextDouble(), 500 * random.nextDouble());
+				}
+			}
+			assertAsLive(dt, dt.getSnapshot(), random);
+			// Additions reuse removed numbers
+			dt.addAll(TriangulationTest.uniform(500, 72));
+			assertAsLive(dt, dt.getSnapshot(), random);
+		}
+	}
+
+	@Test
+	public void facesNearMatchBruteForce(){
+		// Both walks against a scan of all faces, also around the hull and outside of it
+		for(QuadEdgeMesh mesh : new QuadEdgeMesh[]{ new ObjectMesh(), new CompactMesh() }){
+			Random random = new Random(73);
+			Triangulation dt = new Triangulation(mesh);
+			dt.setPublishSnapshots(true);
+			int[] added = dt.addAll(TriangulationTest.uniform(400, 73));
+			for(int round = 0; round < 2; round++){
+				final MeshSnapshot s = dt.getSnapshot();
+				for(int i = 0; i < 500; i++){
+					Rectangle2D area = TriangulationTest.randomArea(random, i);
+					final Set<String> found = new TreeSet<String>();
+					s.forEachFaceNear(area, new EdgeProcessor() {
+						@Override
+						public void process(int e) {
+							found.add(TriangulationTest.face(s.origin(e), s.dest(e), s.origin(s.lPrev(e))));
+						}
+					});
+					Set<String> near = TriangulationTest.facesNear(dt, area);
+					assertEquals("faces near " + area, near, TriangulationTest.walkedFaces(dt, area));
+					assertEquals("faces near " + area, near, found);
+				}
+				// Removals change the hull
+				for(int i = 0; i < 100; i++){
+					dt.removeSite(added[random.nextInt(added.length)]);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void snapshotsStayAsPublished(){
+		List<DataPoint> sites = TriangulationTest.uniform(2000, 74);
+		Triangulation dt = new Triangulation(new CompactMesh());
+		assertNull(dt.getSnapshot());
+		dt.addAll(sites.subList(0, 1000));
+		assertNull("publishing is off", dt.getSnapshot());
+		dt.setPublishSnapshots(true);
+		MeshSnapshot first = dt.getSnapshot();
+		int firstSize = dt.size();
+		assertEquals(1, first.getVersion());
+		Set<String> firstTriangles = triangles(first);
+		assertEquals(TriangulationTest.triangles(dt), firstTriangles);
+		// Every change publishes the next version, a batch once
+		int[] added = dt.addAll(sites.subList(1000, 2000));
+		assertEquals(2, dt.getSnapshot().getVersion());
+		for(int i = 0; i < 10; i++){
+			int site = added[i];
+			dt.moveSite(site, dt.getMesh().x(site) + 1, dt.getMesh().y(site));
+			assertEquals(3 + 2*i, dt.getSnapshot().getVersion());
+			dt.removeSite(added[100 + i]);
+			assertEquals(4 + 2*i, dt.getSnapshot().getVersion());
+		}
+		MeshSnapshot last = dt.getSnapshot();
+		assertSame(last, dt.getSnapshot());
+		assertEquals(firstTriangles, triangles(first));
+		assertEquals(firstSize, first.size());
+		assertEquals(TriangulationTest.triangles(dt), triangles(last));
+		// Without publishing the last snapshot stays, publish copies the pages changed since
+		dt.setPublishSnapshots(false);
+		dt.removeSite(added[500]);
+		assertSame(last, dt.getSnapshot());
+		MeshSnapshot published = dt.publish();
+		assertEquals(last.getVersion() + 1, published.getVersion());
+		assertEquals(TriangulationTest.triangles(dt), triangles(published));
+	}
+
+	@Test
+	public void unchangedPagesAreShared(){
+		// A move far from most of the mesh copies a few pages only
+		List<DataPoint> sites = TriangulationTest.uniform(30000, 75);
+		Triangulation dt = new Triangulation(new CompactMesh());
+		dt.addAll(sites);
+		dt.setPublishSnapshots(true);
+		MeshSnapshot all = dt.getSnapshot();
+		assertTrue(all.copiedPages() > 100);
+		int site = dt.nearestSite(350, 250);
+		dt.moveSite(site, dt.getMesh().x(site) + 0.25, dt.getMesh().y(site) + 0.25);
+		MeshSnapshot moved = dt.getSnapshot();
+		assertTrue(moved.copiedPages() + " pages copied", moved.copiedPages() > 0 && moved.copiedPages() < 20);
+		assertEquals(TriangulationTest.triangles(dt), triangles(moved));
+		// Nothing changed, nothing copied
+		assertEquals(0, dt.publish().copiedPages());
+	}
+
+	@Test
+	public void changedAreaCoversChangedFaces(){
+		Random random = new Random(76);
+		List<DataPoint> sites = TriangulationTest.uniform(800, 76);
+		Triangulation dt = new Triangulation(new ObjectMesh());
+		int[] added = dt.addAll(sites);
+		dt.setPublishSnapshots(true);
+		assertTrue("changes are not tracked", dt.getSnapshot().getChangedArea(0).getWidth() > 1e300);
+		dt.setTrackChanges(true);
+		MeshSnapshot start = dt.publish();
+		assertNull("nothing changed", dt.publish().getChangedArea(start.getVersion()));
+		MeshSnapshot previous = dt.getSnapshot();
+		for(int round = 0; round < 30; round++){
+			int site = added[random.nextInt(added.length)];
+			switch(round % 3){
+			case 0:
+				dt.addSite(700 * random.nextDouble(), 500 * random.nextDouble());
+				break;
+			case 1:
+				dt.removeSite(site);
+				break;
+			default:
+				if(dt.getMesh().edgeOf(site) != QuadEdgeMesh.NONE){
+					dt.moveSite(site, 700 * random.nextDouble(), 500 * random.nextDouble());
+				}
+			}
+			MeshSnapshot latest = dt.getSnapshot();
+			Set<String> before = triangles(previous), after = triangles(latest), changed = new HashSet<String>(before);
+			changed.addAll(after);
+			before.retainAll(after);
+			changed.removeAll(before);
+			Rectangle2D area = latest.getChangedArea(previous.getVersion());
+			if(!changed.isEmpty()){
+				assertNotNull(area);
+			}
+			for(String t : changed){
+				for(String corner : t.substring(1, t.length() - 1).split(", ")){
+					String[] xy = corner.split(",");
+					assertTrue(corner + " outside of " + area, area.contains(Double.parseDouble(xy[0]), Double.parseDouble(xy[1])));
+				}
+			}
+			// Areas of several versions are joined
+			Rectangle2D since = latest.getChangedArea(start.getVersion());
+			if(area != null){
+				assertEquals(since, since.createUnion(area));
+			}
+			previous = latest;
+		}
+		assertTrue(previous.getChangedArea(0).getWidth() > 1e300);
+	}
+
+	@Test
+	public void concurrentInsertionIsPublishedWhenItEnds() throws InterruptedException {
+		final List<DataPoint> sites = TriangulationTest.uniform(3000, 77);
+		final Triangulation dt = new Triangulation(new CompactMesh(16));
+		dt.setPublishSnapshots(true);
+		MeshSnapshot empty = dt.getSnapshot();
+		dt.setConcurrentInsertion(true);
+		Thread[] threads = new Thread[2];
+		for(int t = 0; t < threads.length; t++){
+			final List<DataPoint> part = sites.subList(t * 1500, (t + 1) * 1500);
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for(DataPoint x : part){
+						dt.addSite(x);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for(Thread thread : threads){
+			thread.join();
+		}
+		assertSame("not published during concurrent insertion", empty, dt.getSnapshot());
+		dt.setConcurrentInsertion(false);
+		MeshSnapshot published = dt.getSnapshot();
+		assertEquals(empty.getVersion() + 1, published.getVersion());
+		assertEquals(0, empty.size());
+		assertEquals(TriangulationTest.triangles(dt), triangles(published));
+		assertAsLive(dt, published, new Random(78));
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,212 @@
+package delaunayVoronoi;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.geom.Point2D;
+import java.math.BigDecimal;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class OperatorsTest {
+	/* Signs of adaptive predicates against exact evaluation in BigDecimal,
+	 * on inputs where the floating-point result is too close to zero:
+	 * collinear points and cocircular grids. Far points of symbolic
+	 * predicates are multiplied by a power of ten which is big enough.
+	 */
+
+	private static final BigDecimal FAR = BigDecimal.TEN.pow(120);	// M, bigger than any coefficient in the tests
+
+	private static BigDecimal coordinate(Point2D p, boolean far, boolean xAxis){
+		BigDecimal v = new BigDecimal(xAxis ? p.getX() : p.getY());
+		return far ? v.multiply(FAR) : v;
+	}
+
+	static int det3Exact(Point2D a, Point2D b, Point2D c){
+		return det3Exact(a, false, b, false, c, false);
+	}
+
+	static int det3Exact(Point2D a, boolean aFar, Point2D b, boolean bFar, Point2D c, boolean cFar){
+		BigDecimal	acx = coordinate(a, aFar, true).subtract(coordinate(c, cFar, true)),
+					acy = coordinate(a, aFar, false).subtract(coordinate(c, cFar, false)),
+					bcx = coordinate(b, bFar, true).subtract(coordinate(c, cFar, true)),
+					bcy = coordinate(b, bFar, false).subtract(coordinate(c, cFar, false));
+		return acx.multiply(bcy).subtract(acy.multiply(bcx)).signum();
+	}
+
+	static boolean inCircleExact(Point2D a, Point2D b, Point2D c, Point2D d){
+		return inCircleExact(a, false, b, false, c, false, d, false);
+	}
+
+	static boolean inCircleExact(Point2D a, boolean aFar, Point2D b, boolean bFar, Point2D c, boolean cFar, Point2D d, boolean dFar){
+		BigDecimal	dx = coordinate(d, dFar, true), dy = coordinate(d, dFar, false);
+		BigDecimal	adx = coordinate(a, aFar, true).subtract(dx), ady = coordinate(a, aFar, false).subtract(dy),
+					bdx = coordinate(b, bFar, true).subtract(dx), bdy = coordinate(b, bFar, false).subtract(dy),
+					cdx = coordinate(c, cFar, true).subtract(dx), cdy = coordinate(c, cFar, false).subtract(dy);
+		BigDecimal	aLift = adx.multiply(adx).add(ady.multiply(ady)),
+					bLift = bdx.multiply(bdx).add(bdy.multiply(bdy)),
+					cLift = cdx.multiply(cdx).add(cdy.multiply(cdy));
+		BigDecimal det = aLift.multiply(bdx.multiply(cdy).subtract(cdx.multiply(bdy)))
+				.add(bLift.multiply(cdx.multiply(ady).subtract(adx.multiply(cdy))))
+				.add(cLift.multiply(adx.multiply(bdy).subtract(bdx.multiply(ady))));
+		return det.signum() > 0;
+	}
+
+	private static void assertDet3(Point2D a, Point2D b, Point2D c){
+		assertEquals("det3 " + a + b + c, det3Exact(a, b, c), (int)Math.signum(Operators.det3(a, b, c)));
+	}
+
+	private static void assertInCircle(Point2D a, Point2D b, Point2D c, Point2D d){
+		assertEquals("inCircle " + a + b + c + d, inCircleExact(a, b, c, d), Operators.inCircle(a, b, c, d));
+	}
+
+	private static DataPoint site(double x, double y){
+		return new DataPoint(DataPoint.SITE, x, y);
+	}
+
+	private static double nudge(double v, int ulps){
+		// v moved by given number of units in the last place
+		for(int i = 0; i < Math.abs(ulps); i++){
+			v = (ulps > 0) ? Math.nextUp(v) : Math.nextDown(v);
+		}
+		return v;
+	}
+
+	@Test
+	public void randomPoints(){
+		Random rand = new Random(1);
+		for(int i = 0; i < 10000; i++){
+			DataPoint a = site(rand.nextGaussian(), rand.nextGaussian()), b = site(rand.nextGaussian(), rand.nextGaussian()),
+					c = site(rand.nextGaussian(), rand.nextGaussian()), d = site(rand.nextGaussian(), rand.nextGaussian());
+			assertDet3(a, b, c);
+			assertInCircle(a, b, c, d);
+		}
+	}
+
+	@Test
+	public void collinearPoints(){
+		// Points on a line through two random points, rounded and moved by a few ulps off it
+		Random rand = new Random(2);
+		for(int i = 0; i < 20000; i++){
+			double scale = Math.pow(10, rand.nextInt(13) - 6);
+			double	ax = rand.nextDouble() * scale, ay = rand.nextDouble() * scale,
+					bx = rand.nextDouble() * scale, by = rand.nextDouble() * scale;
+			double t = (i % 3 == 0) ? rand.nextInt(5) - 2 : rand.nextDouble() * 4 - 2;
+			double	cx = nudge(ax + t * (bx - ax), rand.nextInt(5) - 2),
+					cy = nudge(ay + t * (by - ay), rand.nextInt(5) - 2);
+			DataPoint a = site(ax, ay), b = site(bx, by), c = site(cx, cy);
+			assertDet3(a, b, c);
+			assertDet3(b, c, a);
+			assertDet3(c, b, a);
+		}
+	}
+
+	@Test
+	public void exactlyCollinearPoints(){
+		// Points on axes and diagonals of an integer grid, shifted far from the origin
+		Random rand = new Random(3);
+		for(int i = 0; i < 5000; i++){
+			double offset = (i % 2 == 0) ? 1e15 : 0.1;
+			int dx = rand.nextInt(3) - 1, dy = rand.nextInt(3) - 1;
+			DataPoint	a = site(offset + rand.nextInt(100), offset + rand.nextInt(100)),
+						b = site(a.x + dx * rand.nextInt(50), a.y + dy * rand.nextInt(50)),
+						c = site(a.x + dx * rand.nextInt(50), a.y + dy * rand.nextInt(50));
+			assertDet3(a, b, c);
+			assertEquals(0, det3Exact(a, b, c) == 0 ? 0 : 1, Operators.det3(a, b, c) == 0 ? 0 : 1);
+		}
+	}
+
+	@Test
+	public void cocircularGrids(){
+		// Quadruples of grid points (many of them on common circles), also scaled by steps not representable in doubles
+		Random rand = new Random(4);
+		double[] steps = { 1, 0.1, 1e-7, 3e5 };
+		double[] offsets = { 0, 1e6, -123.456 };
+		for(int i = 0; i < 40000; i++){
+			double step = steps[i % steps.length], offset = offsets[(i / steps.length) % offsets.length];
+			DataPoint[] p = new DataPoint[4];
+			for(int k = 0; k < 4; k++){
+				p[k] = site(offset + rand.nextInt(7) * step, offset + rand.nextInt(7) * step);
+			}
+			assertInCircle(p[0], p[1], p[2], p[3]);
+			assertInCircle(p[2], p[1], p[0], p[3]);
+			assertDet3(p[0], p[1], p[2]);
+		}
+	}
+
+	@Test
+	public void squareCornersAreCocircular(){
+		// Predicates are exact unless products of four coordinates underflow or overflow
+		for(double step : new double[]{ 1, 0.1, 1e-30, 1e30 }){
+			DataPoint a = site(0, 0), b = site(step, 0), c = site(step, step), d = site(0, step);
+			assertEquals(false, Operators.inCircle(a, b, c, d));
+			assertEquals(true, Operators.inCircle(a, b, c, site(step / 2, step / 2)));
+			assertInCircle(a, b, c, d);
+		}
+	}
+
+	private static Point2D[] boundingCorners(){
+		// Directions of corners A, B, C as the triangulation makes them
+		QuadEdgeMesh mesh = new CompactMesh();
+		Triangulation.newBoundingSites(mesh);
+		Point2D[] corners = new Point2D[QuadEdgeMesh.BOUNDS];
+		for(int i = 0; i < corners.length; i++){
+			corners[i] = site(mesh.x(i), mesh.y(i));
+		}
+		return corners;
+	}
+
+	private static void assertSymbolic(Point2D a, boolean aFar, Point2D b, boolean bFar, Point2D c, boolean cFar, Point2D d){
+		String points = a + (aFar ? "far" : "") + b + (bFar ? "far" : "") + c + (cFar ? "far" : "") + d;
+		assertEquals("det3 " + points, det3Exact(a, aFar, b, bFar, c, cFar),
+				(int)Math.signum(Operators.det3Symbolic(a.getX(), a.getY(), aFar, b.getX(), b.getY(), bFar, c.getX(), c.getY(), cFar)));
+		assertEquals("inCircle " + points, inCircleExact(a, aFar, b, bFar, c, cFar, d, false),
+				Operators.inCircleSymbolic(a.getX(), a.getY(), aFar, b.getX(), b.getY(), bFar, c.getX(), c.getY(), cFar, d.getX(), d.getY(), false));
+	}
+
+	@Test
+	public void pointsNextToBoundingCorners(){
+		// Sites on rays to the corners (and a few ulps off them), where the finite parts decide
+		Point2D[] corners = boundingCorners();
+		Random rand = new Random(5);
+		for(int i = 0; i < 20000; i++){
+			Point2D corner = corners[rand.nextInt(corners.length)];
+			double t = Math.pow(10, rand.nextInt(13) - 6) * ((i % 2 == 0) ? rand.nextInt(5) + 1 : rand.nextDouble());
+			Point2D[] p = new Point2D[3];
+			for(int k = 0; k < p.length; k++){
+				p[k] = site(nudge(t * corner.getX() * (k + 1), rand.nextInt(5) - 2), nudge(t * corner.getY() * (k + 1), rand.nextInt(5) - 2));
+			}
+			assertSymbolic(corner, true, p[0], false, p[1], false, p[2]);
+			assertSymbolic(p[0], false, corner, true, p[1], false, p[2]);
+			assertSymbolic(p[1], false, p[0], false, corner, true, p[2]);
+		}
+	}
+
+	@Test
+	public void bothCornersOfAnEdge(){
+		// Two far points, the third and fourth near the origin, on grids or random
+		Point2D[] corners = boundingCorners();
+		Random rand = new Random(6);
+		for(int i = 0; i < 20000; i++){
+			int first = rand.nextInt(corners.length), second = (first + 1 + rand.nextInt(corners.length - 1)) % corners.length;
+			Point2D	a = corners[first], b = corners[second];
+			Point2D c, d;
+			if(i % 2 == 0){
+				c = site(rand.nextInt(7) - 3, rand.nextInt(7) - 3);
+				d = site(rand.nextInt(7) - 3, rand.nextInt(7) - 3);
+			}
+			else{
+				c = site(rand.nextGaussian() * 1e6, rand.nextGaussian() * 1e6);
+				d = site(rand.nextGaussian() * 1e6, rand.nextGaussian() * 1e6);
+			}
+			assertSymbolic(a, true, b, true, c, false, d);
+			assertSymbolic(c, false, a, true, b, true, d);
+			assertSymbolic(a, true, b, true, a, true, d);
+		}
+		// All three corners: bounding triangle is CCW and contains every site
+		assertSymbolic(corners[0], true, corners[1], true, corners[2], true, site(1e6, -1e6));
+		assertEquals(true, Operators.det3Symbolic(corners[0].getX(), corners[0].getY(), true,
+				corners[1].getX(), corners[1].getY(), true, corners[2].getX(), corners[2].getY(), true) > 0);
+	}
+
+}
\ No newline at end of file
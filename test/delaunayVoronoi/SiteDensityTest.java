@@ -0,0 +1,94 @@
+package delaunayVoronoi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SiteDensityTest {
+	/* Estimates of the number of sites in a rectangle count cells of the
+	 * grid overlapping it whole, so they are at least the number of sites in
+	 * the rectangle, and at most the number of sites in the rectangle grown
+	 * by the size of the cells. The level is chosen so that the rectangle is
+	 * at most 16 cells wide, cells are then at most 1/8 of it (or the finest
+	 * cells, 1/1024 of the bounding box of sites).
+	 */
+
+	private static int sitesIn(List<DataPoint> sites, double x, double y, double width, double height, double grow){
+		int count = 0;
+		for(DataPoint s : sites){
+			if(s.x >= x - grow && s.x <= x + width + grow && s.y >= y - grow && s.y <= y + height + grow){
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static int sitesInside(List<DataPoint> sites, double x, double y, double width, double height){
+		int count = 0;
+		for(DataPoint s : sites){
+			if(s.x > x && s.x < x + width && s.y > y && s.y < y + height){
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void estimateIsBetweenBruteForceCounts(){
+		Triangulation dt = new Triangulation();
+		dt.setPublishSnapshots(true);
+		dt.addAll(TriangulationTest.uniform(5000, 31));
+		// Clustered part, many sites in one cell of the finest grid
+		Random rand = new Random(32);
+		for(int i = 0; i < 1000; i++){
+			dt.addSite(300 + rand.nextGaussian(), 200 + rand.nextGaussian());
+		}
+		SiteDensity density = new SiteDensity(dt.getSnapshot());
+		assertEquals(dt.size(), density.total());
+		// Sites without duplicates
+		List<DataPoint> sites = new ArrayList<DataPoint>();
+		QuadEdgeMesh mesh = dt.getMesh();
+		for(int site = QuadEdgeMesh.BOUNDS; site < mesh.siteCount(); site++){
+			if(mesh.edgeOf(site) != QuadEdgeMesh.NONE){
+				sites.add(new DataPoint(DataPoint.SITE, mesh.x(site), mesh.y(site)));
+			}
+		}
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for(DataPoint s : sites){
+			minX = Math.min(minX, s.x);
+			minY = Math.min(minY, s.y);
+			maxX = Math.max(maxX, s.x);
+			maxY = Math.max(maxY, s.y);
+		}
+		double extent = Math.max(maxX - minX, maxY - minY);
+		assertEquals(density.total(), density.sitesIn(minX, minY, maxX - minX, maxY - minY));
+		for(int i = 0; i < 2000; i++){
+			// Sizes from a fraction of the finest cell to many bounding boxes, some rectangles outside of it
+			double width = extent * Math.pow(10, 6 * rand.nextDouble() - 5), height = width * (0.25 + rand.nextDouble());
+			double x = minX - extent + 3 * extent * rand.nextDouble(), y = minY - extent + 3 * extent * rand.nextDouble();
+			int estimate = density.sitesIn(x, y, width, height);
+			double grow = Math.max(extent / 1024, Math.max(width, height) / 8);
+			String area = "[" + x + ", " + y + ", " + width + ", " + height + "]";
+			assertTrue(area + " underestimated", estimate >= sitesInside(sites, x, y, width, height));
+			assertTrue(area + " overestimated", estimate <= sitesIn(sites, x, y, width, height, grow));
+		}
+		// Outside of the bounding box
+		assertEquals(0, density.sitesIn(maxX + 1, minY, extent, extent));
+		assertEquals(0, density.sitesIn(minX - 2 * extent, minY - 2 * extent, extent, extent));
+	}
+
+	@Test
+	public void noSites(){
+		Triangulation dt = new Triangulation();
+		dt.setPublishSnapshots(true);
+		SiteDensity density = new SiteDensity(dt.getSnapshot());
+		assertEquals(0, density.total());
+		assertEquals(0, density.sitesIn(-10, -10, 20, 20));
+	}
+
+}
\ No newline at end of file
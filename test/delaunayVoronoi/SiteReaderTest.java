@@ -0,0 +1,90 @@
+package delaunayVoronoi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SiteReaderTest {
+	/* Reading of CSV and raw files, headers are skipped, sites that are not
+	 * finite fail the reading with their position in the file.
+	 */
+	private Path file;
+
+	@Before
+	public void createFile() throws IOException {
+		file = Files.createTempFile("sites", ".tmp");
+	}
+
+	@After
+	public void deleteFile() throws IOException {
+		Files.delete(file);
+	}
+
+	private void writeRaw(double... coordinates) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(coordinates.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+		for(double c : coordinates){
+			buffer.putDouble(c);
+		}
+		Files.write(file, buffer.array());
+	}
+
+	@Test
+	public void readsCsv() throws IOException {
+		Files.write(file, "x,y\n# comment\n1,2\n3;4;extra\n5\t6\n7 8".getBytes(StandardCharsets.US_ASCII));
+		Triangulation dt = new Triangulation();
+		assertEquals(4, SiteReader.readCsv(file, dt));
+		assertEquals(4, dt.size());
+		Triangulation compact = new Triangulation(new CompactMesh());
+		assertEquals(4, SiteReader.readCsv(file, compact));
+		assertEquals(4, compact.size());
+	}
+
+	@Test
+	public void readsRaw() throws IOException {
+		writeRaw(1, 2, 3, 4, 5, 7);
+		Triangulation dt = new Triangulation();
+		assertEquals(3, SiteReader.readBinary(file, dt));
+		assertEquals(3, dt.size());
+		Triangulation compact = new Triangulation(new CompactMesh());
+		assertEquals(3, SiteReader.readBinary(file, compact));
+		assertEquals(3, compact.size());
+	}
+
+	@Test
+	public void csvSiteNotFinite() throws IOException {
+		for(String bad : new String[]{ "NaN,1", "1,Infinity", "-Infinity,-Infinity" }){
+			Files.write(file, ("x,y\n1,2\n" + bad + "\n3,4\n").getBytes(StandardCharsets.US_ASCII));
+			try{
+				SiteReader.readCsv(file, new Triangulation());
+				fail(bad + " was read");
+			}
+			catch(IOException e){
+				assertTrue(e.getMessage(), e.getMessage().contains("line 3"));
+			}
+		}
+	}
+
+	@Test
+	public void rawSiteNotFinite() throws IOException {
+		writeRaw(1, 2, 3, 4, Double.NaN, 5, 6, 7);
+		try{
+			SiteReader.readBinary(file, new Triangulation());
+			fail("NaN was read");
+		}
+		catch(IOException e){
+			assertTrue(e.getMessage(), e.getMessage().contains("offset 32"));
+		}
+	}
+
+}
\ No newline at end of file
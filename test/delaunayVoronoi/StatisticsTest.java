@@ -0,0 +1,126 @@
+package delaunayVoronoi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class StatisticsTest {
+	/* Counters must match what the triangulation did. Statistics are
+	 * switched on by -DdelaunayVoronoi.statistics=true (set for the tests
+	 * by the build), without it the tests are skipped. Counters are shared
+	 * by all triangulations, so every test starts from zero and tests run
+	 * one at a time.
+	 */
+
+	@Before
+	public void enabled(){
+		assumeTrue("statistics are switched off", Statistics.ENABLED);
+		Statistics.resetAll();
+	}
+
+	private static int degree(QuadEdgeMesh mesh, int site){
+		int e = mesh.edgeOf(site), r = e, degree = 0;
+		do{
+			degree++;
+			r = mesh.oNext(r);
+		} while(r != e);
+		return degree;
+	}
+
+	private static long sum(long[] counts){
+		long sum = 0;
+		for(long count : counts){
+			sum += count;
+		}
+		return sum;
+	}
+
+	@Test
+	public void insertsAreCounted(){
+		/* Every insertion walks once and flips until the new site is
+		 * connected to its neighbours, every flip gives it one more edge, so
+		 * a site inserted into a triangle makes degree - 3 flips.
+		 */
+		Triangulation dt = new Triangulation();
+		Statistics.resetAll();
+		Random rand = new Random(41);
+		long flips = 0;
+		for(int i = 0; i < 500; i++){
+			int site = dt.addSite(rand.nextDouble() * 700, rand.nextDouble() * 500);
+			long added = Statistics.flips.sum() - flips;
+			flips += added;
+			assertEquals("flips of site " + i, degree(dt.getMesh(), site) - 3, added);
+		}
+		Statistics.Snapshot s = Statistics.snapshot(dt);
+		assertEquals(500, s.sites);
+		assertEquals(500, s.inserts);
+		assertEquals(500, s.locates);
+		assertEquals(flips, s.flips);
+		assertTrue(s.locateSteps >= s.locates);
+		assertEquals(s.locates, sum(s.locateStepsHistogram));
+		assertEquals(s.inserts, sum(s.flipsPerInsertHistogram));
+		assertEquals(0, s.removes);
+		assertEquals(Statistics.edges(500), s.edges);
+		assertEquals(Statistics.faces(500), s.faces);
+	}
+
+	@Test
+	public void insertIntoSquareFlipsItsDiagonal(){
+		// Corners of a square are cocircular, a site inside is in the circle of both triangles, so their diagonal is flipped
+		Triangulation dt = new Triangulation();
+		dt.addSite(0, 0);
+		dt.addSite(10, 0);
+		dt.addSite(10, 10);
+		dt.addSite(0, 10);
+		Statistics.resetAll();
+		int site = dt.addSite(4, 5);
+		assertEquals(4, degree(dt.getMesh(), site));
+		assertEquals(1, Statistics.inserts.sum());
+		assertEquals(1, Statistics.locates.sum());
+		assertEquals(1, Statistics.flips.sum());
+		assertArrayEquals(new long[]{ 0, 1 }, Statistics.flipsPerInsertHistogram.counts());
+	}
+
+	@Test
+	public void registeredBeanShowsCounters() throws JMException {
+		Triangulation dt = new Triangulation();
+		Statistics.resetAll();
+		dt.addAll(TriangulationTest.uniform(300, 42));
+		int site = dt.nearestSite(350, 250);
+		dt.removeSite(site);
+		ObjectName name = Statistics.register(dt);
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try{
+			assertEquals(new ObjectName(Statistics.OBJECT_NAME), name);
+			assertEquals(true, server.getAttribute(name, "Enabled"));
+			assertEquals(dt.size(), server.getAttribute(name, "Sites"));
+			assertEquals(Statistics.edges(dt.size()), server.getAttribute(name, "Edges"));
+			assertEquals(Statistics.faces(dt.size()), server.getAttribute(name, "Faces"));
+			assertEquals(Statistics.inserts.sum(), server.getAttribute(name, "Inserts"));
+			assertEquals(Statistics.flips.sum(), server.getAttribute(name, "Flips"));
+			assertEquals(1L, server.getAttribute(name, "Removes"));
+			assertTrue((Long)server.getAttribute(name, "Locates") > 0);
+			assertArrayEquals(Statistics.locateStepsHistogram.counts(), (long[])server.getAttribute(name, "LocateStepsHistogram"));
+			// Registering again replaces the bean
+			assertEquals(name, Statistics.register(dt));
+			server.invoke(name, "reset", null, null);
+			assertEquals(0L, server.getAttribute(name, "Inserts"));
+			assertEquals(0, ((long[])server.getAttribute(name, "FlipsPerInsertHistogram")).length);
+		}
+		finally{
+			server.unregisterMBean(name);
+		}
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,761 @@
+package delaunayVoronoi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class TriangulationTest {
+	/* Checks the mesh of both backends against brute force: every triangle
+	 * of sites is counter-clockwise and has no other site in its
+	 * circumCircle, and both backends build the same triangles.
+	 */
+
+	static List<DataPoint> uniform(int n, long seed){
+		Random rand = new Random(seed);
+		List<DataPoint> sites = new ArrayList<DataPoint>();
+		for(int i = 0; i < n; i++){
+			sites.add(new DataPoint(DataPoint.SITE, rand.nextInt(700), rand.nextInt(500)));
+		}
+		return sites;
+	}
+
+	static Set<String> triangles(final Triangulation dt){
+		// Triangles of sites (not bounds) as sorted coordinates, checked to be counter-clockwise
+		final QuadEdgeMesh mesh = dt.getMesh();
+		final Set<String> result = new TreeSet<String>();
+		dt.forEachFace(new EdgeProcessor() {
+			@Override
+			public void process(int e) {
+				assertEquals("face is not a triangle", e, mesh.lNext(mesh.lNext(mesh.lNext(e))));
+				int a = mesh.origin(e), b = mesh.dest(e), c = mesh.origin(mesh.lPrev(e));
+				if(dt.edgeFromBoundary(e) && dt.edgeFromBoundary(mesh.lNext(e)) && dt.edgeFromBoundary(mesh.lPrev(e))){
+					return;	// Outer face of the bounding triangle is clockwise
+				}
+				assertTrue("triangle is not counter-clockwise", mesh.det3(a, b, c) > 0);
+				if(dt.edgeFromBoundary(e) || dt.edgeFromBoundary(mesh.lNext(e)) || dt.edgeFromBoundary(mesh.lPrev(e))){
+					return;
+				}
+				Set<String> corners = new TreeSet<String>();
+				for(int s : new int[]{ a, b, c }){
+					corners.add(mesh.x(s) + "," + mesh.y(s));
+				}
+				result.add(corners.toString());
+			}
+		});
+		return result;
+	}
+
+	static void assertDelaunay(Triangulation dt, List<DataPoint> sites){
+		QuadEdgeMesh mesh = dt.getMesh();
+		for(String t : triangles(dt)){
+			String[] corners = t.substring(1, t.length() - 1).split(", ");
+			double[] c = new double[6];
+			for(int i = 0; i < 3; i++){
+				String[] xy = corners[i].split(",");
+				c[2*i] = Double.parseDouble(xy[0]);
+				c[2*i + 1] = Double.parseDouble(xy[1]);
+			}
+			if(Operators.det3(c[0], c[1], c[2], c[3], c[4], c[5]) < 0){
+				// Sorted corners are clockwise, swap two of them
+				double x = c[2], y = c[3];
+				c[2] = c[4]; c[3] = c[5];
+				c[4] = x; c[5] = y;
+			}
+			for(DataPoint s : sites){
+				if(Operators.inCircle(c[0], c[1], c[2], c[3], c[4], c[5], s.x, s.y)){
+					fail("triangle " + t + " contains " + s);
+				}
+			}
+		}
+		int live = 0;
+		for(int site = 0; site < mesh.siteCount(); site++){
+			if(mesh.edgeOf(site) != QuadEdgeMesh.NONE){
+				assertEquals("site is not linked to its edge", site, mesh.origin(mesh.edgeOf(site)));
+				live++;
+			}
+		}
+		assertEquals(live, dt.size() + 3);
+	}
+
+	static Triangulation build(QuadEdgeMesh mesh, List<DataPoint> sites){
+		Triangulation dt = new Triangulation(mesh);
+		for(DataPoint x : sites){
+			dt.addSite(x);
+		}
+		return dt;
+	}
+
+	@Test
+	public void incrementalIsDelaunay(){
+		List<DataPoint> sites = uniform(400, 1);
+		assertDelaunay(build(new ObjectMesh(), sites), sites);
+		assertDelaunay(build(new CompactMesh(16), sites), sites);
+	}
+
+	@Test
+	public void bulkLoadIsDelaunay(){
+		// Shuffled sites with a dense cluster of duplicates, addAll returns their numbers in input order
+		List<DataPoint> sites = uniform(1500, 8);
+		Random rand = new Random(9);
+		for(int i = 0; i < 500; i++){
+			sites.add(new DataPoint(DataPoint.SITE, 350 + rand.nextInt(8), 250 + rand.nextInt(8)));
+		}
+		Collections.shuffle(sites, rand);
+		DataPoint[] input = sites.toArray(new DataPoint[sites.size()]);
+		int[] order = SpatialSort.brio(input, new Random(10));
+		Arrays.sort(order);
+		for(int i = 0; i < order.length; i++){
+			assertEquals(i, order[i]);
+		}
+
+		Triangulation dt = new Triangulation(new CompactMesh());
+		int[] added = dt.addAll(input);
+		assertEquals(sites, Arrays.asList(input));
+		assertDelaunay(dt, sites);
+		QuadEdgeMesh mesh = dt.getMesh();
+		for(int i = 0; i < input.length; i++){
+			assertEquals(input[i].getX(), mesh.x(added[i]), 0);
+			assertEquals(input[i].getY(), mesh.y(added[i]), 0);
+		}
+		// Sites equal to inserted ones are not added again
+		int size = dt.size();
+		int[] again = dt.addAll(Arrays.asList(input[0], input[1]));
+		assertEquals(size, dt.size());
+		assertEquals(added[0], again[0]);
+		assertEquals(added[1], again[1]);
+	}
+
+	@Test
+	public void backendsBuildSameTriangles(){
+		// Collinear rows and duplicates make sites fall on edges
+		List<DataPoint> sites = uniform(600, 2);
+		for(int i = 0; i < 100; i++){
+			sites.add(new DataPoint(DataPoint.SITE, 10 + 5 * i, 250));
+			sites.add(new DataPoint(DataPoint.SITE, 10 + 5 * i, 250));
+		}
+		Triangulation objects = build(new ObjectMesh(), sites);
+		Triangulation compact = build(new CompactMesh(16), sites);
+		assertEquals(objects.size(), compact.size());
+		assertEquals(triangles(objects), triangles(compact));
+		assertDelaunay(compact, sites);
+	}
+
+	@Test
+	public void duplicateReturnsExistingSite(){
+		Triangulation dt = new Triangulation(new CompactMesh());
+		int site = dt.addSite(100, 200);
+		dt.addSite(300, 50);
+		assertEquals(site, dt.addSite(100, 200));
+		assertEquals(2, dt.size());
+		int e = dt.getMesh().edgeOf(site);
+		assertEquals(site, dt.getMesh().origin(e));
+	}
+
+	@Test
+	public void lazyVoronoiMatchesEager(){
+		List<DataPoint> sites = uniform(300, 3);
+		Triangulation eager = build(new CompactMesh(), sites);
+		Triangulation lazy = new Triangulation(new CompactMesh());
+		lazy.setLazyVoronoi(true);
+		for(DataPoint x : sites){
+			lazy.addSite(x);
+		}
+		assertEquals(centers(eager), centers(lazy));
+	}
+
+	@Test
+	public void bowyerWatsonIsDelaunay(){
+		// Cocircular sites on a grid make circle tests fall back to exact ones, sites on edges are inserted into both faces
+		for(QuadEdgeMesh mesh : new QuadEdgeMesh[]{ new ObjectMesh(), new CompactMesh() }){
+			List<DataPoint> sites = uniform(300, 7);
+			for(int i = 0; i < 400; i++){
+				sites.add(new DataPoint(DataPoint.SITE, 1000 + (i % 20) * 0.5, (i / 20) * 0.5));
+			}
+			sites.add(new DataPoint(DataPoint.SITE, 1000.25, 0.25));
+			Triangulation dt = new Triangulation(mesh);
+			dt.setBowyerWatson(true);
+			dt.setLazyVoronoi(mesh instanceof CompactMesh);
+			int[] added = dt.addAll(sites);
+			assertEquals(added[0], dt.addSite(sites.get(0)));
+			assertDelaunay(dt, sites);
+			// Removals and moves use flips, later insertions cavities again
+			for(int i = 0; i < 100; i++){
+				dt.removeSite(added[3 * i]);
+				dt.moveSite(added[3 * i + 1], 700 - sites.get(3 * i + 1).x, sites.get(3 * i + 1).y + 0.5);
+			}
+			List<DataPoint> more = uniform(200, 8);
+			for(DataPoint x : more){
+				dt.addSite(x);
+			}
+			more.clear();
+			for(int site = QuadEdgeMesh.BOUNDS; site < mesh.siteCount(); site++){
+				if(mesh.edgeOf(site) != QuadEdgeMesh.NONE){
+					more.add(new DataPoint(DataPoint.SITE, mesh.x(site), mesh.y(site)));
+				}
+			}
+			assertDelaunay(dt, more);
+		}
+	}
+
+	@Test
+	public void bowyerWatsonMatchesFlips(){
+		// Sites in general position have one Delaunay triangulation, cached circles are its Voronoi vertexes
+		Random rand = new Random(9);
+		List<DataPoint> sites = new ArrayList<DataPoint>();
+		for(int i = 0; i < 2000; i++){
+			sites.add(new DataPoint(DataPoint.SITE, rand.nextDouble() * 700, rand.nextDouble() * 500));
+		}
+		Triangulation flips = build(new CompactMesh(), sites);
+		Triangulation cavities = new Triangulation(new CompactMesh());
+		cavities.setBowyerWatson(true);
+		for(DataPoint x : sites){
+			cavities.addSite(x);
+		}
+		assertEquals(triangles(flips), triangles(cavities));
+		assertEquals(centers(flips), centers(cavities));
+	}
+
+	@Test
+	public void siteNotFiniteIsRefused(){
+		List<DataPoint> sites = uniform(10, 6);
+		Triangulation dt = new Triangulation();
+		int[] added = dt.addAll(sites);
+		double[][] bad = { { Double.NaN, 1 }, { 1, Double.POSITIVE_INFINITY }, { Double.NEGATIVE_INFINITY, Double.NaN } };
+		for(double[] p : bad){
+			try{
+				dt.addSite(p[0], p[1]);
+				fail("site " + p[0] + ", " + p[1] + " was added");
+			}
+			catch(IllegalArgumentException e){
+				// Expected
+			}
+			try{
+				dt.moveSite(added[0], p[0], p[1]);
+				fail("site was moved to " + p[0] + ", " + p[1]);
+			}
+			catch(IllegalArgumentException e){
+				// Expected
+			}
+		}
+		DataPoint[] batch = { new DataPoint(DataPoint.SITE, 1000, 1000), new DataPoint(DataPoint.SITE, Double.NaN, 0) };
+		try{
+			dt.addAll(batch);
+			fail("batch with NaN was added");
+		}
+		catch(IllegalArgumentException e){
+			// Expected
+		}
+		try{
+			DelaunayBuilder.build(batch);
+			fail("batch with NaN was built");
+		}
+		catch(IllegalArgumentException e){
+			// Expected
+		}
+		assertDelaunay(dt, sites);
+	}
+
+	@Test
+	public void farSitesAreInsideBoundingTriangle(){
+		// Corners are in infinity, so there is no limit on coordinates of sites
+		Random rand = new Random(13);
+		List<DataPoint> sites = new ArrayList<DataPoint>();
+		for(int i = 0; i < 300; i++){
+			sites.add(new DataPoint(DataPoint.SITE, 1e12 + rand.nextGaussian() * 1e9, -1e12 + rand.nextGaussian() * 1e9));
+		}
+		double[][] far = { { 1e15, 1e15 }, { -1e15, 3e14 }, { 2e14, -1e16 }, { 0, 0 } };
+		for(double[] p : far){
+			sites.add(new DataPoint(DataPoint.SITE, p[0], p[1]));
+		}
+		Triangulation objects = build(new ObjectMesh(), sites);
+		Triangulation compact = build(new CompactMesh(16), sites);
+		assertEquals(sites.size(), compact.size());
+		assertDelaunay(objects, sites);
+		assertEquals(triangles(objects), triangles(compact));
+		assertEquals(triangles(objects), triangles(DelaunayBuilder.build(sites)));
+	}
+
+	@Test
+	public void removeSiteKeepsDelaunay(){
+		// Sites are removed by position and by number, their numbers are reused by new sites
+		for(QuadEdgeMesh mesh : new QuadEdgeMesh[]{ new ObjectMesh(), new CompactMesh() }){
+			Set<DataPoint> distinct = new LinkedHashSet<DataPoint>(uniform(600, 11));
+			for(int i = 0; i < 40; i++){
+				distinct.add(new DataPoint(DataPoint.SITE, 100 + 10 * (i % 8), 100 + 10 * (i / 8)));
+			}
+			List<DataPoint> sites = new ArrayList<DataPoint>(distinct);
+			Triangulation dt = new Triangulation(mesh);
+			int[] added = dt.addAll(sites);
+			int siteCount = mesh.siteCount();
+			List<DataPoint> removed = new ArrayList<DataPoint>();
+			for(int i = sites.size() - 1; i >= 0; i -= 2){
+				assertTrue((i % 4 == 1) ? dt.removeSite(sites.get(i)) : dt.removeSite(added[i]));
+				removed.add(sites.remove(i));
+			}
+			assertFalse(dt.removeSite(removed.get(0)));
+			assertFalse(dt.removeSite(0));
+			assertDelaunay(dt, sites);
+			assertCentersComputed(dt);
+			dt.addAll(removed);
+			sites.addAll(removed);
+			assertEquals(siteCount, mesh.siteCount());
+			assertDelaunay(dt, sites);
+		}
+	}
+
+	@Test
+	public void moveSiteKeepsDelaunay(){
+		// Small moves stay in the kernel of the star, long ones reinsert the site, both keep its number
+		for(QuadEdgeMesh mesh : new QuadEdgeMesh[]{ new ObjectMesh(), new CompactMesh() }){
+			List<DataPoint> sites = new ArrayList<DataPoint>(new LinkedHashSet<DataPoint>(uniform(500, 12)));
+			Triangulation dt = new Triangulation(mesh);
+			int[] added = dt.addAll(sites);
+			Random rand = new Random(13);
+			for(int step = 0; step < 2000; step++){
+				int i = rand.nextInt(sites.size());
+				double d = (step % 10 == 0) ? 300 : 2;
+				DataPoint target = new DataPoint(DataPoint.SITE,
+						Math.rint(sites.get(i).x + d * (2 * rand.nextDouble() - 1)),
+						Math.rint(sites.get(i).y + d * (2 * rand.nextDouble() - 1)));
+				if(sites.contains(target)){
+					assertEquals(target.equals(sites.get(i)), dt.moveSite(added[i], target.x, target.y));
+					continue;
+				}
+				assertTrue(dt.moveSite(added[i], target.x, target.y));
+				sites.set(i, target);
+			}
+			assertFalse(dt.moveSite(1, 0, 0));
+			for(int i = 0; i < sites.size(); i++){
+				assertEquals(sites.get(i).x, mesh.x(added[i]), 0);
+				assertEquals(sites.get(i).y, mesh.y(added[i]), 0);
+			}
+			assertDelaunay(dt, sites);
+			assertCentersComputed(dt);
+		}
+	}
+
+	@Test
+	public void nearestSitesMatchBruteForce(){
+		// Queries inside and around the sites, answered one by one and as a parallel batch
+		for(QuadEdgeMesh mesh : new QuadEdgeMesh[]{ new ObjectMesh(), new CompactMesh() }){
+			List<DataPoint> sites = uniform(800, 14);
+			Triangulation dt = new Triangulation(mesh);
+			assertEquals(QuadEdgeMesh.NONE, dt.nearestSite(10, 10));
+			dt.addAll(sites);
+			Random rand = new Random(15);
+			DataPoint[] queries = new DataPoint[10000];
+			for(int i = 0; i < queries.length; i++){
+				queries[i] = new DataPoint(DataPoint.NONE, rand.nextDouble() * 900 - 100, rand.nextDouble() * 700 - 100);
+			}
+			int[] batch = dt.nearestSites(queries);
+			for(int i = 0; i < queries.length; i++){
+				int nearest = dt.nearestSite(queries[i].x, queries[i].y);
+				assertEquals(nearest, batch[i]);
+				double dist = queries[i].distanceSq(mesh.x(nearest), mesh.y(nearest));
+				for(DataPoint s : sites){
+					assertTrue(queries[i] + " is closer to " + s, dist <= queries[i].distanceSq(s));
+				}
+			}
+			// Cell of a site contains the points closest to it
+			int site = dt.nearestSite(350, 250);
+			DataPoint[] cell = dt.voronoiCell(site);
+			for(int i = 0; i < cell.length; i++){
+				DataPoint a = cell[i], b = cell[(i + 1) % cell.length];
+				assertTrue(Operators.det3(a.x, a.y, b.x, b.y, mesh.x(site), mesh.y(site)) > 0);
+			}
+		}
+	}
+
+	@Test
+	public void nearestSiteFromThreads() throws InterruptedException {
+		// Threads query with their own hints, which can be deleted by removal of sites between queries
+		final List<DataPoint> sites = new ArrayList<DataPoint>(new LinkedHashSet<DataPoint>(uniform(1000, 35)));
+		final Triangulation dt = new Triangulation(new CompactMesh());
+		dt.addAll(sites);
+		final Throwable[] failure = { null };
+		Thread[] threads = new Thread[4];
+		for(int round = 0; round < 2; round++){
+			for(int t = 0; t < threads.length; t++){
+				final Random rand = new Random(36 + t);
+				threads[t] = new Thread() {
+					@Override
+					public void run() {
+						try{
+							QuadEdgeMesh mesh = dt.getMesh();
+							for(int i = 0; i < 500; i++){
+								double x = rand.nextDouble() * 900 - 100, y = rand.nextDouble() * 700 - 100;
+								int nearest = dt.nearestSite(x, y);
+								double dx = mesh.x(nearest) - x, dy = mesh.y(nearest) - y;
+								for(DataPoint s : sites){
+									assertTrue(nearest + " is not nearest to [" + x + ", " + y + "]", dx*dx + dy*dy <= s.distanceSq(x, y));
+								}
+							}
+						}
+						catch(Throwable e){
+							failure[0] = e;
+						}
+					}
+				};
+				threads[t].start();
+			}
+			for(Thread thread : threads){
+				thread.join();
+			}
+			assertNull(failure[0]);
+			// Hint of this thread leaves a site which is removed
+			DataPoint gone = sites.get(sites.size() - 1);
+			int site = dt.nearestSite(gone.x, gone.y);
+			assertEquals(gone.x, dt.getMesh().x(site), 0);
+			for(int i = 0; i < 300; i++){
+				assertTrue(dt.removeSite(sites.remove(sites.size() - 1)));
+			}
+			site = dt.nearestSite(gone.x, gone.y);
+			assertTrue(sites.contains(new DataPoint(DataPoint.SITE, dt.getMesh().x(site), dt.getMesh().y(site))));
+		}
+	}
+
+	static double linear(double x, double y){
+		return 2 * x - 3 * y + 1;
+	}
+
+	@Test
+	public void interpolateReproducesLinearValues(){
+		// Sibson weights sum to one and their centre is the query point, so linear values are exact, on hull edges too
+		for(QuadEdgeMesh mesh : new QuadEdgeMesh[]{ new ObjectMesh(), new CompactMesh() }){
+			List<DataPoint> sites = uniform(800, 39);
+			Triangulation dt = new Triangulation(mesh);
+			dt.setLazyVoronoi(mesh instanceof CompactMesh);
+			int[] added = dt.addAll(sites);
+			assertTrue(Double.isNaN(dt.interpolate(350, 250)));
+			for(int site : added){
+				dt.setValue(site, linear(mesh.x(site), mesh.y(site)));
+			}
+			Set<String> before = triangles(dt);
+			Random rand = new Random(40);
+			for(int i = 0; i < 3000; i++){
+				double x = rand.nextDouble() * 700, y = rand.nextDouble() * 500;
+				double value = dt.interpolate(x, y);
+				if(!Double.isNaN(value)){
+					assertEquals(linear(x, y), value, 1e-6);
+				}
+			}
+			assertEquals("interpolation changed the mesh", before, triangles(dt));
+			// At a site, on a hull edge and outside of the hull
+			DataPoint at = sites.get(7);
+			assertEquals(linear(at.x, at.y), dt.interpolate(at.x, at.y), 0);
+			int hull = mesh.edgeOf(dt.nearestSite(-1000, 250));
+			while(mesh.dest(hull) < QuadEdgeMesh.BOUNDS || mesh.origin(mesh.lPrev(hull)) >= QuadEdgeMesh.BOUNDS){
+				hull = mesh.oNext(hull);
+			}
+			for(double t : new double[]{ 0.5, 0.25 }){
+				int a = mesh.origin(hull), b = mesh.dest(hull);
+				double x = mesh.x(a) + t * (mesh.x(b) - mesh.x(a)), y = mesh.y(a) + t * (mesh.y(b) - mesh.y(a));
+				assertEquals(linear(x, y), dt.interpolate(x, y), 1e-6);
+			}
+			assertTrue(Double.isNaN(dt.interpolate(-1, 250)));
+			assertTrue(Double.isNaN(dt.interpolate(350, 1e9)));
+			// Grid answers like single queries
+			Rectangle2D area = new Rectangle2D.Double(-20, -10, 740, 520);
+			double[] grid = dt.interpolateGrid(area, 300, 200);
+			for(int py = 0; py < 200; py += 7){
+				for(int px = 0; px < 300; px++){
+					double x = -20 + (px + 0.5) * 740 / 300, y = -10 + (py + 0.5) * 520 / 200;
+					assertEquals(dt.interpolate(x, y), grid[py * 300 + px], 1e-9);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void interpolateBetweenNeighbourValues(){
+		// Weights are positive, a value is between values of the natural neighbours
+		Triangulation dt = new Triangulation(new CompactMesh());
+		List<DataPoint> sites = uniform(500, 41);
+		int[] added = dt.addAll(sites);
+		Random rand = new Random(42);
+		for(int site : added){
+			dt.setValue(site, rand.nextDouble());
+		}
+		for(int i = 0; i < 2000; i++){
+			double value = dt.interpolate(rand.nextDouble() * 700, rand.nextDouble() * 500);
+			assertTrue(value + " is out of range", Double.isNaN(value) || (value >= -1e-9 && value <= 1 + 1e-9));
+		}
+		// Moved site keeps its value, removed one loses it, corners have none
+		int site = added[0];
+		double value = dt.getValue(site);
+		assertTrue(dt.moveSite(site, dt.getMesh().x(site) + 0.5, dt.getMesh().y(site)));
+		assertEquals(value, dt.getValue(site), 0);
+		assertTrue(dt.removeSite(site));
+		assertTrue(Double.isNaN(dt.getValue(site)));
+		try{
+			dt.setValue(0, 1);
+			fail("value of a corner accepted");
+		}
+		catch(IllegalArgumentException e){}
+	}
+
+	@Test
+	public void interpolateFromThreads() throws InterruptedException {
+		// Threads query with their own hints, the hint of this thread is left at a site which is removed
+		final List<DataPoint> sites = new ArrayList<DataPoint>(new LinkedHashSet<DataPoint>(uniform(1000, 37)));
+		final Triangulation dt = new Triangulation();
+		int[] added = dt.addAll(sites);
+		for(int i = 0; i < added.length; i++){
+			dt.setValue(added[i], linear(sites.get(i).x, sites.get(i).y));
+		}
+		final Throwable[] failure = { null };
+		Thread[] threads = new Thread[4];
+		for(int t = 0; t < threads.length; t++){
+			final Random rand = new Random(38 + t);
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					try{
+						for(int i = 0; i < 2000; i++){
+							double x = 50 + rand.nextDouble() * 600, y = 50 + rand.nextDouble() * 400;
+							assertEquals(linear(x, y), dt.interpolate(x, y), 1e-6);
+						}
+					}
+					catch(Throwable e){
+						failure[0] = e;
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for(Thread thread : threads){
+			thread.join();
+		}
+		assertNull(failure[0]);
+		DataPoint gone = sites.get(500);
+		assertEquals(linear(gone.x, gone.y), dt.interpolate(gone.x, gone.y), 0);
+		assertTrue(dt.removeSite(added[500]));
+		assertEquals(linear(gone.x, gone.y), dt.interpolate(gone.x, gone.y), 1e-6);
+	}
+
+	@Test
+	public void snapshotLoadsIntoEitherMesh() throws IOException {
+		// Removed sites leave deleted quad-edges and free site numbers, which are not written
+		List<DataPoint> sites = new ArrayList<DataPoint>(new LinkedHashSet<DataPoint>(uniform(600, 16)));
+		Triangulation dt = new Triangulation(new CompactMesh());
+		int[] added = dt.addAll(sites);
+		for(int i = 0; i < 100; i++){
+			assertTrue(dt.removeSite(added[i]));
+		}
+		for(int i = 100; i < added.length; i += 2){
+			dt.setValue(added[i], i);
+		}
+		sites = sites.subList(100, sites.size());
+		Path file = Files.createTempFile("snapshot", ".dtvs");
+		try{
+			TriangulationIO.write(dt, file, true);
+			for(QuadEdgeMesh mesh : new QuadEdgeMesh[]{ new ObjectMesh(), new CompactMesh() }){
+				Triangulation read = TriangulationIO.read(file, mesh);
+				assertEquals(dt.size(), read.size());
+				assertEquals(dt.size() + 3, mesh.siteCount());
+				assertEquals(triangles(dt), triangles(read));
+				assertEquals(centers(dt), centers(read));
+				for(int i = 100; i < added.length; i++){
+					double value = read.getValue(read.nearestSite(sites.get(i - 100).x, sites.get(i - 100).y));
+					assertEquals(dt.getValue(added[i]), value, 0);
+				}
+				// Loaded mesh takes new sites, faces loaded without circle radius are tested exactly
+				List<DataPoint> more = new ArrayList<DataPoint>(sites);
+				more.addAll(uniform(100, 17));
+				read.setBowyerWatson(mesh instanceof CompactMesh);
+				read.addAll(more);
+				assertDelaunay(read, more);
+			}
+			// Without Voronoi vertexes they are computed when asked for
+			TriangulationIO.write(dt, file, false);
+			assertEquals(centers(dt), centers(TriangulationIO.read(file)));
+
+			Files.write(file, Arrays.copyOf(Files.readAllBytes(file), 100));
+			try{
+				TriangulationIO.read(file);
+				fail("truncated snapshot was read");
+			}
+			catch(IOException e){
+				// Expected
+			}
+		}
+		finally{
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void concurrentInsertionIsDelaunay() throws InterruptedException {
+		// Every thread inserts all sites in its own order, so the threads keep meeting and the same site is added by several of them
+		for(QuadEdgeMesh mesh : new QuadEdgeMesh[]{ new ObjectMesh(16), new CompactMesh(16) }){
+			final List<DataPoint> sites = uniform(3000, 33);
+			final Triangulation dt = new Triangulation(mesh);
+			dt.setConcurrentInsertion(true);
+			final Throwable[] failure = { null };
+			Thread[] threads = new Thread[4];
+			for(int t = 0; t < threads.length; t++){
+				final List<DataPoint> order = new ArrayList<DataPoint>(sites);
+				Collections.shuffle(order, new Random(34 + t));
+				threads[t] = new Thread() {
+					@Override
+					public void run() {
+						try{
+							for(DataPoint x : order){
+								int site = dt.addSite(x);
+								if(dt.getMesh().x(site) != x.x || dt.getMesh().y(site) != x.y){
+									throw new AssertionError("site " + site + " is not at " + x);
+								}
+							}
+						}
+						catch(Throwable e){
+							failure[0] = e;
+						}
+					}
+				};
+				threads[t].start();
+			}
+			for(Thread thread : threads){
+				thread.join();
+			}
+			dt.setConcurrentInsertion(false);
+			assertNull(failure[0]);
+			assertEquals(new HashSet<DataPoint>(sites).size(), dt.size());
+			assertDelaunay(dt, sites);
+			// Sites are linked to their edges, Voronoi vertexes were computed
+			for(int site = 0; site < dt.getMesh().siteCount(); site++){
+				assertEquals(site, dt.getMesh().origin(dt.getMesh().edgeOf(site)));
+			}
+			assertEquals(centers(build(new CompactMesh(), sites)), centers(dt));
+			// Sequential insertion continues
+			List<DataPoint> more = uniform(200, 35);
+			dt.addAll(more);
+			sites.addAll(more);
+			assertDelaunay(dt, sites);
+		}
+	}
+
+	static String face(int a, int b, int c){
+		// Face as sorted site numbers
+		int[] corners = { a, b, c };
+		Arrays.sort(corners);
+		return Arrays.toString(corners);
+	}
+
+	static Set<String> facesNear(Triangulation dt, Rectangle2D area){
+		/* Brute force: faces whose circumCircle intersects area. circumCircle
+		 * of a face with a corner of the bounding triangle is a half-plane,
+		 * it intersects the area if it contains a corner of the area.
+		 */
+		final QuadEdgeMesh mesh = dt.getMesh();
+		final Set<String> result = new TreeSet<String>();
+		final double[][] corners = {
+				{ area.getMinX(), area.getMinY() }, { area.getMaxX(), area.getMinY() },
+				{ area.getMaxX(), area.getMaxY() }, { area.getMinX(), area.getMaxY() } };
+		final double minX = area.getMinX(), minY = area.getMinY(), maxX = area.getMaxX(), maxY = area.getMaxY();
+		dt.forEachFace(new EdgeProcessor() {
+			@Override
+			public void process(int e) {
+				int a = mesh.origin(e), b = mesh.dest(e), c = mesh.origin(mesh.lPrev(e));
+				int bounds = QuadEdgeMesh.BOUNDS;
+				if(a < bounds && b < bounds && c < bounds){
+					return;
+				}
+				boolean near = false;
+				if(a >= bounds && b >= bounds && c >= bounds){
+					double	ax = mesh.x(a), ay = mesh.y(a),
+							bx = mesh.x(b) - ax, by = mesh.y(b) - ay,
+							cx = mesh.x(c) - ax, cy = mesh.y(c) - ay;
+					double d = 2*(bx * cy  -  by * cx);
+					double	ox = (cy * (bx*bx + by*by)  -  by * (cx*cx + cy*cy)) / d,
+							oy = (bx * (cx*cx + cy*cy)  -  cx * (bx*bx + by*by)) / d;
+					double	dx = Math.max(minX - ax, Math.min(maxX - ax, ox)) - ox,
+							dy = Math.max(minY - ay, Math.min(maxY - ay, oy)) - oy;
+					near = dx*dx + dy*dy <= ox*ox + oy*oy;
+				}
+				else{
+					for(double[] p : corners){
+						near |= mesh.inCircle(a, b, c, p[0], p[1]);
+					}
+				}
+				if(near){
+					result.add(face(a, b, c));
+				}
+			}
+		});
+		return result;
+	}
+
+	static Set<String> walkedFaces(Triangulation dt, Rectangle2D area){
+		final QuadEdgeMesh mesh = dt.getMesh();
+		final Set<String> result = new TreeSet<String>();
+		dt.forEachFaceNear(area, new EdgeProcessor() {
+			@Override
+			public void process(int e) {
+				assertTrue("face processed twice", result.add(face(mesh.origin(e), mesh.dest(e), mesh.origin(mesh.lPrev(e)))));
+			}
+		});
+		return result;
+	}
+
+	static Rectangle2D randomArea(Random rand, int i){
+		// Inside, across and outside of the hull of uniform sites, every third one has no width
+		return new Rectangle2D.Double(-400 + 1500 * rand.nextDouble(), -400 + 1300 * rand.nextDouble(), 200 * rand.nextDouble() * (i % 3), 150 * rand.nextDouble());
+	}
+
+	@Test
+	public void facesNearMatchBruteForce(){
+		for(QuadEdgeMesh mesh : new QuadEdgeMesh[]{ new ObjectMesh(), new CompactMesh() }){
+			Triangulation dt = new Triangulation(mesh);
+			dt.setLazyVoronoi(mesh instanceof CompactMesh);
+			assertTrue(walkedFaces(dt, new Rectangle2D.Double(0, 0, 10, 10)).isEmpty());
+			dt.addAll(uniform(300, 36));
+			Random rand = new Random(37);
+			for(int i = 0; i < 1000; i++){
+				Rectangle2D area = randomArea(rand, i);
+				assertEquals("faces near " + area, facesNear(dt, area), walkedFaces(dt, area));
+			}
+		}
+	}
+
+	private static void assertCentersComputed(Triangulation dt){
+		// Faces changed by removing or moving sites were recomputed in eager mode
+		final QuadEdgeMesh mesh = dt.getMesh();
+		dt.forEachFace(new EdgeProcessor() {
+			@Override
+			public void process(int e) {
+				assertNotNull(mesh.center(mesh.rotInv(e)));
+			}
+		});
+	}
+
+	private static Set<String> centers(final Triangulation dt){
+		final Set<String> result = new TreeSet<String>();
+		dt.forEachFace(new EdgeProcessor() {
+			@Override
+			public void process(int e) {
+				result.add(dt.voronoiVertex(dt.getMesh().rotInv(e)).toString());
+			}
+		});
+		return result;
+	}
+
+}
\ No newline at end of file
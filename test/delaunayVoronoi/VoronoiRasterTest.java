@@ -0,0 +1,96 @@
+package delaunayVoronoi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+public class VoronoiRasterTest {
+	/* Every pixel must be labeled by a nearest site (ties may go either
+	 * way, so distances are compared), also outside of the convex hull.
+	 * Written files must decode to the same labels, the PNG one with
+	 * ImageIO and over more bands than one.
+	 */
+
+	private static VoronoiRaster raster(List<DataPoint> sites){
+		Triangulation dt = new Triangulation();
+		dt.addAll(sites);
+		return new VoronoiRaster(dt);
+	}
+
+	@Test
+	public void labelsAreNearestSites(){
+		List<DataPoint> sites = TriangulationTest.uniform(300, 61);
+		VoronoiRaster raster = raster(sites);
+		assertEquals(sites.size(), raster.getSites().length);
+		// Area reaches beyond the sites on every side
+		Rectangle2D area = new Rectangle2D.Double(-100, -50, 900, 600);
+		int width = 90, height = 70;
+		int[] labels = raster.render(area, width, height);
+		assertEquals(width * height, labels.length);
+		for(int py = 0; py < height; py++){
+			for(int px = 0; px < width; px++){
+				double x = area.getX() + (px + 0.5) * area.getWidth() / width;
+				double y = area.getY() + (py + 0.5) * area.getHeight() / height;
+				double nearest = Double.POSITIVE_INFINITY;
+				for(DataPoint s : sites){
+					nearest = Math.min(nearest, s.distanceSq(x, y));
+				}
+				int label = labels[py * width + px];
+				double dx = raster.x(label) - x, dy = raster.y(label) - y;
+				assertEquals("pixel [" + px + ", " + py + "]", nearest, dx * dx + dy * dy, 1e-9 * nearest);
+			}
+		}
+	}
+
+	@Test
+	public void emptyMeshHasNoLabels(){
+		VoronoiRaster raster = new VoronoiRaster(new Triangulation());
+		assertEquals(0, raster.getSites().length);
+		for(int label : raster.render(new Rectangle2D.Double(0, 0, 10, 10), 4, 3)){
+			assertEquals(VoronoiRaster.NONE, label);
+		}
+	}
+
+	@Test
+	public void filesDecodeToLabels() throws IOException {
+		VoronoiRaster raster = raster(TriangulationTest.uniform(2000, 62));
+		Rectangle2D area = new Rectangle2D.Double(0, 0, 700, 500);
+		// More pixels than one band holds
+		int width = 1500, height = 800;
+		int[] labels = raster.render(area, width, height);
+		Path file = Files.createTempFile("raster", ".tmp");
+		try{
+			raster.writeRaw(file, area, width, height);
+			ByteBuffer raw = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+			int[] read = new int[raw.remaining() / 4];
+			raw.asIntBuffer().get(read);
+			assertArrayEquals(labels, read);
+			raster.writePng(file, area, width, height);
+			BufferedImage image = ImageIO.read(file.toFile());
+			assertEquals(width, image.getWidth());
+			assertEquals(height, image.getHeight());
+			for(int py = 0; py < height; py++){
+				for(int px = 0; px < width; px++){
+					int label = labels[py * width + px];
+					assertEquals("pixel [" + px + ", " + py + "]", VoronoiRaster.color(label), image.getRGB(px, py) & 0xFFFFFF);
+				}
+			}
+		}
+		finally{
+			Files.delete(file);
+		}
+	}
+
+}
\ No newline at end of file